@@ -0,0 +1,109 @@
+package Controller;
+
+import Service.MessageFeed;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+import java.io.IOException;
+
+/**
+ * Writes a feed subscription's frames to an asynchronous response with non-blocking servlet IO, so an open feed
+ * connection holds no thread. Frames are written whenever the feed signals that some are waiting and whenever
+ * Jetty signals that the connection can take more; while the client is not reading, frames stay in the
+ * subscription's bounded buffer until the feed drops it. The subscription is closed when the connection fails or
+ * the response completes.
+ */
+final class FeedConnection implements WriteListener, AsyncListener {
+
+    private final ServletOutputStream out;
+    private MessageFeed.Subscription subscription;
+    /**
+     * Whether the write listener has been set, before which the output stream may not be asked if it is ready.
+     */
+    private boolean writing;
+    /**
+     * Whether frames have been written since the last flush.
+     */
+    private boolean unflushed;
+
+    FeedConnection(ServletOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Starts writing the subscription's frames; the request must already be asynchronous.
+     */
+    void start(MessageFeed.Subscription subscription, AsyncContext async) {
+        synchronized (this) {
+            this.subscription = subscription;
+        }
+        async.addListener(this);
+        out.setWriteListener(this);
+        synchronized (this) {
+            writing = true;
+        }
+        // Frames may have arrived before the listener was set; Jetty calls onWritePossible again only after
+        // isReady has returned false
+        drain();
+    }
+
+    /**
+     * Writes waiting frames for as long as the connection takes them, then flushes. Called by the feed when frames
+     * arrive and by Jetty when the connection is writable again.
+     */
+    synchronized void drain() {
+        if (!writing) {
+            return;
+        }
+        try {
+            while (out.isReady()) {
+                byte[] frame = subscription.poll();
+                if (frame == null) {
+                    if (unflushed) {
+                        unflushed = false;
+                        out.flush();
+                        continue;
+                    }
+                    return;
+                }
+                out.write(frame);
+                unflushed = true;
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The connection is gone
+            subscription.close();
+        }
+    }
+
+    @Override
+    public void onWritePossible() {
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        subscription.close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        subscription.close();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        subscription.close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        subscription.close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+}
@@ -0,0 +1,70 @@
+package Controller;
+
+import DAO.MessageRowHandler;
+import Model.Message;
+import Util.JsonCodec;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes streamed message rows directly to a response body with a Jackson JsonGenerator, either as a single JSON
+ * array or as newline-delimited JSON (one message object per line). Nothing is buffered beyond the generator's own
+ * output buffer, so the response is sent in chunks as rows arrive from the database.
+ */
+class MessageStreamWriter implements MessageRowHandler {
+
+    static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+    private final JsonGenerator generator;
+    private final boolean ndjson;
+
+    private MessageStreamWriter(OutputStream out, boolean ndjson) throws IOException {
+        this.generator = JsonCodec.get().factory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.ndjson = ndjson;
+        if (!ndjson) {
+            generator.writeStartArray();
+        }
+    }
+
+    /**
+     * @return a writer that renders the rows as one JSON array.
+     */
+    static MessageStreamWriter jsonArray(OutputStream out) throws IOException {
+        return new MessageStreamWriter(out, false);
+    }
+
+    /**
+     * @return a writer that renders each row as a JSON object on its own line.
+     */
+    static MessageStreamWriter ndjson(OutputStream out) throws IOException {
+        return new MessageStreamWriter(out, true);
+    }
+
+    @Override
+    public void handle(Message message) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("message_id", message.getMessage_id());
+        generator.writeNumberField("posted_by", message.getPosted_by());
+        generator.writeStringField("message_text", message.getMessage_text());
+        generator.writeNumberField("time_posted_epoch", message.getTime_posted_epoch());
+        generator.writeEndObject();
+        if (ndjson) {
+            generator.writeRaw('\n');
+        }
+    }
+
+    /**
+     * Completes the document and flushes whatever is still buffered. The underlying stream is left open. This is
+     * only called once every row has been written, so a stream cut short by an error is never terminated as if it
+     * were complete.
+     */
+    void finish() throws IOException {
+        if (!ndjson) {
+            generator.writeEndArray();
+        }
+        generator.close();
+    }
+}
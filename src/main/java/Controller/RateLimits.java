@@ -0,0 +1,121 @@
+package Controller;
+
+import Util.Config;
+import Util.RateLimiter;
+import Util.SessionTokens;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The rate limits in front of login, registration and posting, so that credential stuffing and spam bursts are turned
+ * away before they cost any JSON parsing or database work.
+ *
+ * Client IP limits run as before-handlers, ahead of the body being read. So do per-account limits on posting, keyed by
+ * the account_id in the request's session token, which is checked in memory. Logins are also limited per username;
+ * the username is in the body, so that check runs after parsing but still before the account is looked up.
+ *
+ * Limits are off unless ratelimit.enabled is set. Each limit is tuned with ratelimit.{name}.ratePerSecond and
+ * ratelimit.{name}.burst, where name is login.ip, login.account, register.ip, post.ip or post.account, and a rate of 0
+ * turns it off. ratelimit.maxKeys bounds how many clients each limit tracks, and ratelimit.trustForwardedFor makes the
+ * first X-Forwarded-For address count as the client IP, for deployments behind a proxy.
+ */
+final class RateLimits {
+
+    private final boolean enabled = Config.getBoolean("ratelimit.enabled", false);
+    private final boolean trustForwardedFor = Config.getBoolean("ratelimit.trustForwardedFor", false);
+    private final int maxKeys = Config.getInt("ratelimit.maxKeys", 100_000);
+
+    private final RateLimiter loginPerIp = limiter("login.ip", 1, 10);
+    private final RateLimiter loginPerAccount = limiter("login.account", 0.2, 5);
+    private final RateLimiter registerPerIp = limiter("register.ip", 0.1, 5);
+    private final RateLimiter postPerIp = limiter("post.ip", 20, 100);
+    private final RateLimiter postPerAccount = limiter("post.account", 5, 30);
+    private final SessionTokens sessionTokens;
+
+    RateLimits(SessionTokens sessionTokens) {
+        this.sessionTokens = sessionTokens;
+    }
+
+    /**
+     * Registers the before-handlers. Rejections throw a RateLimitedException, which skips the endpoint handler.
+     */
+    void install(Javalin app) {
+        if (!enabled) {
+            return;
+        }
+        app.before("/login", ctx -> {
+            if (ctx.method() == HandlerType.POST) {
+                loginPerIp.acquire(clientIp(ctx));
+            }
+        });
+        app.before("/register", ctx -> {
+            if (ctx.method() == HandlerType.POST) {
+                registerPerIp.acquire(clientIp(ctx));
+            }
+        });
+        app.before("/messages", this::limitPosting);
+        app.before("/messages/batch", this::limitPosting);
+    }
+
+    /**
+     * Counts a login attempt against the username it is for.
+     * @throws Util.RateLimitedException if the username has had too many attempts.
+     */
+    void acquireLogin(String username) {
+        if (enabled) {
+            loginPerAccount.acquire(username);
+        }
+    }
+
+    /**
+     * @return the settings and counters of each limit, or null if rate limiting is off.
+     */
+    Map<String, Object> stats() {
+        if (!enabled) {
+            return null;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("login.ip", loginPerIp.stats());
+        stats.put("login.account", loginPerAccount.stats());
+        stats.put("register.ip", registerPerIp.stats());
+        stats.put("post.ip", postPerIp.stats());
+        stats.put("post.account", postPerAccount.stats());
+        return stats;
+    }
+
+    private void limitPosting(Context ctx) {
+        if (ctx.method() != HandlerType.POST) {
+            return;
+        }
+        postPerIp.acquire(clientIp(ctx));
+        String authorization = ctx.header("Authorization");
+        if (authorization != null && authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            // An invalid token is left for the handler to refuse
+            Integer accountId = sessionTokens.verify(authorization.substring(7).trim());
+            if (accountId != null) {
+                postPerAccount.acquire(accountId.toString());
+            }
+        }
+    }
+
+    private String clientIp(Context ctx) {
+        if (trustForwardedFor) {
+            String forwardedFor = ctx.header("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.isEmpty()) {
+                int comma = forwardedFor.indexOf(',');
+                return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+            }
+        }
+        return ctx.ip();
+    }
+
+    private RateLimiter limiter(String name, double defaultRatePerSecond, int defaultBurst) {
+        return new RateLimiter(name,
+                enabled ? Config.getDouble("ratelimit." + name + ".ratePerSecond", defaultRatePerSecond) : 0,
+                Config.getInt("ratelimit." + name + ".burst", defaultBurst),
+                maxKeys);
+    }
+}
@@ -0,0 +1,77 @@
+package Controller;
+
+import Util.LatencyHistogram;
+import Util.Metrics;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the count, error count and latency of every request by method and route, for the /metrics endpoint.
+ *
+ * It is installed as Javalin's request logger, which runs once the response is complete (for asynchronous handlers,
+ * once their future has completed). Routes are labelled with their path template, such as /messages/{message_id},
+ * never the raw path, so the number of series stays fixed; requests that matched no route share the route label
+ * "unmatched". After a route's first request, recording is two map lookups and a few LongAdder increments.
+ */
+final class RequestMetrics {
+
+    private static final String UNMATCHED = "unmatched";
+
+    private final Map<HandlerType, Map<String, RouteMetrics>> routes = new EnumMap<>(HandlerType.class);
+
+    RequestMetrics() {
+        for (HandlerType method : HandlerType.values()) {
+            routes.put(method, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Records a completed request; the signature matches Javalin's RequestLogger.
+     * @param executionTimeMs the time Javalin spent on the request, in milliseconds.
+     */
+    void record(Context ctx, Float executionTimeMs) {
+        String route = ctx.handlerType() == HandlerType.BEFORE ? "" : ctx.endpointHandlerPath();
+        if (route.isEmpty()) {
+            route = UNMATCHED;
+        }
+        Map<String, RouteMetrics> byRoute = routes.get(ctx.method());
+        RouteMetrics metrics = byRoute.get(route);
+        if (metrics == null) {
+            metrics = byRoute.computeIfAbsent(route, r -> new RouteMetrics(ctx.method(), r));
+        }
+
+        metrics.latency.observeNanos((long) (executionTimeMs * 1_000_000.0));
+        metrics.requests.increment();
+        int status = ctx.statusCode();
+        if (status >= 500) {
+            metrics.serverErrors.increment();
+        } else if (status >= 400) {
+            metrics.clientErrors.increment();
+        }
+    }
+
+    private static final class RouteMetrics {
+        final LatencyHistogram latency;
+        final LongAdder requests;
+        final LongAdder clientErrors;
+        final LongAdder serverErrors;
+
+        RouteMetrics(HandlerType method, String route) {
+            String labels = Metrics.labels("method", method.name(), "route", route);
+            latency = Metrics.histogram("http_server_request_duration_seconds",
+                    "Time taken to handle each request, by method and route.", labels);
+            requests = Metrics.counter("http_server_requests_total",
+                    "Requests handled, by method and route.", labels);
+            clientErrors = Metrics.counter("http_server_errors_total",
+                    "Requests answered with a 4xx or 5xx status, by method, route and status class.",
+                    Metrics.labels("method", method.name(), "route", route, "status", "4xx"));
+            serverErrors = Metrics.counter("http_server_errors_total",
+                    "Requests answered with a 4xx or 5xx status, by method, route and status class.",
+                    Metrics.labels("method", method.name(), "route", route, "status", "5xx"));
+        }
+    }
+}
@@ -1,15 +1,50 @@
 package Controller;
 
+import DAO.MessageRowHandler;
 import Model.Account;
+import Model.Follow;
 import Model.Message;
+import Model.MessageBatchResult;
+import Model.MessagePage;
 import Service.AccountService;
+import Service.FollowService;
+import Service.MessageFeed;
 import Service.MessageService;
+import Service.MessageVersions;
+import Util.Bulkhead;
+import Util.BulkheadFullException;
+import Util.DatabaseUnavailableException;
+import Util.Config;
+import Util.ConnectionUtil;
+import Util.DatabaseExecutor;
+import Util.JsonCodec;
+import Util.Metrics;
+import Util.PasswordHasher;
+import Util.RateLimitedException;
+import Util.ServerThreads;
+import Util.SessionTokens;
+import Util.WireFormat;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.UnauthorizedResponse;
+import jakarta.servlet.AsyncContext;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.Request;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 /**
  * This class defines the endpoints and handlers for the Social Media API, including user registration.
@@ -18,11 +53,48 @@ public class SocialMediaController {
 
     private AccountService accountService;
     private MessageService messageService;
+    private FollowService followService;
+    private MessageVersions versions;
+    private final JsonCodec codec = JsonCodec.get();
+    private final SessionTokens sessionTokens = SessionTokens.get();
+    private final RateLimits rateLimits = new RateLimits(sessionTokens);
+    private final RequestMetrics requestMetrics = new RequestMetrics();
 
-    // Constructor to initialize the AccountService
+    /**
+     * How long a handler waits for its database work before giving up with a 503.
+     */
+    private static final long REQUEST_TIMEOUT_MS = Config.getLong("server.requestTimeoutMs", 30000);
+    /**
+     * How long a write of a streamed response may stay blocked on a client that has stopped reading.
+     */
+    private static final long STREAM_IDLE_TIMEOUT_MS = Config.getLong("messages.stream.idleTimeoutMs", 10000);
+    /**
+     * How long a streamed response may take in all, however steadily the client reads.
+     */
+    private static final long STREAM_MAX_DURATION_MS = Config.getLong("messages.stream.maxDurationMs", 120000);
+    /**
+     * Limits the streams in progress, each of which holds a pooled connection until its client has read every row, to
+     * a few of the pool's connections. A stream beyond the limit is turned away at once with a 503.
+     */
+    private final Bulkhead streams = new Bulkhead("streams", Config.getInt("messages.stream.maxConcurrent", 3), 0);
+
+    /**
+     * The response header a successful login returns its session token in. Clients send the token back as
+     * "Authorization: Bearer {token}".
+     */
+    public static final String TOKEN_HEADER = "X-Auth-Token";
+    /**
+     * Whether message writes must carry a session token. When off, writes without one are accepted as before, but a
+     * token that is sent must still be valid and is still enforced.
+     */
+    private static final boolean AUTH_REQUIRED = Config.getBoolean("auth.required", false);
+
+    // Constructor to initialize the AccountService, and a MessageService and FollowService sharing its account_ids
     public SocialMediaController() {
         this.accountService = new AccountService();
-        this.messageService = new MessageService();
+        this.messageService = new MessageService(accountService.getAccountIds());
+        this.versions = messageService.getVersions();
+        this.followService = new FollowService(accountService.getAccountIds(), messageService);
     }
 
     /**
@@ -30,33 +102,165 @@ public class SocialMediaController {
      * @return a Javalin app object which defines the behavior of the Javalin controller.
      */
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
+        Javalin app = Javalin.create(config -> {
+            config.jsonMapper(codec);
+            config.jetty.server(ServerThreads::createServer);
+            config.requestLogger.http(requestMetrics::record);
+        });
+        app.exception(BulkheadFullException.class, this::bulkheadFullHandler);
+        app.exception(DatabaseUnavailableException.class, this::databaseUnavailableHandler);
+        app.exception(RateLimitedException.class, this::rateLimitedHandler);
+        rateLimits.install(app);
         app.post("/register", this::postAccountHandler);  
         app.post("/login", this::postLoginHandler);
         app.post("/messages", this::postMessageHandler);
+        app.post("/messages/batch", this::postMessageBatchHandler);
         app.get("/messages", this::getAllMessagesHandler); 
+        // Registered before /messages/{message_id}, which would otherwise take "search" and "feed" for a message_id
+        app.get("/messages/search", this::searchMessagesHandler);
+        app.get("/messages/feed", this::messageFeedHandler);
         app.get("/messages/{message_id}", this::getMessageByIdHandler); 
         app.delete("/messages/{message_id}", this::deleteMessageByIdHandler);
         app.patch("/messages/{message_id}", this::updateMessageByIdHandler);
         app.get("/accounts/{account_id}/messages", this::getMessagesByAccountIdHandler);
+        app.post("/accounts/{account_id}/follows/{target_id}", this::postFollowHandler);
+        app.delete("/accounts/{account_id}/follows/{target_id}", this::deleteFollowHandler);
+        app.get("/accounts/{account_id}/timeline", this::getTimelineHandler);
+        app.get("/admin/stats", this::getAdminStatsHandler);
+        app.get("/admin/slow-queries", this::getSlowQueriesHandler);
+        app.get("/metrics", this::getMetricsHandler);
 
 
         return app;  
     }
 
+    /**
+     * Handler for an account's messages. Without query parameters every message of the account is returned as a
+     * JSON array. With any of "since", "until", "order", "limit" or "cursor", one page of the account's timeline is
+     * returned instead, as a MessagePage:
+     * since and until bound time_posted_epoch (since inclusive, until exclusive), order is "desc" (newest first,
+     * the default) or "asc", and next_cursor can be passed back as "cursor" to continue in the same order.
+     * With "stream=true" (or an NDJSON Accept header) every message of the account is streamed; see streamMessages.
+     * Otherwise the Accept header may ask for Smile, CBOR or MessagePack instead of JSON; see respondWith.
+     * Every rendering carries an ETag; see notModified.
+     * @param ctx the context object handling the HTTP request/response.
+     */
     private void getMessagesByAccountIdHandler(Context ctx) {
         int accountId = Integer.parseInt(ctx.pathParam("account_id"));
-        List<Message> messages = messageService.getMessagesByAccountId(accountId);
-    
-        ctx.json(messages);
-        ctx.status(200); 
+        if (notModified(ctx, versions.ofAccount(accountId))) {
+            return;
+        }
+        if (isStreamingRequest(ctx)) {
+            streamMessages(ctx, handler -> messageService.streamMessagesByAccountId(accountId, handler));
+            return;
+        }
+        String since = ctx.queryParam("since");
+        String until = ctx.queryParam("until");
+        String order = ctx.queryParam("order");
+        String limitParam = ctx.queryParam("limit");
+        String cursor = ctx.queryParam("cursor");
+        if (since == null && until == null && order == null && limitParam == null && cursor == null) {
+            respondAsync(ctx, messageService.getMessagesByAccountIdAsync(accountId), messages -> {
+                respondWith(ctx, messages);
+                ctx.status(200);
+            });
+            return;
+        }
+
+        try {
+            if (order != null && !order.equalsIgnoreCase("asc") && !order.equalsIgnoreCase("desc")) {
+                throw new IllegalArgumentException("order must be asc or desc");
+            }
+            int limit = limitParam == null ? MessageService.DEFAULT_PAGE_SIZE : Integer.parseInt(limitParam);
+            respondAsync(ctx, messageService.getMessagesByAccountIdPageAsync(accountId,
+                    since == null ? null : Long.valueOf(since),
+                    until == null ? null : Long.valueOf(until),
+                    !"asc".equalsIgnoreCase(order), cursor, limit), page -> {
+                respondWith(ctx, page);
+                ctx.status(200);
+            });
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
+            ctx.result("");
+        }
     }
 
-    private void updateMessageByIdHandler(Context ctx) throws JsonProcessingException {
+    /**
+     * Handler for following an account: account_id starts following target_id. Returns the follow as JSON, also when
+     * it already existed; an unknown account, or an account following itself, is a 400. With a session token, only
+     * its own account may follow, otherwise 403.
+     * @param ctx the context object handling the HTTP request/response.
+     */
+    private void postFollowHandler(Context ctx) {
+        Integer accountId = authenticate(ctx);
+        int followerId = Integer.parseInt(ctx.pathParam("account_id"));
+        int followeeId = Integer.parseInt(ctx.pathParam("target_id"));
+        if (accountId != null && accountId != followerId) {
+            ctx.status(403);
+            ctx.result("");
+            return;
+        }
+        respondAsync(ctx, followService.followAsync(followerId, followeeId), follow -> {
+            if (follow != null) {
+                ctx.json(follow);
+                ctx.status(200);
+            } else {
+                ctx.status(400);
+                ctx.result("");
+            }
+        });
+    }
+
+    /**
+     * Handler for unfollowing an account. Returns the removed follow as JSON, or an empty 200 if there was none, as
+     * deleting a message does.
+     * @param ctx the context object handling the HTTP request/response.
+     */
+    private void deleteFollowHandler(Context ctx) {
+        Integer accountId = authenticate(ctx);
+        int followerId = Integer.parseInt(ctx.pathParam("account_id"));
+        int followeeId = Integer.parseInt(ctx.pathParam("target_id"));
+        if (accountId != null && accountId != followerId) {
+            ctx.status(403);
+            ctx.result("");
+            return;
+        }
+        respondAsync(ctx, followService.unfollowAsync(followerId, followeeId), follow -> {
+            if (follow != null) {
+                ctx.json(follow);
+            } else {
+                ctx.result("");
+            }
+            ctx.status(200);
+        });
+    }
+
+    /**
+     * Handler for an account's home timeline: the messages of the accounts it follows, newest first, as a
+     * MessagePage. "limit" and "cursor" page through it as on GET /messages; a malformed value is a 400. The Accept
+     * header may ask for a binary format; see respondWith.
+     * @param ctx the context object handling the HTTP request/response.
+     */
+    private void getTimelineHandler(Context ctx) {
+        int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+        try {
+            String limitParam = ctx.queryParam("limit");
+            int limit = limitParam == null ? MessageService.DEFAULT_PAGE_SIZE : Integer.parseInt(limitParam);
+            respondAsync(ctx, followService.getTimelineAsync(accountId, ctx.queryParam("cursor"), limit), page -> {
+                respondWith(ctx, page);
+                ctx.status(200);
+            });
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
+            ctx.result("");
+        }
+    }
+
+    private void updateMessageByIdHandler(Context ctx) throws IOException {
+        Integer accountId = authenticate(ctx);
         int messageId = Integer.parseInt(ctx.pathParam("message_id"));
-        ObjectMapper mapper = new ObjectMapper();
     
-        Message messageFromRequest = mapper.readValue(ctx.body(), Message.class);
+        Message messageFromRequest = readBody(ctx, Message.class);
         String newMessageText = messageFromRequest.getMessage_text();
     
         if (newMessageText == null || newMessageText.trim().isEmpty() || newMessageText.length() > 255) {
@@ -66,15 +270,16 @@ public class SocialMediaController {
             return;
         }
     
-        Message updatedMessage = messageService.updateMessageById(messageId, newMessageText);
-    
-        if (updatedMessage != null) {
-            ctx.json(updatedMessage);
-            ctx.status(200); 
-        } else {
-            ctx.status(400);
-            ctx.result(""); 
-        }
+        respondAsync(ctx, messageService.updateMessageByIdAsync(messageId, newMessageText, accountId),
+                updatedMessage -> {
+            if (updatedMessage != null) {
+                respondWith(ctx, updatedMessage);
+                ctx.status(200); 
+            } else {
+                ctx.status(400);
+                ctx.result(""); 
+            }
+        });
     }
 
     /**
@@ -82,57 +287,62 @@ public class SocialMediaController {
      * If registration is successful, returns the registered account with account_id as JSON.
      * If unsuccessful, returns a 400 status with a failure message.
      * @param ctx the context object handling the HTTP request/response.
-     * @throws JsonProcessingException in case of JSON processing errors.
+     * @throws IOException in case of JSON processing errors.
      */
-    private void postAccountHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-    
+    private void postAccountHandler(Context ctx) throws IOException {
         // Convert the JSON request body into an Account object
-        Account account = mapper.readValue(ctx.body(), Account.class);
+        Account account = codec.read(ctx.bodyInputStream(), Account.class);
     
-        Account registeredAccount = accountService.registerAccount(account.getUsername(), account.getPassword());
-    
-        if (registeredAccount != null) {
-            
-            ctx.json(registeredAccount);
-            ctx.status(200);
-        } else {
-            
-            ctx.status(400);
-            
-        }
+        respondAsync(ctx, accountService.registerAccountAsync(account.getUsername(), account.getPassword()),
+                registeredAccount -> {
+            if (registeredAccount != null) {
+                
+                ctx.json(registeredAccount);
+                ctx.status(200);
+            } else {
+                
+                ctx.status(400);
+                
+            }
+        });
     }
     
-    private void postLoginHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-    
-        Account credentials = mapper.readValue(ctx.body(), Account.class);
+    private void postLoginHandler(Context ctx) throws IOException {
+        Account credentials = codec.read(ctx.bodyInputStream(), Account.class);
+        rateLimits.acquireLogin(credentials.getUsername());
     
-        Account loggedInAccount = accountService.login(credentials.getUsername(), credentials.getPassword());
-    
-        if (loggedInAccount != null) {
-            ctx.json(loggedInAccount);
-            ctx.status(200); 
-        } else {
-            
-            ctx.status(401); 
-            ctx.result("");  
-        }
+        respondAsync(ctx, accountService.loginAsync(credentials.getUsername(), credentials.getPassword()),
+                loggedInAccount -> {
+            if (loggedInAccount != null) {
+                ctx.header(TOKEN_HEADER, sessionTokens.issue(loggedInAccount.getAccount_id()));
+                ctx.json(loggedInAccount);
+                ctx.status(200); 
+            } else {
+                
+                ctx.status(401); 
+                ctx.result("");  
+            }
+        });
     }
     
     private void postMessageHandler(Context ctx) {
+        Integer accountId = authenticate(ctx);
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            Message message = mapper.readValue(ctx.body(), Message.class);
-            Message createdMessage = messageService.createMessage(message);
-    
-            if (createdMessage != null) {
-                ctx.json(createdMessage);
-                ctx.status(200);
-            } else {
-                ctx.status(400);
-                ctx.result(""); 
+            Message message = readBody(ctx, Message.class);
+            if (accountId != null && message != null && !claim(message, accountId)) {
+                ctx.status(403);
+                ctx.result("");
+                return;
             }
+            respondAsync(ctx, messageService.createMessageAsync(message), createdMessage -> {
+                if (createdMessage != null) {
+                    respondWith(ctx, createdMessage);
+                    ctx.status(200);
+                } else {
+                    ctx.status(400);
+                    ctx.result(""); 
+                }
+            });
         } catch (JsonProcessingException e) {
             ctx.status(400);
             ctx.result(""); 
@@ -143,37 +353,449 @@ public class SocialMediaController {
     }
     
 
+    /**
+     * Handler for creating many messages at once. The body is a JSON array of messages; the response is a JSON array
+     * of MessageBatchResult objects in the same order, each holding either the created message or an error. A batch
+     * of more than MessageService.MAX_BATCH_SIZE messages is a 400.
+     * @param ctx the context object handling the HTTP request/response.
+     */
+    private void postMessageBatchHandler(Context ctx) {
+        Integer accountId = authenticate(ctx);
+        try {
+            // Parsing stops at the first message beyond the limit, so an oversized batch is never held whole
+            List<Message> messages = codec.readList(ctx.bodyInputStream(), Message.class,
+                    MessageService.MAX_BATCH_SIZE);
+            if (messages == null) {
+                ctx.status(400);
+                ctx.result("");
+                return;
+            }
+            if (accountId != null) {
+                for (Message message : messages) {
+                    if (message != null && !claim(message, accountId)) {
+                        ctx.status(403);
+                        ctx.result("");
+                        return;
+                    }
+                }
+            }
+            respondAsync(ctx, messageService.createMessagesAsync(messages), results -> {
+                ctx.json(results);
+                ctx.status(200);
+            });
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            ctx.status(400);
+            ctx.result("");
+        } catch (Exception e) {
+            ctx.status(500);
+            ctx.result("");
+        }
+    }
+
+    /**
+     * Handler for listing messages. Without query parameters every message is returned as a JSON array. When a
+     * "limit" or "cursor" query parameter is given, one page is returned instead, as a MessagePage whose next_cursor
+     * can be passed back as "cursor" to continue; the page size is capped at MessageService.MAX_PAGE_SIZE.
+     * With "stream=true" (or an NDJSON Accept header) every message is streamed instead; see streamMessages.
+     * Otherwise the Accept header may ask for Smile, CBOR or MessagePack instead of JSON; see respondWith.
+     * Every rendering carries an ETag; see notModified.
+     * @param ctx the context object handling the HTTP request/response.
+     */
     private void getAllMessagesHandler(Context ctx) {
-        List<Message> messages = messageService.getAllMessages();
-        ctx.json(messages);
-        ctx.status(200); 
+        if (notModified(ctx, versions.global())) {
+            return;
+        }
+        if (isStreamingRequest(ctx)) {
+            streamMessages(ctx, messageService::streamAllMessages);
+            return;
+        }
+        String limitParam = ctx.queryParam("limit");
+        String cursor = ctx.queryParam("cursor");
+        if (limitParam == null && cursor == null) {
+            respondAsync(ctx, messageService.getAllMessagesAsync(), messages -> {
+                respondWith(ctx, messages);
+                ctx.status(200);
+            });
+            return;
+        }
+
+        try {
+            int limit = limitParam == null ? MessageService.DEFAULT_PAGE_SIZE : Integer.parseInt(limitParam);
+            respondAsync(ctx, messageService.getMessagesPageAsync(cursor, limit), page -> {
+                respondWith(ctx, page);
+                ctx.status(200);
+            });
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
+            ctx.result("");
+        }
     }
     
+    /**
+     * Handler for full-text search over message_text. "q" holds the words to look for; matches are ranked best first
+     * and returned as a MessagePage, with "limit" and "cursor" paging through them as on GET /messages. A missing or
+     * wordless "q" is a 400. The search index is in memory, so only the page of matches is read from the database.
+     * @param ctx the context object handling the HTTP request/response.
+     */
+    private void searchMessagesHandler(Context ctx) {
+        if (notModified(ctx, versions.global())) {
+            return;
+        }
+        try {
+            String limitParam = ctx.queryParam("limit");
+            int limit = limitParam == null ? MessageService.DEFAULT_PAGE_SIZE : Integer.parseInt(limitParam);
+            respondAsync(ctx, messageService.searchMessagesAsync(ctx.queryParam("q"), ctx.queryParam("cursor"), limit),
+                    page -> {
+                respondWith(ctx, page);
+                ctx.status(200);
+            });
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
+            ctx.result("");
+        }
+    }
+
+    /**
+     * Handler for the live feed of message changes, as server-sent events. The response stays open and receives an
+     * event named "created", "updated" or "deleted" for every change, with the message as JSON in its data and the
+     * change's version as its id; an optional "posted_by" limits it to one account's messages. A malformed
+     * "posted_by" is a 400, and a 503 means the feed has all the subscribers it accepts. The connection holds no
+     * thread while open; see FeedConnection.
+     * @param ctx the context object handling the HTTP request/response.
+     */
+    private void messageFeedHandler(Context ctx) throws IOException {
+        Integer postedBy;
+        try {
+            String postedByParam = ctx.queryParam("posted_by");
+            postedBy = postedByParam == null ? null : Integer.valueOf(postedByParam);
+        } catch (NumberFormatException e) {
+            ctx.status(400);
+            ctx.result("");
+            return;
+        }
+        FeedConnection connection = new FeedConnection(ctx.res().getOutputStream());
+        MessageFeed.Subscription subscription = messageService.getFeed().subscribe(postedBy, connection::drain);
+        if (subscription == null) {
+            ctx.status(503);
+            ctx.header("Retry-After", "1");
+            ctx.result("");
+            return;
+        }
+        ctx.status(200);
+        ctx.contentType(MessageFeed.CONTENT_TYPE);
+        ctx.header("Cache-Control", "no-cache");
+        ctx.header("X-Accel-Buffering", "no");
+        // Started here rather than by ctx.future, which would leave Jetty's 30 second async timeout in place
+        AsyncContext async = ctx.req().startAsync();
+        async.setTimeout(0);
+        connection.start(subscription, async);
+        ctx.future(subscription::closed);
+    }
+
     private void getMessageByIdHandler(Context ctx) {
         int messageId = Integer.parseInt(ctx.pathParam("message_id"));
-        Message message = messageService.getMessageById(messageId);
-    
-        if (message != null) {
-            ctx.json(message);
-            ctx.status(200); 
-        } else {
-            ctx.result("");
-            ctx.status(200);
+        if (notModified(ctx, versions.ofMessage(messageId))) {
+            return;
         }
+        respondAsync(ctx, messageService.getMessageByIdAsync(messageId), message -> {
+            if (message != null) {
+                respondWith(ctx, message);
+                ctx.status(200); 
+            } else {
+                ctx.result("");
+                ctx.status(200);
+            }
+        });
     }
 
     private void deleteMessageByIdHandler(Context ctx) {
+        Integer accountId = authenticate(ctx);
         int messageId = Integer.parseInt(ctx.pathParam("message_id"));
-        Message deletedMessage = messageService.deleteMessageById(messageId);
+        respondAsync(ctx, messageService.deleteMessageByIdAsync(messageId, accountId), deletedMessage -> {
+            if (deletedMessage != null) {
+                respondWith(ctx, deletedMessage);
+                ctx.status(200);
+            } else {
+                
+                ctx.result("");
+                ctx.status(200);
+            }
+        });
+    }
 
-        if (deletedMessage != null) {
-            ctx.json(deletedMessage);
-            ctx.status(200);
-        } else {
-            
+    /**
+     * Checks the request's session token, in memory and without touching the database.
+     * @return the account_id the token was issued for, or null if there is no token and auth.required is off.
+     * @throws UnauthorizedResponse if the token is malformed, forged or expired, or missing while auth.required is on.
+     */
+    private Integer authenticate(Context ctx) {
+        String authorization = ctx.header("Authorization");
+        if (authorization == null && !AUTH_REQUIRED) {
+            return null;
+        }
+        Integer accountId = authorization != null && authorization.regionMatches(true, 0, "Bearer ", 0, 7)
+                ? sessionTokens.verify(authorization.substring(7).trim()) : null;
+        if (accountId == null) {
+            ctx.header("WWW-Authenticate", "Bearer");
+            throw new UnauthorizedResponse();
+        }
+        return accountId;
+    }
+
+    /**
+     * Attributes a message to the authenticated account: a message without posted_by is given the account's, and
+     * one naming a different account is refused.
+     * @return false if the message claims to be posted by another account.
+     */
+    private static boolean claim(Message message, int accountId) {
+        if (message.getPosted_by() == 0) {
+            message.setPosted_by(accountId);
+        }
+        return message.getPosted_by() == accountId;
+    }
+
+    /**
+     * Sends a message endpoint's response body in the format the client's Accept header asks for: JSON through
+     * ctx.json, as before, or one of the binary WireFormats. Vary: Accept tells caches that the body depends on it.
+     */
+    private void respondWith(Context ctx, Object body) {
+        ctx.header("Vary", "Accept");
+        WireFormat format = WireFormat.fromAccept(ctx.header("Accept"));
+        if (!format.isBinary()) {
+            ctx.json(body);
+            return;
+        }
+        try {
+            ctx.contentType(format.contentType());
+            ctx.result(codec.writeBytes(body, format));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Tags a GET response with an ETag built from the version of the data it covers and answers If-None-Match from
+     * that alone: when the client already holds the current version it gets a 304, without a query or any
+     * serialization. The version must be read before the response is loaded; see MessageVersions.
+     * @return true if a 304 was sent and the handler has nothing more to do.
+     */
+    private boolean notModified(Context ctx, long version) {
+        String etag = "\"" + versions.epoch() + "-" + version + "-" + representation(ctx) + "\"";
+        ctx.header("ETag", etag);
+        ctx.header("Vary", "Accept");
+        String ifNoneMatch = ctx.header("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            // If-None-Match uses the weak comparison
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag)) {
+                ctx.status(304);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a name for the rendering a GET will produce, which each ETag includes since the rendering is chosen
+     * from the Accept header and query string.
+     */
+    private static String representation(Context ctx) {
+        if (isStreamingRequest(ctx)) {
+            return wantsNdjson(ctx) ? "ndjson" : "stream";
+        }
+        return WireFormat.fromAccept(ctx.header("Accept")).name().toLowerCase();
+    }
+
+    /**
+     * Parses a message endpoint's request body in the format named by its Content-Type header, JSON by default.
+     */
+    private <T> T readBody(Context ctx, Class<T> type) throws IOException {
+        return codec.read(ctx.bodyInputStream(), type, WireFormat.fromContentType(ctx.header("Content-Type")));
+    }
+
+    /**
+     * Handler for /metrics: every metric in the registry, in the Prometheus text format.
+     */
+    private void getMetricsHandler(Context ctx) {
+        ctx.contentType(Metrics.CONTENT_TYPE);
+        ctx.result(Metrics.scrape());
+        ctx.status(200);
+    }
+
+    /**
+     * Handler for the slow-query log: counts of slow statements by SQL and the most recent slow statements, newest
+     * first. "limit" caps how many recent statements are returned.
+     */
+    private void getSlowQueriesHandler(Context ctx) {
+        String limitParam = ctx.queryParam("limit");
+        int limit;
+        try {
+            limit = limitParam == null ? Integer.MAX_VALUE : Integer.parseInt(limitParam);
+        } catch (NumberFormatException e) {
+            limit = -1;
+        }
+        if (limit < 0) {
+            ctx.status(400);
             ctx.result("");
+            return;
+        }
+        ctx.json(ConnectionUtil.getSlowQueryLog().snapshot(limit));
+        ctx.status(200);
+    }
+
+    /**
+     * Handler for operational statistics, such as the message cache's hit, miss and eviction counters.
+     * @param ctx the context object handling the HTTP request/response.
+     */
+    private void getAdminStatsHandler(Context ctx) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("message_cache", messageService.getCacheStats());
+        stats.put("account_ids", accountService.getAccountIds().stats());
+        stats.put("username_filter", accountService.getUsernameFilterStats());
+        stats.put("database_bulkhead", ConnectionUtil.getBulkhead().stats());
+        stats.put("stream_bulkhead", streams.stats());
+        stats.put("database_executor", DatabaseExecutor.get().stats());
+        stats.put("message_group_commit", messageService.getGroupCommitStats());
+        stats.put("message_search_index", messageService.getSearchIndexStats());
+        stats.put("message_feed", messageService.getFeed().stats());
+        stats.put("home_timelines", followService.getTimelineStats());
+        stats.put("password_hasher", PasswordHasher.get().stats());
+        stats.put("rate_limits", rateLimits.stats());
+        ctx.json(stats);
+        ctx.status(200);
+    }
+
+    /**
+     * Hands the request over to database work running on the DatabaseExecutor and releases the HTTP thread; respond
+     * is called with the result once it is ready. If the work has not finished within REQUEST_TIMEOUT_MS, the future
+     * is failed, which keeps it from starting if it is still queued, and the client gets a 503. The same happens if
+     * the executor queue or the database bulkhead is full, or no pooled connection frees up in time. An
+     * IllegalArgumentException from the service (a bad limit or cursor, say) becomes a 400, and anything else a 500.
+     */
+    private <T> void respondAsync(Context ctx, CompletableFuture<T> pending, Consumer<T> respond) {
+        ctx.future(() -> pending.orTimeout(REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS).handle((result, failure) -> {
+            if (failure == null) {
+                respond.accept(result);
+                return null;
+            }
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+            if (cause instanceof TimeoutException || cause instanceof RejectedExecutionException) {
+                ctx.status(503);
+                ctx.result("");
+            } else if (cause instanceof BulkheadFullException) {
+                bulkheadFullHandler((BulkheadFullException) cause, ctx);
+            } else if (cause instanceof DatabaseUnavailableException) {
+                databaseUnavailableHandler((DatabaseUnavailableException) cause, ctx);
+            } else if (cause instanceof IllegalArgumentException) {
+                ctx.status(400);
+                ctx.result("");
+            } else {
+                cause.printStackTrace();
+                ctx.status(500);
+                ctx.result("");
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Answers 429 when a rate limit turns a request away, telling the client how long until its allowance refills.
+     */
+    private void rateLimitedHandler(RateLimitedException e, Context ctx) {
+        ctx.status(429);
+        ctx.header("Retry-After", Long.toString(e.getRetryAfterSeconds()));
+        ctx.result("");
+    }
+
+    /**
+     * Answers 503 when the database bulkhead turns a request away, telling the client when to try again.
+     */
+    private void bulkheadFullHandler(BulkheadFullException e, Context ctx) {
+        ctx.status(503);
+        ctx.header("Retry-After", "1");
+        ctx.result("");
+    }
+
+    /**
+     * Answers 503 when every pooled database connection stayed busy for the whole acquire timeout.
+     */
+    private void databaseUnavailableHandler(DatabaseUnavailableException e, Context ctx) {
+        ctx.status(503);
+        ctx.header("Retry-After", "1");
+        ctx.result("");
+    }
+
+    /**
+     * A query whose rows are pushed to a handler while the result set is open.
+     */
+    private interface MessageStream {
+        void writeTo(MessageRowHandler handler) throws SQLException, IOException;
+    }
+
+    /**
+     * @return true if the client asked for the streaming rendering of a message listing, either with the
+     * "stream=true" query parameter or by accepting NDJSON.
+     */
+    private static boolean isStreamingRequest(Context ctx) {
+        return "true".equalsIgnoreCase(ctx.queryParam("stream")) || wantsNdjson(ctx);
+    }
+
+    private static boolean wantsNdjson(Context ctx) {
+        String accept = ctx.header("Accept");
+        return "ndjson".equalsIgnoreCase(ctx.queryParam("format"))
+                || (accept != null && accept.contains(MessageStreamWriter.NDJSON_CONTENT_TYPE));
+    }
+
+    /**
+     * Writes the rows of a message query straight from the JDBC result set to the response output stream, as a
+     * JSON array or, if the client asked for it, as newline-delimited JSON. The response is chunked, and memory use
+     * does not depend on how many rows are returned.
+     * If the query fails before anything is sent the client gets a 500, or a 503 if no connection became available;
+     * if it fails part way through, the document is left unterminated so the client can tell it is incomplete.
+     *
+     * A stream holds a pooled connection and a database bulkhead permit until the client has read the last row, so a
+     * slow reader is bounded three ways: at most messages.stream.maxConcurrent (3) streams run at once, and one more
+     * gets a 503 with Retry-After straight away; a write blocked for messages.stream.idleTimeoutMs (10 s) on a client
+     * that stopped reading fails; and a stream still running after messages.stream.maxDurationMs (2 min) is cut off.
+     * The last two end the stream as a failure part way through does, releasing the connection and permit.
+     */
+    private void streamMessages(Context ctx, MessageStream stream) {
+        streams.acquire();
+        HttpChannel channel = Request.getBaseRequest(ctx.req()).getHttpChannel();
+        long idleTimeout = channel.getIdleTimeout();
+        channel.setIdleTimeout(STREAM_IDLE_TIMEOUT_MS);
+        try {
+            boolean ndjson = wantsNdjson(ctx);
             ctx.status(200);
+            ctx.contentType(ndjson ? MessageStreamWriter.NDJSON_CONTENT_TYPE : "application/json");
+            MessageStreamWriter writer = ndjson
+                    ? MessageStreamWriter.ndjson(ctx.outputStream())
+                    : MessageStreamWriter.jsonArray(ctx.outputStream());
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STREAM_MAX_DURATION_MS);
+            stream.writeTo(message -> {
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IOException("Stream cut off after " + STREAM_MAX_DURATION_MS + "ms");
+                }
+                writer.handle(message);
+            });
+            writer.finish();
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            if (!ctx.res().isCommitted()) {
+                ctx.res().reset();
+                ctx.status(e instanceof SQLTimeoutException ? 503 : 500);
+            }
+        } finally {
+            channel.setIdleTimeout(idleTimeout);
+            streams.release();
         }
     }
-    
+
 }
@@ -2,102 +2,222 @@ package DAO;
 
 import Model.Account;
 import Util.ConnectionUtil;
+import Util.DatabaseUnavailableException;
+import Util.LatencyHistogram;
+import Util.Metrics;
 
 import java.sql.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public class AccountDAO {
 
+    /**
+     * Latency of each public method, published as dao_call_seconds.
+     */
+    private static final LatencyHistogram INSERT_ACCOUNT_TIME = timer("insertAccount");
+    private static final LatencyHistogram DOES_USERNAME_EXIST_TIME = timer("doesUsernameExist");
+    private static final LatencyHistogram GET_ACCOUNT_BY_USERNAME_TIME = timer("getAccountByUsername");
+    private static final LatencyHistogram UPDATE_PASSWORD_TIME = timer("updatePassword");
+    private static final LatencyHistogram GET_ACCOUNT_BY_ID_TIME = timer("getAccountById");
+    private static final LatencyHistogram FOR_EACH_ACCOUNT_ID_TIME = timer("forEachAccountId");
+    private static final LatencyHistogram FOR_EACH_USERNAME_TIME = timer("forEachUsername");
+
     public Account insertAccount(Account account) {
-        Connection connection = ConnectionUtil.getConnection();
+        long start = System.nanoTime();
         try {
             // SQL statement to insert into the account table
             String sql = "INSERT INTO account (username, password) VALUES (?, ?)";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
-            
-            preparedStatement.setString(1, account.getUsername());
-            preparedStatement.setString(2, account.getPassword());
+                preparedStatement.setString(1, account.getUsername());
+                preparedStatement.setString(2, account.getPassword());
 
-            preparedStatement.executeUpdate();
+                preparedStatement.executeUpdate();
 
-            ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys();
-            if (pkeyResultSet.next()) {
-                int generatedAccountId = pkeyResultSet.getInt(1);
+                try (ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys()) {
+                    if (pkeyResultSet.next()) {
+                        int generatedAccountId = pkeyResultSet.getInt(1);
 
-                // Return the newly created account object with the generated account_id
-                return new Account(generatedAccountId, account.getUsername(), account.getPassword());
+                        // Return the newly created account object with the generated account_id
+                        return new Account(generatedAccountId, account.getUsername(), account.getPassword());
+                    }
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
             }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            return null;
+        } finally {
+            INSERT_ACCOUNT_TIME.observeSince(start);
         }
-        return null;
     }
 
     public boolean doesUsernameExist(String username) {
-        Connection connection = ConnectionUtil.getConnection();
+        long start = System.nanoTime();
         try {
             String sql = "SELECT COUNT(*) FROM account WHERE username = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setString(1, username);
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setString(1, username);
 
-            ResultSet resultSet = preparedStatement.executeQuery();
-            if (resultSet.next()) {
-                int count = resultSet.getInt(1);
-                return count > 0; 
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    if (resultSet.next()) {
+                        int count = resultSet.getInt(1);
+                        return count > 0;
+                    }
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            return false;
+        } finally {
+            DOES_USERNAME_EXIST_TIME.observeSince(start);
         }
-        return false;
     }
 
-    public Account getAccountByUsernameAndPassword(String username, String password){
-        Connection connection = ConnectionUtil.getConnection();
-    
+    /**
+     * @return the account with this username, including its stored password hash, or null if there is none.
+     */
+    public Account getAccountByUsername(String username) {
+        long start = System.nanoTime();
         try {
-            String sql = "SELECT * FROM account WHERE username = ? AND password = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setString(1, username);
-            preparedStatement.setString(2, password);
-    
-            ResultSet resultSet = preparedStatement.executeQuery();
-            if (resultSet.next()) {
-                int accountId = resultSet.getInt("account_id");
-                String retrievedUsername = resultSet.getString("username");
-                String retrievedPassword = resultSet.getString("password");
-            
-                // Create and return the Account object
-                return new Account(accountId, retrievedUsername, retrievedPassword);
-            } else {
-                
-                return null;
+            String sql = "SELECT * FROM account WHERE username = ?";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setString(1, username);
+
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    if (resultSet.next()) {
+                        int accountId = resultSet.getInt("account_id");
+                        String retrievedUsername = resultSet.getString("username");
+                        String retrievedPassword = resultSet.getString("password");
+
+                        // Create and return the Account object
+                        return new Account(accountId, retrievedUsername, retrievedPassword);
+                    } else {
+                        return null;
+                    }
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            return null;
+        } finally {
+            GET_ACCOUNT_BY_USERNAME_TIME.observeSince(start);
+        }
+    }
+
+    /**
+     * Replaces an account's stored password, which callers pass already hashed.
+     * @return true if the account exists and was updated.
+     */
+    public boolean updatePassword(int accountId, String password) {
+        long start = System.nanoTime();
+        try {
+            String sql = "UPDATE account SET password = ? WHERE account_id = ?";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setString(1, password);
+                preparedStatement.setInt(2, accountId);
+                return preparedStatement.executeUpdate() > 0;
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } 
-        return null;
+        } finally {
+            UPDATE_PASSWORD_TIME.observeSince(start);
+        }
     }
 
     public Account getAccountById(int accountId) {
-        Connection connection = ConnectionUtil.getConnection();
+        long start = System.nanoTime();
         try {
             String sql = "SELECT * FROM account WHERE account_id = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setInt(1, accountId);
-    
-            ResultSet resultSet = preparedStatement.executeQuery();
-            if (resultSet.next()) {
-                String username = resultSet.getString("username");
-                String password = resultSet.getString("password");
-                return new Account(accountId, username, password);
-            } else {
-                return null; 
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setInt(1, accountId);
+
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    if (resultSet.next()) {
+                        String username = resultSet.getString("username");
+                        String password = resultSet.getString("password");
+                        return new Account(accountId, username, password);
+                    } else {
+                        return null;
+                    }
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return null;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return null;
+        } finally {
+            GET_ACCOUNT_BY_ID_TIME.observeSince(start);
         }
+    }
 
+    /**
+     * Passes every account_id in the account table to the consumer, without building a list.
+     */
+    public void forEachAccountId(IntConsumer consumer) {
+        long start = System.nanoTime();
+        try {
+            String sql = "SELECT account_id FROM account";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                 ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(resultSet.getInt(1));
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        } finally {
+            FOR_EACH_ACCOUNT_ID_TIME.observeSince(start);
+        }
     }
-    
+
+    /**
+     * Passes every username in the account table to the consumer, without building a list.
+     */
+    public void forEachUsername(Consumer<String> consumer) {
+        long start = System.nanoTime();
+        try {
+            String sql = "SELECT username FROM account";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                 ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    String username = resultSet.getString(1);
+                    if (username != null) {
+                        consumer.accept(username);
+                    }
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        } finally {
+            FOR_EACH_USERNAME_TIME.observeSince(start);
+        }
+    }
+
+    private static LatencyHistogram timer(String method) {
+        return Metrics.histogram("dao_call_seconds", "Time taken by each DAO method, including borrowing a connection.",
+                Metrics.labels("dao", "AccountDAO", "method", method));
+    }
+
 }
@@ -0,0 +1,97 @@
+package DAO;
+
+import Model.Follow;
+import Util.ConnectionUtil;
+import Util.DatabaseUnavailableException;
+import Util.LatencyHistogram;
+import Util.Metrics;
+
+import java.sql.*;
+import java.util.function.Consumer;
+
+public class FollowDAO {
+
+    /**
+     * Latency of each public method, published as dao_call_seconds.
+     */
+    private static final LatencyHistogram INSERT_FOLLOW_TIME = timer("insertFollow");
+    private static final LatencyHistogram DELETE_FOLLOW_TIME = timer("deleteFollow");
+    private static final LatencyHistogram FOR_EACH_FOLLOW_TIME = timer("forEachFollow");
+
+    /**
+     * Records that one account follows another. Following an account already followed is not an error.
+     * @return true if the follow exists afterwards.
+     */
+    public boolean insertFollow(Follow follow) {
+        long start = System.nanoTime();
+        try {
+            String sql = "MERGE INTO follow (follower_id, followee_id) KEY (follower_id, followee_id) VALUES (?, ?)";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setInt(1, follow.getFollower_id());
+                preparedStatement.setInt(2, follow.getFollowee_id());
+                preparedStatement.executeUpdate();
+                return true;
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+                return false;
+            }
+        } finally {
+            INSERT_FOLLOW_TIME.observeSince(start);
+        }
+    }
+
+    /**
+     * @return true if the follow existed and was removed.
+     */
+    public boolean deleteFollow(Follow follow) {
+        long start = System.nanoTime();
+        try {
+            String sql = "DELETE FROM follow WHERE follower_id = ? AND followee_id = ?";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setInt(1, follow.getFollower_id());
+                preparedStatement.setInt(2, follow.getFollowee_id());
+                return preparedStatement.executeUpdate() > 0;
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            }
+        } finally {
+            DELETE_FOLLOW_TIME.observeSince(start);
+        }
+    }
+
+    /**
+     * Passes every row of the follow table to the consumer, without building a list.
+     */
+    public void forEachFollow(Consumer<Follow> consumer) {
+        long start = System.nanoTime();
+        try {
+            String sql = "SELECT follower_id, followee_id FROM follow";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                 ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(new Follow(resultSet.getInt(1), resultSet.getInt(2)));
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        } finally {
+            FOR_EACH_FOLLOW_TIME.observeSince(start);
+        }
+    }
+
+    private static LatencyHistogram timer(String method) {
+        return Metrics.histogram("dao_call_seconds", "Time taken by each DAO method, including borrowing a connection.",
+                Metrics.labels("dao", "FollowDAO", "method", method));
+    }
+
+}
@@ -1,162 +1,591 @@
 package DAO;
 
 import Model.Message;
+import Model.MessageCursor;
+import Util.Config;
 import Util.ConnectionUtil;
+import Util.DatabaseUnavailableException;
+import Util.LatencyHistogram;
+import Util.Metrics;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import java.sql.*;
 
 public class MessageDAO {
 
+    /**
+     * How many rows the driver is asked to fetch at a time when a query is streamed rather than collected.
+     */
+    private static final int STREAM_FETCH_SIZE = Config.getInt("messages.stream.fetchSize", 500);
+
+    /**
+     * Latency of each public method, published as dao_call_seconds.
+     */
+    private static final LatencyHistogram INSERT_MESSAGE_TIME = timer("insertMessage");
+    private static final LatencyHistogram INSERT_MESSAGES_TIME = timer("insertMessages");
+    private static final LatencyHistogram GET_ALL_MESSAGES_TIME = timer("getAllMessages");
+    private static final LatencyHistogram GET_MESSAGES_PAGE_TIME = timer("getMessagesPage");
+    private static final LatencyHistogram GET_MESSAGE_BY_ID_TIME = timer("getMessageById");
+    private static final LatencyHistogram GET_MESSAGES_BY_IDS_TIME = timer("getMessagesByIds");
+    private static final LatencyHistogram DELETE_MESSAGE_BY_ID_TIME = timer("deleteMessageById");
+    private static final LatencyHistogram UPDATE_MESSAGE_TIME = timer("updateMessage");
+    private static final LatencyHistogram GET_MESSAGES_BY_ACCOUNT_ID_TIME = timer("getMessagesByAccountId");
+    private static final LatencyHistogram GET_MESSAGES_BY_ACCOUNT_ID_PAGE_TIME = timer("getMessagesByAccountIdPage");
+    private static final LatencyHistogram GET_NEWEST_MESSAGES_BY_ACCOUNT_IDS_TIME =
+            timer("getNewestMessagesByAccountIds");
+    private static final LatencyHistogram STREAM_ALL_MESSAGES_TIME = timer("streamAllMessages");
+    private static final LatencyHistogram STREAM_MESSAGES_BY_ACCOUNT_ID_TIME = timer("streamMessagesByAccountId");
+
     public Message insertMessage(Message message) {
-        Connection connection = ConnectionUtil.getConnection();
+        long start = System.nanoTime();
         try {
-           
-        String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
-        PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
-       
-        preparedStatement.setInt(1, message.getPosted_by());
-        preparedStatement.setString(2, message.getMessage_text());
-        preparedStatement.setLong(3, message.getTime_posted_epoch());
+                preparedStatement.setInt(1, message.getPosted_by());
+                preparedStatement.setString(2, message.getMessage_text());
+                preparedStatement.setLong(3, message.getTime_posted_epoch());
 
-        
-        preparedStatement.executeUpdate();
+                preparedStatement.executeUpdate();
 
-        // Get the generated primary key (message_id)
-        ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys();
-        if (pkeyResultSet.next()) {
-            int generatedMessageId = pkeyResultSet.getInt(1);
+                // Get the generated primary key (message_id)
+                try (ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys()) {
+                    if (pkeyResultSet.next()) {
+                        int generatedMessageId = pkeyResultSet.getInt(1);
 
-            // Return the newly created message object with the generated message_id
-            return new Message(generatedMessageId, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+                        // Return the newly created message object with the generated message_id
+                        return new Message(generatedMessageId, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+                    }
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+            return null;
+        } finally {
+            INSERT_MESSAGE_TIME.observeSince(start);
         }
-    } catch (SQLException e) {
-        System.out.println(e.getMessage());
     }
-    return null;
-}
 
-public List<Message> getAllMessages() {
-    Connection connection = ConnectionUtil.getConnection();
-    List<Message> messages = new ArrayList<>();
-    try {
-        String sql = "SELECT * FROM message";
-        PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    /**
+     * Inserts several messages with a single JDBC batch in one transaction. Either every message is inserted or, if
+     * any insert fails, none are.
+     * @return the inserted messages with their generated message_ids, in the order given, or null if the batch
+     * failed and was rolled back.
+     */
+    public List<Message> insertMessages(List<Message> messages) {
+        long start = System.nanoTime();
+        try {
+            if (messages.isEmpty()) {
+                return new ArrayList<>();
+            }
+            String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
+            try (Connection connection = ConnectionUtil.getConnection()) {
+                connection.setAutoCommit(false);
+                try (PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    for (Message message : messages) {
+                        preparedStatement.setInt(1, message.getPosted_by());
+                        preparedStatement.setString(2, message.getMessage_text());
+                        preparedStatement.setLong(3, message.getTime_posted_epoch());
+                        preparedStatement.addBatch();
+                    }
+                    preparedStatement.executeBatch();
 
-        ResultSet resultSet = preparedStatement.executeQuery();
+                    List<Message> inserted = new ArrayList<>(messages.size());
+                    try (ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys()) {
+                        for (Message message : messages) {
+                            if (!pkeyResultSet.next()) {
+                                throw new SQLException("Expected " + messages.size() + " generated keys, got "
+                                        + inserted.size());
+                            }
+                            inserted.add(new Message(pkeyResultSet.getInt(1), message.getPosted_by(),
+                                    message.getMessage_text(), message.getTime_posted_epoch()));
+                        }
+                    }
+                    connection.commit();
+                    return inserted;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+            return null;
+        } finally {
+            INSERT_MESSAGES_TIME.observeSince(start);
+        }
+    }
 
-        while (resultSet.next()) {
-            int message_id = resultSet.getInt("message_id");
-            int posted_by = resultSet.getInt("posted_by");
-            String message_text = resultSet.getString("message_text");
-            long time_posted_epoch = resultSet.getLong("time_posted_epoch");
+    public List<Message> getAllMessages() {
+        long start = System.nanoTime();
+        try {
+            List<Message> messages = new ArrayList<>();
+            String sql = "SELECT * FROM message";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                 ResultSet resultSet = preparedStatement.executeQuery()) {
 
-            Message message = new Message(message_id, posted_by, message_text, time_posted_epoch);
-            messages.add(message);
+                while (resultSet.next()) {
+                    messages.add(mapRow(resultSet));
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            return messages;
+        } finally {
+            GET_ALL_MESSAGES_TIME.observeSince(start);
         }
-    } catch (SQLException e) {
-        e.printStackTrace();
     }
-    return messages;
-}
 
-public Message getMessageById(int message_id) {
-    Connection connection = ConnectionUtil.getConnection();
-    try {
-        String sql = "SELECT * FROM message WHERE message_id = ?";
-        PreparedStatement preparedStatement = connection.prepareStatement(sql);
-        preparedStatement.setInt(1, message_id);
-
-        ResultSet resultSet = preparedStatement.executeQuery();
-        if (resultSet.next()) {
-            int retrievedMessageId = resultSet.getInt("message_id");
-            int posted_by = resultSet.getInt("posted_by");
-            String message_text = resultSet.getString("message_text");
-            long time_posted_epoch = resultSet.getLong("time_posted_epoch");
-            return new Message(retrievedMessageId, posted_by, message_text, time_posted_epoch);
-        } else {
-            return null; 
-        }
-    } catch (SQLException e) {
-        e.printStackTrace();
-        return null;
-    } 
-}
+    /**
+     * Retrieves one page of messages ordered by (time_posted_epoch, message_id). Rather than skipping rows with
+     * OFFSET, the page starts with a seek to the row just after the given cursor, so every page costs the same no
+     * matter how deep into the table it is.
+     * @param after the position of the last message on the previous page, or null for the first page.
+     * @param limit the maximum number of messages to return.
+     * @return up to limit messages following the cursor.
+     */
+    public List<Message> getMessagesPage(MessageCursor after, int limit) {
+        long start = System.nanoTime();
+        try {
+            List<Message> messages = new ArrayList<>(limit);
+            String sql = after == null
+                    ? "SELECT * FROM message ORDER BY time_posted_epoch, message_id LIMIT ?"
+                    // The leading ">=" is the range H2 seeks to in idx_message_time; the rest skips ties already seen
+                    : "SELECT * FROM message WHERE time_posted_epoch >= ? AND (time_posted_epoch > ? OR message_id > ?) "
+                            + "ORDER BY time_posted_epoch, message_id LIMIT ?";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                int index = 1;
+                if (after != null) {
+                    preparedStatement.setLong(index++, after.getTime_posted_epoch());
+                    preparedStatement.setLong(index++, after.getTime_posted_epoch());
+                    preparedStatement.setInt(index++, after.getMessage_id());
+                }
+                preparedStatement.setInt(index, limit);
 
-public Message deleteMessageById(int message_id) {
-    Connection connection = ConnectionUtil.getConnection();
-    try {
-        // First, retrieve the message details before deleting it
-        String selectSql = "SELECT * FROM message WHERE message_id = ?";
-        PreparedStatement selectStatement = connection.prepareStatement(selectSql);
-        selectStatement.setInt(1, message_id);
-        
-        ResultSet resultSet = selectStatement.executeQuery();
-        if (resultSet.next()) {
-            int retrievedMessageId = resultSet.getInt("message_id");
-            int posted_by = resultSet.getInt("posted_by");
-            String message_text = resultSet.getString("message_text");
-            long time_posted_epoch = resultSet.getLong("time_posted_epoch");
-            
-            // Now delete the message
-            String deleteSql = "DELETE FROM message WHERE message_id = ?";
-            PreparedStatement deleteStatement = connection.prepareStatement(deleteSql);
-            deleteStatement.setInt(1, message_id);
-            deleteStatement.executeUpdate();  
-
-            
-            return new Message(retrievedMessageId, posted_by, message_text, time_posted_epoch);
-        } else {
-            return null; 
-        }
-    } catch (SQLException e) {
-        e.printStackTrace();
-        return null;
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        messages.add(mapRow(resultSet));
+                    }
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            return messages;
+        } finally {
+            GET_MESSAGES_PAGE_TIME.observeSince(start);
+        }
     }
-}
 
-public boolean updateMessage(Message message) {
-    Connection connection = ConnectionUtil.getConnection();
-    try {
-        String sql = "UPDATE message SET message_text = ? WHERE message_id = ?";
-        PreparedStatement preparedStatement = connection.prepareStatement(sql);
-        preparedStatement.setString(1, message.getMessage_text());
-        preparedStatement.setInt(2, message.getMessage_id());
-        int rowsAffected = preparedStatement.executeUpdate(); 
-        return rowsAffected > 0; 
-    } catch (SQLException e) {
-        e.printStackTrace();
-        return false;
+    public Message getMessageById(int message_id) {
+        long start = System.nanoTime();
+        try {
+            String sql = "SELECT * FROM message WHERE message_id = ?";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setInt(1, message_id);
+
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    if (resultSet.next()) {
+                        return mapRow(resultSet);
+                    } else {
+                        return null;
+                    }
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return null;
+            }
+        } finally {
+            GET_MESSAGE_BY_ID_TIME.observeSince(start);
+        }
     }
-}
 
-public List<Message> getMessagesByAccountId(int accountId) {
-    Connection connection = ConnectionUtil.getConnection();
-    List<Message> messages = new ArrayList<>();
+    /**
+     * Retrieves the messages with the given ids in one query, by primary key lookups.
+     * @return the messages that exist, in no particular order.
+     */
+    public List<Message> getMessagesByIds(int[] messageIds) {
+        long start = System.nanoTime();
+        try {
+            List<Message> messages = new ArrayList<>(messageIds.length);
+            String sql = "SELECT * FROM message WHERE message_id = ANY(?)";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                Integer[] ids = new Integer[messageIds.length];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = messageIds[i];
+                }
+                preparedStatement.setArray(1, connection.createArrayOf("INTEGER", ids));
+
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        messages.add(mapRow(resultSet));
+                    }
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            return messages;
+        } finally {
+            GET_MESSAGES_BY_IDS_TIME.observeSince(start);
+        }
+    }
 
-    try {
-        String sql = "SELECT * FROM message WHERE posted_by = ?";
-        PreparedStatement preparedStatement = connection.prepareStatement(sql);
-        preparedStatement.setInt(1, accountId);
-        ResultSet resultSet = preparedStatement.executeQuery();
+    /**
+     * Deletes a message and returns the row as it was just before deletion, in a single statement. H2's OLD TABLE
+     * data-change delta table yields exactly the rows removed by this DELETE, so when two callers race to delete the
+     * same message only one of them gets it back.
+     * @return the deleted message, or null if no such message existed.
+     */
+    public Message deleteMessageById(int message_id) {
+        long start = System.nanoTime();
+        try {
+            String sql = "SELECT * FROM OLD TABLE (DELETE FROM message WHERE message_id = ?)";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setInt(1, message_id);
 
-        while (resultSet.next()) {
-            int messageId = resultSet.getInt("message_id");
-            int posted_by = resultSet.getInt("posted_by");
-            String message_text = resultSet.getString("message_text");
-            long time_posted_epoch = resultSet.getLong("time_posted_epoch");
-            Message message = new Message(messageId, posted_by, message_text, time_posted_epoch);
-            messages.add(message);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    if (resultSet.next()) {
+                        return mapRow(resultSet);
+                    } else {
+                        return null;
+                    }
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return null;
+            }
+        } finally {
+            DELETE_MESSAGE_BY_ID_TIME.observeSince(start);
         }
-    } catch (SQLException e) {
-        e.printStackTrace();
     }
 
-    return messages;
-}
+    public boolean updateMessage(Message message) {
+        long start = System.nanoTime();
+        try {
+            String sql = "UPDATE message SET message_text = ? WHERE message_id = ?";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setString(1, message.getMessage_text());
+                preparedStatement.setInt(2, message.getMessage_id());
+                int rowsAffected = preparedStatement.executeUpdate();
+                return rowsAffected > 0;
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            }
+        } finally {
+            UPDATE_MESSAGE_TIME.observeSince(start);
+        }
+    }
+
+    public List<Message> getMessagesByAccountId(int accountId) {
+        long start = System.nanoTime();
+        try {
+            List<Message> messages = new ArrayList<>();
+            String sql = "SELECT * FROM message WHERE posted_by = ?";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setInt(1, accountId);
 
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        messages.add(mapRow(resultSet));
+                    }
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
 
+            return messages;
+        } finally {
+            GET_MESSAGES_BY_ACCOUNT_ID_TIME.observeSince(start);
+        }
+    }
+
+    /**
+     * Retrieves one page of an account's timeline, restricted to since <= time_posted_epoch < until and ordered by
+     * (time_posted_epoch, message_id) in either direction. The query is always a bounded range on
+     * (posted_by, time_posted_epoch), which is what makes H2 walk idx_message_posted_by_time (newest first) or
+     * idx_message_posted_by_time_asc (oldest first) in order and stop after limit rows, instead of reading every row
+     * the account has through the foreign key index and sorting them.
+     * @param since the earliest time_posted_epoch to include.
+     * @param until the time_posted_epoch to stop before.
+     * @param newestFirst true for descending order, false for ascending.
+     * @param after the position of the last message on the previous page, or null for the first page.
+     * @param limit the maximum number of messages to return.
+     * @return up to limit messages of the account following the cursor in the requested order.
+     */
+    public List<Message> getMessagesByAccountIdPage(int accountId, long since, long until, boolean newestFirst,
+                                                    MessageCursor after, int limit) {
+        long start = System.nanoTime();
+        try {
+            List<Message> messages = new ArrayList<>(limit);
+            if (since >= until) {
+                return messages;
+            }
+            long lowest = since;
+            long highest = until - 1;
+            String sql = "SELECT * FROM message WHERE posted_by = ? AND time_posted_epoch >= ? AND time_posted_epoch <= ?";
+            if (after != null) {
+                // Narrow the range to the cursor, then skip ties already seen, as getMessagesPage does
+                if (newestFirst) {
+                    highest = Math.min(highest, after.getTime_posted_epoch());
+                    sql += " AND (time_posted_epoch < ? OR message_id < ?)";
+                } else {
+                    lowest = Math.max(lowest, after.getTime_posted_epoch());
+                    sql += " AND (time_posted_epoch > ? OR message_id > ?)";
+                }
+            }
+            sql += newestFirst
+                    ? " ORDER BY posted_by, time_posted_epoch DESC, message_id DESC LIMIT ?"
+                    : " ORDER BY posted_by, time_posted_epoch, message_id LIMIT ?";
+
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                int index = 1;
+                preparedStatement.setInt(index++, accountId);
+                preparedStatement.setLong(index++, lowest);
+                preparedStatement.setLong(index++, highest);
+                if (after != null) {
+                    preparedStatement.setLong(index++, after.getTime_posted_epoch());
+                    preparedStatement.setInt(index++, after.getMessage_id());
+                }
+                preparedStatement.setInt(index, limit);
 
-}
\ No newline at end of file
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        messages.add(mapRow(resultSet));
+                    }
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            return messages;
+        } finally {
+            GET_MESSAGES_BY_ACCOUNT_ID_PAGE_TIME.observeSince(start);
+        }
+    }
+
+    /**
+     * Returns the newest messages of several accounts together, newest first in (time_posted_epoch, message_id)
+     * order, at most limit in all. Each account is walked along idx_message_posted_by_time in chunks on a single
+     * reused statement, and the walks are merged, so about limit rows are read however many accounts there are: each
+     * account's first chunk is its share of limit, and only an account whose rows keep being taken reads more, older
+     * than its last row, in doubling chunks. A single query with posted_by = ANY(?) would make H2 look up every
+     * message of every account and sort them all before applying the limit.
+     * @param before only messages older than this position are returned, or null for the newest.
+     */
+    public List<Message> getNewestMessagesByAccountIds(int[] accountIds, MessageCursor before, int limit) {
+        long start = System.nanoTime();
+        try {
+            List<Message> messages = new ArrayList<>();
+            if (accountIds.length == 0 || limit <= 0) {
+                return messages;
+            }
+            String sql = "SELECT * FROM message WHERE posted_by = ? "
+                    + "AND time_posted_epoch >= ? AND time_posted_epoch <= ? "
+                    + "AND (time_posted_epoch < ? OR message_id < ?) "
+                    + "ORDER BY posted_by, time_posted_epoch DESC, message_id DESC LIMIT ?";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                // The account whose next row is the newest at the head
+                PriorityQueue<AccountWalk> walks = new PriorityQueue<>(accountIds.length,
+                        (a, b) -> compareNewestFirst(a.next(), b.next()));
+                int firstChunk = limit / accountIds.length + 1;
+                for (int accountId : accountIds) {
+                    AccountWalk walk = new AccountWalk(accountId);
+                    long time = before == null ? Long.MAX_VALUE : before.getTime_posted_epoch();
+                    int messageId = before == null ? Integer.MAX_VALUE : before.getMessage_id();
+                    if (walk.fetch(preparedStatement, time, messageId, Math.min(firstChunk, limit))) {
+                        walks.add(walk);
+                    }
+                }
+                while (messages.size() < limit && !walks.isEmpty()) {
+                    AccountWalk walk = walks.poll();
+                    Message message = walk.take();
+                    messages.add(message);
+                    int remaining = limit - messages.size();
+                    if (walk.hasNext() || walk.more && remaining > 0 && walk.fetch(preparedStatement,
+                            message.getTime_posted_epoch(), message.getMessage_id(),
+                            Math.min(walk.chunk * 2, remaining))) {
+                        walks.add(walk);
+                    }
+                }
+            } catch (SQLTimeoutException e) {
+                throw new DatabaseUnavailableException(e);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            return messages;
+        } finally {
+            GET_NEWEST_MESSAGES_BY_ACCOUNT_IDS_TIME.observeSince(start);
+        }
+    }
+
+    /**
+     * Streams every message to the handler straight from a forward-only result set, without building a list, so
+     * memory use stays flat however large the table is.
+     * @throws SQLException if the query fails; some rows may already have been handled.
+     * @throws IOException if the handler fails, which stops the stream.
+     */
+    public void streamAllMessages(MessageRowHandler handler) throws SQLException, IOException {
+        long start = System.nanoTime();
+        try {
+            String sql = "SELECT * FROM message ORDER BY time_posted_epoch, message_id";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = prepareStreamingStatement(connection, sql)) {
+                streamRows(preparedStatement, handler);
+            }
+        } finally {
+            STREAM_ALL_MESSAGES_TIME.observeSince(start);
+        }
+    }
+
+    /**
+     * Streams every message posted by the given account to the handler, as {@link #streamAllMessages} does.
+     */
+    public void streamMessagesByAccountId(int accountId, MessageRowHandler handler) throws SQLException, IOException {
+        long start = System.nanoTime();
+        try {
+            String sql = "SELECT * FROM message WHERE posted_by = ? ORDER BY time_posted_epoch, message_id";
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = prepareStreamingStatement(connection, sql)) {
+                preparedStatement.setInt(1, accountId);
+                streamRows(preparedStatement, handler);
+            }
+        } finally {
+            STREAM_MESSAGES_BY_ACCOUNT_ID_TIME.observeSince(start);
+        }
+    }
+
+    private static PreparedStatement prepareStreamingStatement(Connection connection, String sql) throws SQLException {
+        PreparedStatement preparedStatement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+        preparedStatement.setFetchSize(STREAM_FETCH_SIZE);
+        return preparedStatement;
+    }
+
+    private static void streamRows(PreparedStatement preparedStatement, MessageRowHandler handler)
+            throws SQLException, IOException {
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            // One instance for the whole stream; handlers are told not to keep it
+            Message row = new Message();
+            while (resultSet.next()) {
+                row.setMessage_id(resultSet.getInt("message_id"));
+                row.setPosted_by(resultSet.getInt("posted_by"));
+                row.setMessage_text(resultSet.getString("message_text"));
+                row.setTime_posted_epoch(resultSet.getLong("time_posted_epoch"));
+                handler.handle(row);
+            }
+        }
+    }
+
+    /**
+     * Builds a Message from the current row of a result set over the message table.
+     */
+    private static Message mapRow(ResultSet resultSet) throws SQLException {
+        int message_id = resultSet.getInt("message_id");
+        int posted_by = resultSet.getInt("posted_by");
+        String message_text = resultSet.getString("message_text");
+        long time_posted_epoch = resultSet.getLong("time_posted_epoch");
+        return new Message(message_id, posted_by, message_text, time_posted_epoch);
+    }
+
+    private static LatencyHistogram timer(String method) {
+        return Metrics.histogram("dao_call_seconds", "Time taken by each DAO method, including borrowing a connection.",
+                Metrics.labels("dao", "MessageDAO", "method", method));
+    }
+
+    /**
+     * Orders messages newest first by (time_posted_epoch, message_id).
+     */
+    private static int compareNewestFirst(Message a, Message b) {
+        int byTime = Long.compare(b.getTime_posted_epoch(), a.getTime_posted_epoch());
+        return byTime != 0 ? byTime : Integer.compare(b.getMessage_id(), a.getMessage_id());
+    }
+
+    /**
+     * One account's rows for {@link #getNewestMessagesByAccountIds}, newest first, read a chunk at a time.
+     */
+    private static final class AccountWalk {
+        final int accountId;
+        final List<Message> rows = new ArrayList<>();
+        int taken;
+        /**
+         * The size of the last chunk asked for.
+         */
+        int chunk;
+        /**
+         * Whether the last chunk came back full, so the account may have older rows.
+         */
+        boolean more;
+
+        AccountWalk(int accountId) {
+            this.accountId = accountId;
+        }
+
+        Message next() {
+            return rows.get(taken);
+        }
+
+        Message take() {
+            return rows.get(taken++);
+        }
+
+        boolean hasNext() {
+            return taken < rows.size();
+        }
+
+        /**
+         * Replaces the rows with the account's next chunk older than the given position.
+         * @return true if any rows were read.
+         */
+        boolean fetch(PreparedStatement preparedStatement, long time, int messageId, int size) throws SQLException {
+            preparedStatement.setInt(1, accountId);
+            preparedStatement.setLong(2, Long.MIN_VALUE);
+            preparedStatement.setLong(3, time);
+            preparedStatement.setLong(4, time);
+            preparedStatement.setInt(5, messageId);
+            preparedStatement.setInt(6, size);
+            rows.clear();
+            taken = 0;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows.add(mapRow(resultSet));
+                }
+            }
+            chunk = size;
+            more = rows.size() == size;
+            return !rows.isEmpty();
+        }
+    }
+
+}
@@ -0,0 +1,19 @@
+package DAO;
+
+import Model.Message;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows of a streamed message query one at a time, while the result set is still open.
+ */
+@FunctionalInterface
+public interface MessageRowHandler {
+
+    /**
+     * @param message the current row. The same instance is reused for every row of a stream, so it must not be
+     *                retained after this method returns.
+     * @throws IOException if the row could not be written to its destination; this aborts the stream.
+     */
+    void handle(Message message) throws IOException;
+}
@@ -1,4 +1,6 @@
 import Controller.SocialMediaController;
+import Util.SchemaMigrator;
+import Util.ServerThreads;
 import io.javalin.Javalin;
 
 /**
@@ -7,8 +9,10 @@ import io.javalin.Javalin;
  */
 public class Main {
     public static void main(String[] args) {
+        SchemaMigrator.migrate();
         SocialMediaController controller = new SocialMediaController();
         Javalin app = controller.startAPI();
         app.start(8080);
+        System.out.println("Handling requests on " + ServerThreads.mode() + " threads");
     }
 }
@@ -0,0 +1,64 @@
+package Model;
+
+/**
+ * This is a class that models one account following another.
+ */
+public class Follow {
+    /**
+     * The account_id of the account that follows.
+     */
+    public int follower_id;
+    /**
+     * The account_id of the account being followed.
+     */
+    public int followee_id;
+
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public Follow() {
+    }
+
+    public Follow(int follower_id, int followee_id) {
+        this.follower_id = follower_id;
+        this.followee_id = followee_id;
+    }
+
+    public int getFollower_id() {
+        return follower_id;
+    }
+
+    public void setFollower_id(int follower_id) {
+        this.follower_id = follower_id;
+    }
+
+    public int getFollowee_id() {
+        return followee_id;
+    }
+
+    public void setFollowee_id(int followee_id) {
+        this.followee_id = followee_id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Follow follow = (Follow) o;
+        return follower_id == follow.follower_id && followee_id == follow.followee_id;
+    }
+
+    @Override
+    public int hashCode() {
+        return follower_id * 31 + followee_id;
+    }
+
+    @Override
+    public String toString() {
+        return "Follow{" +
+                "follower_id=" + follower_id +
+                ", followee_id=" + followee_id +
+                '}';
+    }
+}
@@ -0,0 +1,74 @@
+package Model;
+
+/**
+ * This is a class that models the outcome of one message in a batch creation request. Exactly one of message and
+ * error is set.
+ */
+public class MessageBatchResult {
+    /**
+     * The position of the message in the submitted batch, starting at 0.
+     */
+    public int index;
+    /**
+     * The created message, including its generated message_id, or null if it was not created.
+     */
+    public Message message;
+    /**
+     * Why the message was not created, or null if it was.
+     */
+    public String error;
+
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessageBatchResult() {
+    }
+
+    public MessageBatchResult(int index, Message message, String error) {
+        this.index = index;
+        this.message = message;
+        this.error = error;
+    }
+
+    public static MessageBatchResult created(int index, Message message) {
+        return new MessageBatchResult(index, message, null);
+    }
+
+    public static MessageBatchResult failed(int index, String error) {
+        return new MessageBatchResult(index, null, error);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageBatchResult{" +
+                "index=" + index +
+                ", message=" + message +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
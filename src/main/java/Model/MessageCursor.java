@@ -0,0 +1,92 @@
+package Model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * This is a class that models a position in a time-ordered list of messages. It records the time_posted_epoch and
+ * message_id of the last message a client has seen, so that the next page can be found with an index seek on
+ * (time_posted_epoch, message_id) instead of skipping rows with OFFSET.
+ *
+ * Clients only ever see the cursor as an opaque, URL-safe string produced by {@link #encode()}.
+ */
+public class MessageCursor {
+    /**
+     * The time_posted_epoch of the last message on the previous page.
+     */
+    private final long time_posted_epoch;
+    /**
+     * The message_id of the last message on the previous page, used to break ties between messages posted at the
+     * same time.
+     */
+    private final int message_id;
+
+    public MessageCursor(long time_posted_epoch, int message_id) {
+        this.time_posted_epoch = time_posted_epoch;
+        this.message_id = message_id;
+    }
+
+    /**
+     * @param message the last message of a page.
+     * @return a cursor pointing just past the given message.
+     */
+    public static MessageCursor after(Message message) {
+        return new MessageCursor(message.getTime_posted_epoch(), message.getMessage_id());
+    }
+
+    public long getTime_posted_epoch() {
+        return time_posted_epoch;
+    }
+
+    public int getMessage_id() {
+        return message_id;
+    }
+
+    /**
+     * @return the opaque string form of this cursor.
+     */
+    public String encode() {
+        String raw = time_posted_epoch + ":" + message_id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @param encoded a string previously produced by {@link #encode()}.
+     * @return the decoded cursor.
+     * @throws IllegalArgumentException if the string is not a valid cursor.
+     */
+    public static MessageCursor decode(String encoded) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.US_ASCII);
+            int separator = raw.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Malformed cursor: " + encoded);
+            }
+            return new MessageCursor(Long.parseLong(raw.substring(0, separator)),
+                    Integer.parseInt(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + encoded, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MessageCursor cursor = (MessageCursor) o;
+        return time_posted_epoch == cursor.time_posted_epoch && message_id == cursor.message_id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(time_posted_epoch) * 31 + message_id;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageCursor{" +
+                "time_posted_epoch=" + time_posted_epoch +
+                ", message_id=" + message_id +
+                '}';
+    }
+}
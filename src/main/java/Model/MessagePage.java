@@ -0,0 +1,54 @@
+package Model;
+
+import java.util.List;
+
+/**
+ * This is a class that models one page of a paginated message listing.
+ */
+public class MessagePage {
+    /**
+     * The messages on this page, in the order they were requested.
+     */
+    public List<Message> messages;
+    /**
+     * An opaque cursor to pass back as the "cursor" query parameter to fetch the next page, or null if this is the
+     * last page.
+     */
+    public String next_cursor;
+
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessagePage() {
+    }
+
+    public MessagePage(List<Message> messages, String next_cursor) {
+        this.messages = messages;
+        this.next_cursor = next_cursor;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    public String getNext_cursor() {
+        return next_cursor;
+    }
+
+    public void setNext_cursor(String next_cursor) {
+        this.next_cursor = next_cursor;
+    }
+
+    @Override
+    public String toString() {
+        return "MessagePage{" +
+                "messages=" + messages +
+                ", next_cursor='" + next_cursor + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,80 @@
+package Service;
+
+import DAO.AccountDAO;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An in-memory set of the account_ids that exist, stored as a bitmap with one bit per possible id. Because
+ * account_ids are handed out by auto_increment they are dense, so a million accounts take about 125 KB.
+ *
+ * Lookups are lock-free. Additions are rare (one per registration) and synchronized; when an id falls beyond the end
+ * of the bitmap a larger copy is published.
+ */
+public class AccountIdSet {
+
+    private volatile AtomicLongArray words = new AtomicLongArray(1);
+    private int size;
+
+    /**
+     * @return a set holding every account_id currently in the account table.
+     */
+    public static AccountIdSet load(AccountDAO accountDAO) {
+        AccountIdSet accountIds = new AccountIdSet();
+        accountDAO.forEachAccountId(accountIds::add);
+        return accountIds;
+    }
+
+    /**
+     * @return true if the account_id is known to exist.
+     */
+    public boolean contains(int accountId) {
+        if (accountId < 0) {
+            return false;
+        }
+        AtomicLongArray current = words;
+        int index = accountId >>> 6;
+        return index < current.length() && (current.get(index) & (1L << accountId)) != 0;
+    }
+
+    /**
+     * Records that an account_id exists.
+     */
+    public synchronized void add(int accountId) {
+        if (accountId < 0) {
+            throw new IllegalArgumentException("account_id must not be negative: " + accountId);
+        }
+        int index = accountId >>> 6;
+        AtomicLongArray current = words;
+        if (index >= current.length()) {
+            AtomicLongArray grown = new AtomicLongArray(Math.max(index + 1, current.length() * 2));
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            words = grown;
+            current = grown;
+        }
+        long bit = 1L << accountId;
+        long word = current.get(index);
+        if ((word & bit) == 0) {
+            current.set(index, word | bit);
+            size++;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of ids held and the bitmap's memory footprint, for the admin stats endpoint.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size());
+        stats.put("bitmap_bytes", (long) words.length() * Long.BYTES);
+        return stats;
+    }
+}
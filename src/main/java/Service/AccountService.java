@@ -2,35 +2,171 @@ package Service;
 
 import DAO.AccountDAO;
 import Model.Account;
+import Util.BloomFilter;
+import Util.Bulkhead;
+import Util.Config;
+import Util.ConnectionUtil;
+import Util.DatabaseExecutor;
+import Util.PasswordHasher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
 
 public class AccountService {
 
     private AccountDAO accountDAO;
+    private AccountIdSet accountIds;
+    private Bulkhead bulkhead;
+    private DatabaseExecutor dbExecutor;
+    private PasswordHasher passwordHasher;
+    /**
+     * Every registered username. A "definitely not present" answer lets registration skip the existence query.
+     */
+    private BloomFilter usernameFilter;
+    private final LongAdder existenceQueriesSkipped = new LongAdder();
+    private final LongAdder existenceQueriesRun = new LongAdder();
+    private final LongAdder filterFalsePositives = new LongAdder();
 
     public AccountService() {
-        this.accountDAO = new AccountDAO();
+        this(new AccountDAO());
+    }
+
+    public AccountService(AccountDAO accountDAO) {
+        this.accountDAO = accountDAO;
+        this.accountIds = AccountIdSet.load(accountDAO);
+        this.bulkhead = ConnectionUtil.getBulkhead();
+        this.dbExecutor = DatabaseExecutor.get();
+        this.passwordHasher = PasswordHasher.get();
+        this.usernameFilter = new BloomFilter(Config.getLong("accounts.usernameFilter.expectedInsertions", 1_000_000),
+                Config.getDouble("accounts.usernameFilter.falsePositiveRate", 0.01));
+        accountDAO.forEachUsername(usernameFilter::add);
+    }
+
+    /**
+     * @return the set of existing account_ids, kept current as accounts are registered.
+     */
+    public AccountIdSet getAccountIds() {
+        return accountIds;
     }
 
+    /**
+     * Registers an account; see {@link #registerAccountAsync}.
+     */
     public Account registerAccount(String username, String password) {
+        return await(registerAccountAsync(username, password));
+    }
+
+    /**
+     * Registers an account, storing a hash of its password. The username check and the insert run on the
+     * DatabaseExecutor and the password is hashed in between on the PasswordHasher's pool, so neither the caller nor
+     * a database thread spends time hashing.
+     * @return a future completed with the new account, which carries the password as given rather than its hash, or
+     * with null if the username or password is not acceptable or the username is taken.
+     */
+    public CompletableFuture<Account> registerAccountAsync(String username, String password) {
         if (username == null || username.trim().isEmpty()) {
-            return null; 
+            return CompletableFuture.completedFuture(null);
         }
 
         if (password == null || password.length() < 4) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return dbExecutor.supply(() -> usernameMightExist(username)).thenCompose(exists -> exists
+                ? CompletableFuture.completedFuture(null)
+                : passwordHasher.hashAsync(password)
+                        .thenCompose(hash -> dbExecutor.supply(() -> insertAccount(username, password, hash))));
+    }
+
+    private Account insertAccount(String username, String password, String passwordHash) {
+        // If a concurrent registration took the username after the check, the unique constraint rejects this insert
+        Account insertedAccount = bulkhead.call(() -> accountDAO.insertAccount(new Account(username, passwordHash)));
+        if (insertedAccount == null) {
             return null;
         }
+        usernameFilter.add(username);
+        accountIds.add(insertedAccount.getAccount_id());
+        return new Account(insertedAccount.getAccount_id(), username, password);
+    }
 
-        if (accountDAO.doesUsernameExist(username)) {
-            return null; 
+    /**
+     * Consults the username Bloom filter first and only queries the database when the filter says "maybe".
+     */
+    private boolean usernameMightExist(String username) {
+        if (!usernameFilter.mightContain(username)) {
+            existenceQueriesSkipped.increment();
+            return false;
+        }
+        existenceQueriesRun.increment();
+        boolean exists = bulkhead.call(() -> accountDAO.doesUsernameExist(username));
+        if (!exists) {
+            filterFalsePositives.increment();
         }
+        return exists;
+    }
+
+    /**
+     * @return how many existence queries the username filter has saved, and how it is sized.
+     */
+    public Map<String, Object> getUsernameFilterStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queries_skipped", existenceQueriesSkipped.sum());
+        stats.put("queries_run", existenceQueriesRun.sum());
+        stats.put("false_positives", filterFalsePositives.sum());
+        stats.put("bits", usernameFilter.getBitCount());
+        stats.put("hash_functions", usernameFilter.getHashCount());
+        stats.put("estimated_false_positive_rate", usernameFilter.estimatedFalsePositiveRate());
+        return stats;
+    }
 
-        Account newAccount = new Account(username, password);
-        return accountDAO.insertAccount(newAccount); 
+    /**
+     * Logs in; see {@link #loginAsync}.
+     */
+    public Account login(String username, String password) {
+        return await(loginAsync(username, password));
     }
 
-    public Account login(String username, String password) { 
-        Account account = accountDAO.getAccountByUsernameAndPassword(username, password);
-        return account;
+    /**
+     * Looks the account up by username on the DatabaseExecutor and checks the password on the PasswordHasher's pool.
+     * An unknown username costs a full hash too, so response times do not reveal which usernames exist. A password
+     * still stored in plain text, or hashed with fewer iterations than now configured, is re-hashed and replaced once
+     * it has been verified.
+     * @return a future completed with the account, which carries the password as given rather than its hash, or with
+     * null if the username or password is wrong.
+     */
+    public CompletableFuture<Account> loginAsync(String username, String password) {
+        return dbExecutor.supply(() -> bulkhead.call(() -> accountDAO.getAccountByUsername(username)))
+                .thenCompose(stored -> passwordHasher.verifyAsync(password, stored == null ? null : stored.getPassword())
+                        .thenCompose(verified -> {
+                            if (!verified) {
+                                return CompletableFuture.completedFuture(null);
+                            }
+                            Account account = new Account(stored.getAccount_id(), stored.getUsername(), password);
+                            if (!passwordHasher.needsRehash(stored.getPassword())) {
+                                return CompletableFuture.completedFuture(account);
+                            }
+                            return passwordHasher.hashAsync(password)
+                                    .thenCompose(hash -> dbExecutor.supply(() -> bulkhead.call(
+                                            () -> accountDAO.updatePassword(stored.getAccount_id(), hash))))
+                                    .thenApply(updated -> account);
+                        }));
     }
-    
+
+    /**
+     * Waits for a future, rethrowing its failure as it was thrown rather than wrapped in a CompletionException.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
 }
@@ -0,0 +1,101 @@
+package Service;
+
+import DAO.FollowDAO;
+import Model.Follow;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The follow table held in memory in both directions: whom each account follows, for reading its home timeline,
+ * and who follows each account, for fanning its new messages out. Loaded once at startup and kept current by
+ * {@link FollowService} after each follow or unfollow commits.
+ *
+ * Reads are lock-free. Writes are synchronized, so both directions always change together.
+ */
+public class FollowGraph {
+
+    private final Map<Integer, Set<Integer>> followees = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Integer>> followers = new ConcurrentHashMap<>();
+    private final AtomicLong edges = new AtomicLong();
+
+    /**
+     * @return a graph holding every row currently in the follow table.
+     */
+    public static FollowGraph load(FollowDAO followDAO) {
+        FollowGraph graph = new FollowGraph();
+        followDAO.forEachFollow(follow -> graph.add(follow.getFollower_id(), follow.getFollowee_id()));
+        return graph;
+    }
+
+    /**
+     * @return true if the follow was not already in the graph.
+     */
+    public synchronized boolean add(int followerId, int followeeId) {
+        if (!link(followees, followerId, followeeId)) {
+            return false;
+        }
+        link(followers, followeeId, followerId);
+        edges.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return true if the follow was in the graph.
+     */
+    public synchronized boolean remove(int followerId, int followeeId) {
+        if (!unlink(followees, followerId, followeeId)) {
+            return false;
+        }
+        unlink(followers, followeeId, followerId);
+        edges.decrementAndGet();
+        return true;
+    }
+
+    public boolean contains(Follow follow) {
+        return followeesOf(follow.getFollower_id()).contains(follow.getFollowee_id());
+    }
+
+    /**
+     * @return a live, unmodifiable view of the accounts an account follows.
+     */
+    public Set<Integer> followeesOf(int accountId) {
+        Set<Integer> set = followees.get(accountId);
+        return set == null ? Collections.emptySet() : Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * @return a live, unmodifiable view of the accounts following an account.
+     */
+    public Set<Integer> followersOf(int accountId) {
+        Set<Integer> set = followers.get(accountId);
+        return set == null ? Collections.emptySet() : Collections.unmodifiableSet(set);
+    }
+
+    public int followerCount(int accountId) {
+        Set<Integer> set = followers.get(accountId);
+        return set == null ? 0 : set.size();
+    }
+
+    public long edgeCount() {
+        return edges.get();
+    }
+
+    private static boolean link(Map<Integer, Set<Integer>> sets, int from, int to) {
+        return sets.computeIfAbsent(from, id -> ConcurrentHashMap.newKeySet()).add(to);
+    }
+
+    private static boolean unlink(Map<Integer, Set<Integer>> sets, int from, int to) {
+        Set<Integer> set = sets.get(from);
+        if (set == null || !set.remove(to)) {
+            return false;
+        }
+        if (set.isEmpty()) {
+            sets.remove(from);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,121 @@
+package Service;
+
+import DAO.FollowDAO;
+import Model.Follow;
+import Model.MessageCursor;
+import Model.MessagePage;
+import Util.Bulkhead;
+import Util.ConnectionUtil;
+import Util.DatabaseExecutor;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Follows between accounts and the home timelines they feed; see {@link HomeTimelines}.
+ */
+public class FollowService {
+
+    private FollowDAO followDAO;
+    private AccountIdSet accountIds;
+    private HomeTimelines timelines;
+    private Bulkhead bulkhead;
+    private DatabaseExecutor dbExecutor;
+    /**
+     * Follows and unfollows by the same account are serialized, so the follow graph is changed in the order the
+     * follow table was.
+     */
+    private final Object[] followerLocks = new Object[64];
+
+    /**
+     * @param accountIds the set of existing account_ids, shared with the AccountService that keeps it current.
+     * @param messageService the service whose new messages are fanned out to the timelines.
+     */
+    public FollowService(AccountIdSet accountIds, MessageService messageService) {
+        this.followDAO = new FollowDAO();
+        this.accountIds = accountIds;
+        this.timelines = messageService.getTimelines();
+        this.bulkhead = ConnectionUtil.getBulkhead();
+        this.dbExecutor = DatabaseExecutor.get();
+        for (int i = 0; i < followerLocks.length; i++) {
+            followerLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Makes one account follow another. Following an account already followed succeeds without a write.
+     * @return the follow, or null if either account does not exist or an account tries to follow itself.
+     */
+    public Follow follow(int followerId, int followeeId) {
+        if (followerId == followeeId || !accountIds.contains(followerId) || !accountIds.contains(followeeId)) {
+            return null;
+        }
+        Follow follow = new Follow(followerId, followeeId);
+        synchronized (lockFor(followerId)) {
+            if (!timelines.graph().contains(follow)) {
+                if (!bulkhead.call(() -> followDAO.insertFollow(follow))) {
+                    return null;
+                }
+                timelines.followed(followerId, followeeId);
+            }
+        }
+        return follow;
+    }
+
+    /**
+     * @return the removed follow, or null if the account did not follow the other.
+     */
+    public Follow unfollow(int followerId, int followeeId) {
+        Follow follow = new Follow(followerId, followeeId);
+        synchronized (lockFor(followerId)) {
+            if (!bulkhead.call(() -> followDAO.deleteFollow(follow))) {
+                return null;
+            }
+            timelines.unfollowed(followerId, followeeId);
+        }
+        return follow;
+    }
+
+    /**
+     * Retrieves one page of an account's home timeline: the messages of the accounts it follows, newest first.
+     * @param cursor the opaque cursor returned with the previous page, or null for the first page.
+     * @param limit the requested page size; values above {@link MessageService#MAX_PAGE_SIZE} are clamped.
+     * @return the page, with a next_cursor if more messages may follow.
+     * @throws IllegalArgumentException if the cursor is malformed or the limit is not positive.
+     */
+    public MessagePage getTimeline(int accountId, String cursor, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        int pageSize = Math.min(limit, MessageService.MAX_PAGE_SIZE);
+        MessageCursor before = cursor == null ? null : MessageCursor.decode(cursor);
+        return timelines.page(accountId, before, pageSize);
+    }
+
+    /**
+     * @return the size of the follow graph and timelines, and how timeline pages have been served.
+     */
+    public Map<String, Object> getTimelineStats() {
+        return timelines.stats();
+    }
+
+    private Object lockFor(int followerId) {
+        return followerLocks[followerId & (followerLocks.length - 1)];
+    }
+
+    /*
+     * Asynchronous variants, run on the DatabaseExecutor as MessageService's are.
+     */
+
+    public CompletableFuture<Follow> followAsync(int followerId, int followeeId) {
+        return dbExecutor.supply(() -> follow(followerId, followeeId));
+    }
+
+    public CompletableFuture<Follow> unfollowAsync(int followerId, int followeeId) {
+        return dbExecutor.supply(() -> unfollow(followerId, followeeId));
+    }
+
+    public CompletableFuture<MessagePage> getTimelineAsync(int accountId, String cursor, int limit) {
+        return dbExecutor.supply(() -> getTimeline(accountId, cursor, limit));
+    }
+}
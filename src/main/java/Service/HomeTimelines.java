@@ -0,0 +1,503 @@
+package Service;
+
+import DAO.MessageDAO;
+import Model.Message;
+import Model.MessageCursor;
+import Model.MessagePage;
+import Util.Bulkhead;
+import Util.Config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+
+/**
+ * Precomputed home timelines: the messages of the accounts an account follows, newest first.
+ *
+ * Each account that reads its timeline gets a ring of the newest timelines.capacity (default 800) entries, built on
+ * its first read from the newest messages of each account it follows. From then on every new message is pushed into
+ * the rings of its author's followers as it is created (fan-out on write), so a page is read from the ring and then
+ * loaded by primary key: the cost depends on the page size, not on how many accounts are followed. Rings hold only
+ * the time, id and author of each entry, so updates need no fan-out and deleted messages simply drop out of the
+ * loaded page.
+ *
+ * Pushing to every follower of an account with timelines.fanOutLimit (10000) or more followers would make each of
+ * its posts cost that many ring inserts, so such accounts are pulled instead: their messages are never pushed, and
+ * each page merges in their newest messages, read from the database (fan-out on read). An account stays pulled once
+ * it has crossed the limit, since its followers' rings never received its messages.
+ *
+ * A page reaching past the oldest entry of a ring that has dropped older entries is read from the database instead.
+ * At most timelines.maxAccounts (10000) rings are held, at 16 bytes an entry, so about 128 MB at the defaults; reading
+ * one more drops a ring that has not been read lately, which is rebuilt if its account reads again. Recency is kept
+ * the way a clock page cache keeps it: a read only sets its ring's referenced flag, and only building a new ring takes
+ * a lock, to sweep the rings in the order they were built, giving each referenced one a second chance by clearing its
+ * flag, and dropping the first that is not. With maxAccounts 0 every page is read from the database.
+ */
+public class HomeTimelines {
+
+    private static final int CAPACITY = Config.getInt("timelines.capacity", 800);
+    private static final int FAN_OUT_LIMIT = Config.getInt("timelines.fanOutLimit", 10000);
+    private static final int MAX_TIMELINES = Config.getInt("timelines.maxAccounts", 10000);
+
+    private final FollowGraph graph;
+    private final MessageDAO messageDAO;
+    private final Bulkhead bulkhead;
+    private final int maxTimelines;
+    private final Map<Integer, Timeline> timelines = new ConcurrentHashMap<>();
+    /**
+     * The accounts whose timelines are held, in the order the clock sweeps them. Guards changes to the set of
+     * timelines held; reads and pushes look timelines up without it.
+     */
+    private final ArrayDeque<Integer> clock = new ArrayDeque<>();
+    /**
+     * Accounts whose messages are merged in on read rather than pushed.
+     */
+    private final Set<Integer> pulled = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder entriesPushed = new LongAdder();
+    private final LongAdder pagesFromTimelines = new LongAdder();
+    private final LongAdder pagesFromDatabase = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public HomeTimelines(FollowGraph graph, MessageDAO messageDAO, Bulkhead bulkhead) {
+        this(graph, messageDAO, bulkhead, MAX_TIMELINES);
+    }
+
+    /**
+     * @param maxTimelines the most timelines held at once, in place of timelines.maxAccounts.
+     */
+    public HomeTimelines(FollowGraph graph, MessageDAO messageDAO, Bulkhead bulkhead, int maxTimelines) {
+        this.graph = graph;
+        this.messageDAO = messageDAO;
+        this.bulkhead = bulkhead;
+        this.maxTimelines = maxTimelines;
+    }
+
+    public FollowGraph graph() {
+        return graph;
+    }
+
+    /**
+     * Pushes a new message into the loaded timelines of its author's followers, unless the author is pulled.
+     * Called after the message is committed.
+     */
+    public void messageCreated(Message message) {
+        int author = message.getPosted_by();
+        if (isPulled(author)) {
+            return;
+        }
+        for (int follower : graph.followersOf(author)) {
+            Timeline timeline = timelines.get(follower);
+            if (timeline != null) {
+                timeline.insert(message.getTime_posted_epoch(), message.getMessage_id(), author);
+                entriesPushed.increment();
+            }
+        }
+    }
+
+    /**
+     * Adds a follow to the graph and, if the follower's timeline is loaded, fills in the followee's newest messages.
+     * Called after the follow is committed; messages created from then on are pushed as usual.
+     */
+    public void followed(int followerId, int followeeId) {
+        boolean added = graph.add(followerId, followeeId);
+        // Checked after every follow, so an account is marked pulled as soon as it crosses the limit
+        if (isPulled(followeeId) || !added) {
+            return;
+        }
+        Timeline timeline = timelines.get(followerId);
+        if (timeline == null) {
+            return;
+        }
+        synchronized (timeline.loadLock) {
+            // A timeline not loaded yet will find the new followee when it is; one being loaded now may not have
+            if (!timeline.loaded) {
+                return;
+            }
+        }
+        // One more than fits, so that a followee with older messages than fit overflows the ring and marks it
+        for (Message message : newest(new int[] {followeeId}, null, CAPACITY + 1)) {
+            timeline.insert(message.getTime_posted_epoch(), message.getMessage_id(), followeeId);
+        }
+    }
+
+    /**
+     * Removes a follow from the graph and the followee's entries from the follower's timeline. Called after the
+     * follow is deleted.
+     */
+    public void unfollowed(int followerId, int followeeId) {
+        if (!graph.remove(followerId, followeeId)) {
+            return;
+        }
+        Timeline timeline = timelines.get(followerId);
+        if (timeline != null) {
+            timeline.removePostedBy(followeeId);
+        }
+    }
+
+    /**
+     * @param before the position of the last message on the previous page, or null for the first page.
+     * @param pageSize the number of messages per page.
+     * @return one page of an account's home timeline, newest first, with a next_cursor if more may follow.
+     */
+    public MessagePage page(int accountId, MessageCursor before, int pageSize) {
+        Set<Integer> followees = graph.followeesOf(accountId);
+        if (followees.isEmpty()) {
+            return new MessagePage(new ArrayList<>(), null);
+        }
+        // One entry beyond the page tells whether there is a next page
+        int wanted = pageSize + 1;
+        Timeline timeline = timelineOf(accountId);
+        Slice slice = timeline == null ? null
+                : timeline.read(before, wanted, author -> followees.contains(author) && !isPulled(author));
+        if (slice == null || !slice.complete) {
+            pagesFromDatabase.increment();
+            return toPage(newest(toArray(followees, author -> true), before, wanted), pageSize);
+        }
+        pagesFromTimelines.increment();
+
+        // There are few pulled accounts, so this does not depend on how many accounts are followed either
+        int[] pulledFollowees = toArray(pulled, followees::contains);
+        List<Message> pulledMessages = newest(pulledFollowees, before, wanted);
+
+        // Merge the ring's entries with the pulled messages, newest first
+        long[] times = new long[wanted];
+        int[] messageIds = new int[wanted];
+        Message[] loaded = new Message[wanted];
+        int count = 0;
+        int fromRing = 0;
+        int fromPulled = 0;
+        while (count < wanted && (fromRing < slice.count || fromPulled < pulledMessages.size())) {
+            Message next = fromPulled < pulledMessages.size() ? pulledMessages.get(fromPulled) : null;
+            if (fromRing < slice.count && (next == null
+                    || compare(slice.times[fromRing], slice.messageIds[fromRing], next) > 0)) {
+                times[count] = slice.times[fromRing];
+                messageIds[count] = slice.messageIds[fromRing];
+                fromRing++;
+            } else {
+                times[count] = next.getTime_posted_epoch();
+                messageIds[count] = next.getMessage_id();
+                loaded[count] = next;
+                fromPulled++;
+            }
+            count++;
+        }
+
+        int onPage = Math.min(count, pageSize);
+        int[] ringIds = new int[onPage];
+        int ringCount = 0;
+        for (int i = 0; i < onPage; i++) {
+            if (loaded[i] == null) {
+                ringIds[ringCount++] = messageIds[i];
+            }
+        }
+        Map<Integer, Message> byId = new HashMap<>();
+        if (ringCount > 0) {
+            int[] ids = ringCount == ringIds.length ? ringIds : Arrays.copyOf(ringIds, ringCount);
+            for (Message message : bulkhead.call(() -> messageDAO.getMessagesByIds(ids))) {
+                byId.put(message.getMessage_id(), message);
+            }
+        }
+        List<Message> messages = new ArrayList<>(onPage);
+        for (int i = 0; i < onPage; i++) {
+            // A message deleted since it was pushed is left out
+            Message message = loaded[i] != null ? loaded[i] : byId.get(messageIds[i]);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        String nextCursor = count > pageSize
+                ? new MessageCursor(times[pageSize - 1], messageIds[pageSize - 1]).encode() : null;
+        return new MessagePage(messages, nextCursor);
+    }
+
+    /**
+     * @return the number of timelines held, how they are sized, and how pages have been served.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("timelines", timelines.size());
+        stats.put("max_timelines", maxTimelines);
+        stats.put("evictions", evictions.sum());
+        stats.put("capacity", CAPACITY);
+        stats.put("fan_out_limit", FAN_OUT_LIMIT);
+        stats.put("pulled_accounts", pulled.size());
+        stats.put("follows", graph.edgeCount());
+        stats.put("entries_pushed", entriesPushed.sum());
+        stats.put("pages_from_timelines", pagesFromTimelines.sum());
+        stats.put("pages_from_database", pagesFromDatabase.sum());
+        return stats;
+    }
+
+    public int timelineCount() {
+        return timelines.size();
+    }
+
+    /**
+     * @return true if the account's messages are merged in on read; once true, always true. Every follow checks
+     * its followee, so an account is marked as soon as it crosses the limit.
+     */
+    private boolean isPulled(int accountId) {
+        if (pulled.contains(accountId)) {
+            return true;
+        }
+        if (graph.followerCount(accountId) >= FAN_OUT_LIMIT) {
+            pulled.add(accountId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the account's loaded timeline, marked as read, or null if no timelines are held. Making room for a new
+     * one drops one that has not been read since the clock last passed it.
+     */
+    private Timeline timelineOf(int accountId) {
+        if (maxTimelines <= 0) {
+            return null;
+        }
+        Timeline timeline = timelines.get(accountId);
+        if (timeline == null) {
+            synchronized (clock) {
+                timeline = timelines.get(accountId);
+                if (timeline == null) {
+                    // Swept before the new timeline joins, so it is never the one dropped
+                    evictBeyond(maxTimelines - 1);
+                    timeline = new Timeline();
+                    timelines.put(accountId, timeline);
+                    clock.add(accountId);
+                }
+            }
+        } else {
+            timeline.referenced = true;
+        }
+        if (!timeline.loaded) {
+            load(accountId, timeline);
+        }
+        return timeline;
+    }
+
+    /**
+     * Sweeps the clock until at most max timelines are held: a timeline read since the clock last passed it is
+     * cleared and moved to the back, and the first one that was not is dropped. Called holding the clock.
+     */
+    private void evictBeyond(int max) {
+        while (clock.size() > max) {
+            Integer accountId = clock.poll();
+            Timeline timeline = timelines.get(accountId);
+            if (timeline.referenced) {
+                timeline.referenced = false;
+                clock.add(accountId);
+            } else {
+                timelines.remove(accountId);
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Fills a new timeline with the newest messages of the pushed accounts the account follows. The timeline is
+     * registered first, so a message committed during the query is either found by it or pushed.
+     */
+    private void load(int accountId, Timeline timeline) {
+        synchronized (timeline.loadLock) {
+            if (timeline.loaded) {
+                return;
+            }
+            int[] pushedFollowees = toArray(graph.followeesOf(accountId), author -> !isPulled(author));
+            // One more than fits makes the ring overflow, and so be marked, if there are older messages than fit
+            for (Message message : newest(pushedFollowees, null, CAPACITY + 1)) {
+                timeline.insert(message.getTime_posted_epoch(), message.getMessage_id(), message.getPosted_by());
+            }
+            timeline.loaded = true;
+        }
+    }
+
+    /**
+     * @return the newest limit messages of the given accounts older than before, newest first, merged from each
+     * account's newest messages by the database.
+     */
+    private List<Message> newest(int[] accountIds, MessageCursor before, int limit) {
+        if (accountIds.length == 0) {
+            return new ArrayList<>();
+        }
+        return bulkhead.call(() -> messageDAO.getNewestMessagesByAccountIds(accountIds, before, limit));
+    }
+
+    private static int[] toArray(Set<Integer> accountIds, IntPredicate filter) {
+        int[] array = new int[accountIds.size()];
+        int count = 0;
+        for (int accountId : accountIds) {
+            if (filter.test(accountId)) {
+                if (count == array.length) {
+                    // The set grew while it was being copied
+                    array = Arrays.copyOf(array, count * 2 + 1);
+                }
+                array[count++] = accountId;
+            }
+        }
+        return count == array.length ? array : Arrays.copyOf(array, count);
+    }
+
+    /**
+     * Compares a ring entry with a message in (time_posted_epoch, message_id) order.
+     */
+    private static int compare(long time, int messageId, Message message) {
+        int byTime = Long.compare(time, message.getTime_posted_epoch());
+        return byTime != 0 ? byTime : Integer.compare(messageId, message.getMessage_id());
+    }
+
+    /**
+     * Turns the result of a query for pageSize + 1 rows into a page, as MessageService does for its listings.
+     */
+    private static MessagePage toPage(List<Message> messages, int pageSize) {
+        String nextCursor = null;
+        if (messages.size() > pageSize) {
+            messages.remove(pageSize);
+            nextCursor = MessageCursor.after(messages.get(pageSize - 1)).encode();
+        }
+        return new MessagePage(messages, nextCursor);
+    }
+
+    /**
+     * Entries read from a timeline, newest first.
+     */
+    private static final class Slice {
+        final long[] times;
+        final int[] messageIds;
+        int count;
+        /**
+         * False if the read ran past the oldest entry of a timeline that has dropped older ones, so the entries
+         * may not be all there is.
+         */
+        boolean complete;
+
+        Slice(int limit) {
+            this.times = new long[limit];
+            this.messageIds = new int[limit];
+        }
+    }
+
+    /**
+     * One account's ring of entries, oldest to newest in (time_posted_epoch, message_id) order. Messages mostly
+     * arrive newest, so an insert is usually an append; time_posted_epoch comes from clients, though, so an older
+     * one is moved into place. When the ring is full, the oldest entry is dropped.
+     */
+    private static final class Timeline {
+        private final long[] times = new long[CAPACITY];
+        private final int[] messageIds = new int[CAPACITY];
+        private final int[] postedBy = new int[CAPACITY];
+        /**
+         * The slot of the oldest entry.
+         */
+        private int oldest;
+        private int size;
+        /**
+         * Whether entries older than the oldest held may exist.
+         */
+        private boolean truncated;
+        private volatile boolean loaded;
+        /**
+         * Set by every read after the first and cleared when the clock passes, so a timeline is dropped only if it
+         * has not been read again since the clock last passed it.
+         */
+        private volatile boolean referenced;
+        private final Object loadLock = new Object();
+
+        private int slot(int index) {
+            int slot = oldest + index;
+            return slot >= CAPACITY ? slot - CAPACITY : slot;
+        }
+
+        private int compare(int index, long time, int messageId) {
+            int slot = slot(index);
+            int byTime = Long.compare(times[slot], time);
+            return byTime != 0 ? byTime : Integer.compare(messageIds[slot], messageId);
+        }
+
+        synchronized void insert(long time, int messageId, int author) {
+            int index = size;
+            while (index > 0 && compare(index - 1, time, messageId) > 0) {
+                index--;
+            }
+            if (index > 0 && compare(index - 1, time, messageId) == 0) {
+                return;
+            }
+            if (size == CAPACITY) {
+                truncated = true;
+                if (index == 0) {
+                    // Older than everything held
+                    return;
+                }
+                oldest = slot(1);
+                size--;
+                index--;
+            }
+            for (int i = size; i > index; i--) {
+                move(slot(i - 1), slot(i));
+            }
+            int slot = slot(index);
+            times[slot] = time;
+            messageIds[slot] = messageId;
+            postedBy[slot] = author;
+            size++;
+        }
+
+        synchronized void removePostedBy(int author) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int slot = slot(i);
+                if (postedBy[slot] != author) {
+                    move(slot, slot(kept++));
+                }
+            }
+            size = kept;
+        }
+
+        /**
+         * @return up to limit entries older than before, newest first, whose author passes the filter.
+         */
+        synchronized Slice read(MessageCursor before, int limit, IntPredicate filter) {
+            Slice slice = new Slice(limit);
+            int index = size;
+            if (before != null) {
+                // Binary search for the first entry not older than the cursor
+                int low = 0;
+                int high = size;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (compare(middle, before.getTime_posted_epoch(), before.getMessage_id()) < 0) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                index = low;
+            }
+            while (index > 0 && slice.count < limit) {
+                int slot = slot(--index);
+                if (filter.test(postedBy[slot])) {
+                    slice.times[slice.count] = times[slot];
+                    slice.messageIds[slice.count] = messageIds[slot];
+                    slice.count++;
+                }
+            }
+            slice.complete = slice.count == limit || !truncated;
+            return slice;
+        }
+
+        private void move(int from, int to) {
+            times[to] = times[from];
+            messageIds[to] = messageIds[from];
+            postedBy[to] = postedBy[from];
+        }
+    }
+}
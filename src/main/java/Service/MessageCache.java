@@ -0,0 +1,199 @@
+package Service;
+
+import Model.Message;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * A bounded, in-process read-through cache of messages keyed by message_id, with least-recently-used eviction and an
+ * optional time-to-live.
+ *
+ * Cached messages are copied on the way in and on the way out, so callers are free to modify what they get back.
+ * Writers keep the cache consistent with {@link #put} and {@link #invalidate}; both advance a write stamp, and a
+ * value loaded by {@link #getOrLoad} is only stored if no write happened while it was being loaded, so a slow read
+ * can never overwrite a newer update or resurrect a deleted message.
+ */
+public class MessageCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Integer, Entry> entries;
+    private long writeStamp;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param maxSize the maximum number of messages held; 0 disables caching.
+     * @param ttlMillis how long an entry may be served after it was stored; 0 means entries never expire.
+     */
+    public MessageCache(int maxSize, long ttlMillis) {
+        this.maxSize = Math.max(0, maxSize);
+        this.ttlNanos = ttlMillis > 0 ? ttlMillis * 1_000_000L : 0;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached message, or loads it with the loader and caches the result. Messages that do not exist are
+     * not cached.
+     * @return a copy of the message, or null if the loader found none.
+     */
+    public Message getOrLoad(int messageId, IntFunction<Message> loader) {
+        if (maxSize == 0) {
+            misses.increment();
+            return loader.apply(messageId);
+        }
+
+        long stamp;
+        lock.lock();
+        try {
+            Entry entry = entries.get(messageId);
+            if (entry != null) {
+                if (ttlNanos == 0 || System.nanoTime() - entry.storedAt < ttlNanos) {
+                    hits.increment();
+                    return copy(entry.message);
+                }
+                entries.remove(messageId);
+                expirations.increment();
+            }
+            misses.increment();
+            stamp = writeStamp;
+        } finally {
+            lock.unlock();
+        }
+
+        Message loaded = loader.apply(messageId);
+        if (loaded == null) {
+            return null;
+        }
+        lock.lock();
+        try {
+            if (stamp == writeStamp) {
+                store(messageId, loaded);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return loaded;
+    }
+
+    /**
+     * Stores the current state of a message after it has been written to the database.
+     */
+    public void put(Message message) {
+        if (maxSize == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            writeStamp++;
+            store(message.getMessage_id(), message);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops a message from the cache, e.g. after it has been deleted.
+     */
+    public void invalidate(int messageId) {
+        if (maxSize == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            writeStamp++;
+            entries.remove(messageId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every cached message.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            writeStamp++;
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    /**
+     * @return the cache's size and counters, for the admin stats endpoint.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size());
+        stats.put("max_size", maxSize);
+        stats.put("hits", getHits());
+        stats.put("misses", getMisses());
+        stats.put("evictions", getEvictions());
+        stats.put("expirations", getExpirations());
+        return stats;
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private void store(int messageId, Message message) {
+        entries.put(messageId, new Entry(copy(message), System.nanoTime()));
+        Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+        while (entries.size() > maxSize) {
+            leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            evictions.increment();
+        }
+    }
+
+    private static Message copy(Message message) {
+        return new Message(message.getMessage_id(), message.getPosted_by(), message.getMessage_text(),
+                message.getTime_posted_epoch());
+    }
+
+    private static final class Entry {
+        private final Message message;
+        private final long storedAt;
+
+        private Entry(Message message, long storedAt) {
+            this.message = message;
+            this.storedAt = storedAt;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package Service;
+
+import Model.Message;
+import Util.Config;
+import Util.JsonCodec;
+import Util.Metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes message changes to live subscribers as server-sent event frames, so dashboards no longer poll GET /messages.
+ *
+ * MessageService publishes each committed create, update and delete once. A single dispatcher thread, shared by all
+ * feeds, serializes the event once into the bytes of an event-stream frame and hands the same array to every
+ * subscriber that wants it: all of them, or those filtering on the message's posted_by. Nothing is serialized when
+ * nobody is subscribed.
+ *
+ * Each subscriber has a bounded buffer of frames waiting to be written to its connection, and is told when frames
+ * arrive so it can write them without blocking. A subscriber whose buffer is full has fallen behind, and is dropped
+ * rather than slowing the dispatcher or holding frames for it without bound. Every subscriber also gets a comment
+ * line every heartbeat interval, which keeps proxies from timing the connection out and finds dead connections.
+ *
+ * Settings: messages.feed.bufferSize (frames per subscriber, default 256), messages.feed.maxSubscribers (10000),
+ * messages.feed.maxPendingEvents (events awaiting the dispatcher before new ones are dropped, 10000) and
+ * messages.feed.heartbeatSeconds (15).
+ */
+public class MessageFeed {
+
+    public static final String CONTENT_TYPE = "text/event-stream";
+
+    private static final int BUFFER_SIZE = Config.getInt("messages.feed.bufferSize", 256);
+    private static final int MAX_SUBSCRIBERS = Config.getInt("messages.feed.maxSubscribers", 10000);
+    private static final int MAX_PENDING_EVENTS = Config.getInt("messages.feed.maxPendingEvents", 10000);
+    private static final long HEARTBEAT_SECONDS = Config.getLong("messages.feed.heartbeatSeconds", 15);
+
+    private static final byte[] CONNECTED_FRAME = ": connected\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEARTBEAT_FRAME = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final LongAdder DROPPED_SUBSCRIBERS_METRIC = Metrics.counter(
+            "message_feed_dropped_subscribers_total", "Feed subscribers dropped for falling behind.", "");
+
+    private final JsonCodec codec = JsonCodec.get();
+    private final Set<Subscription> everything = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Set<Subscription>> byPostedBy = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final AtomicInteger pendingEvents = new AtomicInteger();
+
+    /**
+     * The scheduled heartbeat, running while the feed has subscribers; guarded by this.
+     */
+    private ScheduledFuture<?> heartbeat;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder framesQueued = new LongAdder();
+    private final LongAdder droppedSubscribers = new LongAdder();
+    private final LongAdder droppedEvents = new LongAdder();
+
+    /**
+     * What happened to a message.
+     */
+    public enum EventType {
+        CREATED, UPDATED, DELETED;
+
+        private final String eventName = name().toLowerCase();
+    }
+
+    /**
+     * One subscriber's connection to the feed. The transport drains it with {@link #poll} whenever the listener given
+     * to {@link #subscribe} is called, and closes it when the connection ends.
+     */
+    public final class Subscription {
+        private final Integer postedBy;
+        private final Runnable listener;
+        private final ArrayBlockingQueue<byte[]> frames = new ArrayBlockingQueue<>(BUFFER_SIZE);
+        private final CompletableFuture<Void> closed = new CompletableFuture<>();
+        private final AtomicBoolean open = new AtomicBoolean(true);
+
+        private Subscription(Integer postedBy, Runnable listener) {
+            this.postedBy = postedBy;
+            this.listener = listener;
+        }
+
+        /**
+         * @return the next frame to write, or null if there is none yet.
+         */
+        public byte[] poll() {
+            return frames.poll();
+        }
+
+        /**
+         * @return a future completed once the subscription has ended, whether closed by the transport or dropped
+         * by the feed.
+         */
+        public CompletableFuture<Void> closed() {
+            return closed;
+        }
+
+        /**
+         * Ends the subscription; no more frames are queued for it.
+         */
+        public void close() {
+            if (open.compareAndSet(true, false)) {
+                if (postedBy == null) {
+                    everything.remove(this);
+                } else {
+                    byPostedBy.computeIfPresent(postedBy, (id, set) -> {
+                        set.remove(this);
+                        return set.isEmpty() ? null : set;
+                    });
+                }
+                subscribers.decrementAndGet();
+                frames.clear();
+                // Completed last, so whoever waits on it sees the subscriber gone
+                closed.complete(null);
+            }
+        }
+
+        /**
+         * Queues a frame and wakes the transport, or drops the subscriber if its buffer is full.
+         */
+        private void send(byte[] frame) {
+            if (frames.offer(frame)) {
+                framesQueued.increment();
+                listener.run();
+            } else {
+                droppedSubscribers.increment();
+                DROPPED_SUBSCRIBERS_METRIC.increment();
+                close();
+            }
+        }
+    }
+
+    /**
+     * Subscribes to the feed. The subscription starts with a comment frame, so the transport can send the response
+     * headers straight away.
+     * @param postedBy only receive events for messages posted by this account, or null for every message.
+     * @param listener called, on the dispatcher thread or the caller's, whenever frames are waiting; it must not
+     *                 block.
+     * @return the subscription, or null if the feed already has messages.feed.maxSubscribers subscribers.
+     */
+    public Subscription subscribe(Integer postedBy, Runnable listener) {
+        if (subscribers.incrementAndGet() > MAX_SUBSCRIBERS) {
+            subscribers.decrementAndGet();
+            return null;
+        }
+        Subscription subscription = new Subscription(postedBy, listener);
+        if (postedBy == null) {
+            everything.add(subscription);
+        } else {
+            // Added inside compute, so a concurrent close can't drop the set between lookup and add
+            byPostedBy.compute(postedBy, (id, set) -> {
+                Set<Subscription> filtered = set == null ? ConcurrentHashMap.newKeySet() : set;
+                filtered.add(subscription);
+                return filtered;
+            });
+        }
+        startHeartbeat();
+        subscription.send(CONNECTED_FRAME);
+        return subscription;
+    }
+
+    /**
+     * Publishes a change to every interested subscriber, asynchronously. Called after the change is committed.
+     * @param version the version the change was given (see {@link MessageVersions}), sent as the event id.
+     */
+    public void publish(EventType type, Message message, long version) {
+        if (subscribers.get() == 0) {
+            return;
+        }
+        if (pendingEvents.incrementAndGet() > MAX_PENDING_EVENTS) {
+            pendingEvents.decrementAndGet();
+            droppedEvents.increment();
+            return;
+        }
+        // The dispatcher may run after the caller has changed the message, so it gets a copy
+        Message event = new Message(message.getMessage_id(), message.getPosted_by(), message.getMessage_text(),
+                message.getTime_posted_epoch());
+        Dispatcher.EXECUTOR.execute(() -> {
+            pendingEvents.decrementAndGet();
+            fanOut(type, event, version);
+        });
+    }
+
+    /**
+     * @return the number of subscribers and the published, queued and dropped counters.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribers", subscribers.get());
+        stats.put("max_subscribers", MAX_SUBSCRIBERS);
+        stats.put("buffer_size", BUFFER_SIZE);
+        stats.put("events_published", published.sum());
+        stats.put("frames_queued", framesQueued.sum());
+        stats.put("dropped_subscribers", droppedSubscribers.sum());
+        stats.put("dropped_events", droppedEvents.sum());
+        return stats;
+    }
+
+    public int subscriberCount() {
+        return subscribers.get();
+    }
+
+    private void fanOut(EventType type, Message message, long version) {
+        Set<Subscription> filtered = byPostedBy.get(message.getPosted_by());
+        if (everything.isEmpty() && (filtered == null || filtered.isEmpty())) {
+            return;
+        }
+        byte[] frame;
+        try {
+            frame = frame(type, message, version);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        published.increment();
+        for (Subscription subscription : everything) {
+            subscription.send(frame);
+        }
+        if (filtered != null) {
+            for (Subscription subscription : filtered) {
+                subscription.send(frame);
+            }
+        }
+    }
+
+    private synchronized void startHeartbeat() {
+        if (heartbeat == null) {
+            heartbeat = Dispatcher.EXECUTOR.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_SECONDS,
+                    HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Sends every subscriber a comment line, or stops the heartbeat once nobody is subscribed.
+     */
+    private void heartbeat() {
+        synchronized (this) {
+            if (subscribers.get() == 0) {
+                heartbeat.cancel(false);
+                heartbeat = null;
+                return;
+            }
+        }
+        for (Subscription subscription : everything) {
+            subscription.send(HEARTBEAT_FRAME);
+        }
+        for (Set<Subscription> filtered : byPostedBy.values()) {
+            for (Subscription subscription : filtered) {
+                subscription.send(HEARTBEAT_FRAME);
+            }
+        }
+    }
+
+    /**
+     * @return the event-stream frame for an event. Jackson writes JSON on a single line, so the message fits in one
+     * data field.
+     */
+    private byte[] frame(EventType type, Message message, long version) throws IOException {
+        byte[] json = codec.writeBytes(message);
+        byte[] head = ("id: " + version + "\nevent: " + type.eventName + "\ndata: ").getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[head.length + json.length + 2];
+        System.arraycopy(head, 0, frame, 0, head.length);
+        System.arraycopy(json, 0, frame, head.length, json.length);
+        frame[frame.length - 2] = '\n';
+        frame[frame.length - 1] = '\n';
+        return frame;
+    }
+
+    /**
+     * The dispatcher thread shared by every feed, started with the first subscription; it runs the fan-out of every
+     * event and the heartbeats.
+     */
+    private static final class Dispatcher {
+        static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "message-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static {
+            EXECUTOR.setRemoveOnCancelPolicy(true);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package Service;
+
+import DAO.MessageDAO;
+import Model.Message;
+import Util.Bulkhead;
+import Util.Config;
+import Util.ConnectionUtil;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Group commit for message inserts: concurrent inserts are queued and written by a single thread, many at a time, in
+ * one transaction, so a burst of posts costs one commit per batch rather than one per message.
+ *
+ * The writer takes the first queued message, then keeps collecting until it has maxBatch messages or maxDelayMicros
+ * have passed, and inserts them all with {@link MessageDAO#insertMessages}. While a batch is being written the next
+ * one fills up, so batches grow with load and a lone insert waits at most maxDelayMicros. Each caller's future
+ * completes with its own message and generated message_id. If a batch fails as a whole, its messages are retried one
+ * at a time, so one bad message cannot fail the others.
+ *
+ * Each insert may carry an onCommit hook (recording the message in the search index and fanning it out to home
+ * timelines, say). Hooks run on a second thread, in commit order, for every message committed, followed by the
+ * caller's future, so they never hold up the next batch's commit and are never skipped because a caller gave up.
+ *
+ * Messages whose future has already completed (timed out or cancelled) when their batch is taken from the queue are
+ * dropped, like work that never started on the {@link Util.DatabaseExecutor}; once taken, a message is committed and
+ * its hook run whatever happens to its future. It is off unless messages.groupCommit.enabled is set;
+ * messages.groupCommit.maxBatch, messages.groupCommit.maxDelayMicros and messages.groupCommit.queueSize tune it.
+ */
+public class MessageGroupCommitter {
+
+    private static volatile MessageGroupCommitter instance;
+
+    private final MessageDAO messageDAO;
+    private final Bulkhead bulkhead;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingInsert> queue;
+    private final ThreadPoolExecutor completer;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder retriedSingly = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public MessageGroupCommitter(MessageDAO messageDAO, Bulkhead bulkhead, int maxBatch, long maxDelayMicros,
+                                 int queueSize) {
+        this.messageDAO = messageDAO;
+        this.bulkhead = bulkhead;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.queue = new LinkedBlockingQueue<>(queueSize);
+        this.completer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "message-group-commit-completer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Thread writer = new Thread(this::writeBatches, "message-group-commit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return the shared committer, started on first use, or null if group commit is not enabled.
+     */
+    public static MessageGroupCommitter get() {
+        if (!Config.getBoolean("messages.groupCommit.enabled", false)) {
+            return null;
+        }
+        if (instance == null) {
+            synchronized (MessageGroupCommitter.class) {
+                if (instance == null) {
+                    instance = new MessageGroupCommitter(new MessageDAO(), ConnectionUtil.getBulkhead(),
+                            Config.getInt("messages.groupCommit.maxBatch", 100),
+                            Config.getLong("messages.groupCommit.maxDelayMicros", 1000),
+                            Config.getInt("messages.groupCommit.queueSize", 10000));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Queues an already validated message for the next batch.
+     * @return a future completed with the inserted message, or with null if it could not be inserted; failed with a
+     * RejectedExecutionException if the queue is full.
+     */
+    public CompletableFuture<Message> insert(Message message) {
+        return insert(message, UnaryOperator.identity());
+    }
+
+    /**
+     * Queues an already validated message for the next batch.
+     * @param onCommit called with the inserted message once it is committed, before the returned future completes with
+     * what it returns.
+     * @return a future completed with what onCommit returned, or with null if the message could not be inserted;
+     * failed with a RejectedExecutionException if the queue is full.
+     */
+    public CompletableFuture<Message> insert(Message message, UnaryOperator<Message> onCommit) {
+        PendingInsert pending = new PendingInsert(message, onCommit);
+        if (!queue.offer(pending)) {
+            rejected.increment();
+            pending.result.completeExceptionally(new RejectedExecutionException("Group commit queue is full"));
+        }
+        return pending.result;
+    }
+
+    /**
+     * @return the batch settings, the depths of the insert queue and of the completions not yet delivered, and
+     * counters of batches written, messages committed, messages retried one at a time after a failed batch, messages
+     * dropped because their caller had gone, and rejections.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("max_batch", maxBatch);
+        stats.put("max_delay_micros", TimeUnit.NANOSECONDS.toMicros(maxDelayNanos));
+        stats.put("queued", queue.size());
+        stats.put("completions_queued", completer.getQueue().size());
+        stats.put("batches", batches.sum());
+        stats.put("committed", committed.sum());
+        stats.put("retried_singly", retriedSingly.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    private void writeBatches() {
+        List<PendingInsert> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    if (queue.drainTo(batch, maxBatch - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingInsert next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable t) {
+                // Never let the writer die; whatever was in hand fails, later inserts still get written
+                List<PendingInsert> failed = new ArrayList<>(batch);
+                completer.execute(() -> {
+                    for (PendingInsert pending : failed) {
+                        pending.result.completeExceptionally(t);
+                    }
+                });
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<PendingInsert> batch) {
+        List<PendingInsert> live = new ArrayList<>(batch.size());
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingInsert pending : batch) {
+            if (pending.result.isDone()) {
+                dropped.increment();
+            } else {
+                live.add(pending);
+                messages.add(pending.message);
+            }
+        }
+        if (live.isEmpty()) {
+            return;
+        }
+
+        List<Message> inserted = bulkhead.call(() -> messageDAO.insertMessages(messages));
+        batches.increment();
+        if (inserted != null) {
+            committed.add(inserted.size());
+            completer.execute(() -> {
+                for (int i = 0; i < live.size(); i++) {
+                    deliver(live.get(i), inserted.get(i));
+                }
+            });
+            return;
+        }
+        for (PendingInsert pending : live) {
+            retriedSingly.increment();
+            Message message = bulkhead.call(() -> messageDAO.insertMessage(pending.message));
+            if (message != null) {
+                committed.increment();
+            }
+            completer.execute(() -> deliver(pending, message));
+        }
+    }
+
+    /**
+     * Runs on the completer: calls the insert's hook if it was committed, then completes its caller's future.
+     */
+    private static void deliver(PendingInsert pending, Message inserted) {
+        if (inserted == null) {
+            pending.result.complete(null);
+            return;
+        }
+        try {
+            pending.result.complete(pending.onCommit.apply(inserted));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            pending.result.completeExceptionally(e);
+        }
+    }
+
+    private static final class PendingInsert {
+        final Message message;
+        final UnaryOperator<Message> onCommit;
+        final CompletableFuture<Message> result = new CompletableFuture<>();
+
+        PendingInsert(Message message, UnaryOperator<Message> onCommit) {
+            this.message = message;
+            this.onCommit = onCommit;
+        }
+    }
+}
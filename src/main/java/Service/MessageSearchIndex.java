@@ -0,0 +1,478 @@
+package Service;
+
+import DAO.MessageDAO;
+import Model.Message;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory inverted index over message_text, so searches never scan the message table.
+ *
+ * Text is split into lower-cased runs of letters and digits. Each term has a posting list of the message_ids that
+ * contain it, kept sorted, with the number of times the term occurs in each: two parallel primitive arrays, an int and
+ * a short per posting. A forward entry per message remembers which posting lists it is in, so an update or delete
+ * touches only those. Searches rank messages with BM25, summed over the query's terms, so messages matching more of
+ * them, or rarer ones, come first; ties go to the newer message.
+ *
+ * The index is loaded once from the message table and then kept current by MessageService after each committed
+ * write. Searches share a read lock and writes take the write lock, which they hold only for the terms of one
+ * message.
+ */
+public class MessageSearchIndex {
+
+    /**
+     * BM25 term frequency saturation and length normalization.
+     */
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    /**
+     * Longer runs of letters and digits are cut to this many characters.
+     */
+    private static final int MAX_TERM_LENGTH = 64;
+    /**
+     * Query terms past this many are ignored, which bounds the work of one search.
+     */
+    private static final int MAX_QUERY_TERMS = 16;
+    /**
+     * Rough per-object overheads used in the memory estimate: a posting list with its two arrays, a term String with
+     * its backing array, a forward entry, and a hash map entry.
+     */
+    private static final int POSTINGS_OVERHEAD = 72;
+    private static final int TERM_OVERHEAD = 56;
+    private static final int DOCUMENT_OVERHEAD = 40;
+    private static final int MAP_ENTRY_OVERHEAD = 48;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Integer, Document> documents = new HashMap<>();
+    /**
+     * The length in terms of each indexed message, by message_id, read for every match while scoring. message_ids
+     * are handed out by auto_increment, so the array is dense.
+     */
+    private short[] lengths = new short[1024];
+    /**
+     * The total number of terms in all indexed messages, for the average message length BM25 normalizes by.
+     */
+    private long totalLength;
+    private volatile long postingCount;
+    private volatile long postingCapacity;
+    private volatile long termChars;
+
+    /**
+     * @return an index over every message currently in the message table.
+     */
+    public static MessageSearchIndex load(MessageDAO messageDAO) {
+        MessageSearchIndex index = new MessageSearchIndex();
+        index.lock.writeLock().lock();
+        try {
+            // Rows arrive in time order, so posting lists are appended to unsorted and sorted once at the end
+            messageDAO.streamAllMessages(message -> index.addDocument(message, false));
+            long capacity = 0;
+            for (Postings list : index.postings.values()) {
+                list.sort();
+                capacity += list.ids.length;
+            }
+            index.postingCapacity = capacity;
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+        return index;
+    }
+
+    /**
+     * Indexes a message that was created or whose text changed, replacing what was indexed for it before.
+     */
+    public void put(Message message) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(message.getMessage_id());
+            addDocument(message, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a deleted message from the index.
+     */
+    public void remove(int messageId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(messageId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks the messages matching any of the query's terms.
+     * @param offset how many of the best matches to skip.
+     * @param limit how many message_ids to return at most.
+     * @return the message_ids ranked from offset to offset + limit, best first; empty if the query has no terms
+     * in the index.
+     */
+    public int[] search(String query, int offset, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.size() > MAX_QUERY_TERMS) {
+            terms = terms.subList(0, MAX_QUERY_TERMS);
+        }
+        int wanted = offset + limit;
+        lock.readLock().lock();
+        try {
+            List<Postings> matched = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list != null && !matched.contains(list)) {
+                    matched.add(list);
+                }
+            }
+            if (matched.isEmpty() || wanted <= 0) {
+                return new int[0];
+            }
+            int documentCount = documents.size();
+            double averageLength = (double) totalLength / documentCount;
+            Postings[] lists = matched.toArray(new Postings[0]);
+            double[] idf = new double[lists.length];
+            for (int i = 0; i < idf.length; i++) {
+                int df = lists[i].size;
+                idf[i] = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+            }
+
+            // Walk the sorted posting lists together, newest first, so each matching message is scored once and, once
+            // the heap is full, a tie never displaces the newer message already in it
+            TopScores top = new TopScores(wanted);
+            int[] positions = new int[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                positions[i] = lists[i].size - 1;
+            }
+            while (true) {
+                int messageId = -1;
+                for (int i = 0; i < positions.length; i++) {
+                    if (positions[i] >= 0 && lists[i].ids[positions[i]] > messageId) {
+                        messageId = lists[i].ids[positions[i]];
+                    }
+                }
+                if (messageId < 0) {
+                    break;
+                }
+                double lengthNorm = K1 * (1 - B + B * lengths[messageId] / averageLength);
+                double score = 0;
+                for (int i = 0; i < positions.length; i++) {
+                    Postings list = lists[i];
+                    if (positions[i] >= 0 && list.ids[positions[i]] == messageId) {
+                        int tf = list.frequencies[positions[i]];
+                        score += idf[i] * tf * (K1 + 1) / (tf + lengthNorm);
+                        positions[i]--;
+                    }
+                }
+                top.offer((float) score, messageId);
+            }
+            int[] ranked = top.drainBestFirst();
+            return offset >= ranked.length ? new int[0] : Arrays.copyOfRange(ranked, offset, ranked.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of messages, terms and postings held, and an estimate of the memory they take.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("documents", documentCount());
+        stats.put("terms", termCount());
+        stats.put("postings", postingCount);
+        stats.put("estimated_bytes", estimatedBytes());
+        return stats;
+    }
+
+    public int documentCount() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long postingCount() {
+        return postingCount;
+    }
+
+    /**
+     * @return a rough estimate, in bytes, of the heap held by the index: the posting arrays at their allocated size,
+     * the term strings, and the per-message forward entries.
+     */
+    public long estimatedBytes() {
+        long documentCount;
+        long termCount;
+        long forwardReferences;
+        lock.readLock().lock();
+        try {
+            documentCount = documents.size();
+            termCount = postings.size();
+            forwardReferences = postingCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return postingCapacity * (Integer.BYTES + Short.BYTES)
+                + termCount * (POSTINGS_OVERHEAD + TERM_OVERHEAD + MAP_ENTRY_OVERHEAD) + termChars
+                + documentCount * (DOCUMENT_OVERHEAD + MAP_ENTRY_OVERHEAD) + forwardReferences * Integer.BYTES
+                + (long) lengths.length * Short.BYTES;
+    }
+
+    /**
+     * Splits text into lower-cased runs of letters and digits, in order and with repeats.
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= text.length(); ) {
+            int codePoint = i < text.length() ? text.codePointAt(i) : ' ';
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (term.length() < MAX_TERM_LENGTH) {
+                    term.appendCodePoint(Character.toLowerCase(codePoint));
+                }
+            } else if (term.length() > 0) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+            i += i < text.length() ? Character.charCount(codePoint) : 1;
+        }
+        return terms;
+    }
+
+    /**
+     * Adds a message that is not in the index. Callers hold the write lock.
+     * @param sorted whether to keep posting lists sorted now, or leave them to be sorted after a bulk load.
+     */
+    private void addDocument(Message message, boolean sorted) {
+        List<String> terms = tokenize(message.getMessage_text());
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        Postings[] lists = new Postings[frequencies.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            Postings list = postings.get(entry.getKey());
+            if (list == null) {
+                list = new Postings(entry.getKey());
+                postings.put(entry.getKey(), list);
+                termChars += entry.getKey().length();
+            }
+            long capacityBefore = list.ids.length;
+            short frequency = (short) Math.min(entry.getValue(), Short.MAX_VALUE);
+            if (sorted) {
+                list.insert(message.getMessage_id(), frequency);
+            } else {
+                list.append(message.getMessage_id(), frequency);
+            }
+            postingCapacity += list.ids.length - capacityBefore;
+            lists[i++] = list;
+        }
+        documents.put(message.getMessage_id(), new Document(lists, terms.size()));
+        if (message.getMessage_id() >= lengths.length) {
+            lengths = Arrays.copyOf(lengths, Math.max(message.getMessage_id() + 1, lengths.length * 2));
+        }
+        lengths[message.getMessage_id()] = (short) Math.min(terms.size(), Short.MAX_VALUE);
+        totalLength += terms.size();
+        postingCount += lists.length;
+    }
+
+    /**
+     * Removes a message if it is in the index. Callers hold the write lock.
+     */
+    private void removeDocument(int messageId) {
+        Document document = documents.remove(messageId);
+        if (document == null) {
+            return;
+        }
+        for (Postings list : document.postings) {
+            list.remove(messageId);
+            if (list.size == 0) {
+                postings.remove(list.term);
+                termChars -= list.term.length();
+                postingCapacity -= list.ids.length;
+            }
+        }
+        totalLength -= document.length;
+        postingCount -= document.postings.length;
+    }
+
+    /**
+     * The posting list of one term: message_ids in ascending order, and how often the term occurs in each.
+     */
+    private static final class Postings {
+        final String term;
+        int[] ids = new int[1];
+        short[] frequencies = new short[1];
+        int size;
+
+        Postings(String term) {
+            this.term = term;
+        }
+
+        void append(int messageId, short frequency) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            ids[size] = messageId;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        /**
+         * Adds a posting in order. New messages have the highest message_id, so this is normally an append.
+         */
+        void insert(int messageId, short frequency) {
+            if (size == 0 || ids[size - 1] < messageId) {
+                append(messageId, frequency);
+                return;
+            }
+            int position = -Arrays.binarySearch(ids, 0, size, messageId) - 1;
+            append(0, (short) 0);
+            System.arraycopy(ids, position, ids, position + 1, size - 1 - position);
+            System.arraycopy(frequencies, position, frequencies, position + 1, size - 1 - position);
+            ids[position] = messageId;
+            frequencies[position] = frequency;
+        }
+
+        void remove(int messageId) {
+            int position = Arrays.binarySearch(ids, 0, size, messageId);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - 1 - position);
+            System.arraycopy(frequencies, position + 1, frequencies, position, size - 1 - position);
+            size--;
+        }
+
+        /**
+         * Sorts the postings by message_id after a bulk load, and trims the arrays to size.
+         */
+        void sort() {
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] = (long) ids[i] << 16 | (frequencies[i] & 0xFFFF);
+            }
+            Arrays.sort(packed);
+            ids = new int[size];
+            frequencies = new short[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = (int) (packed[i] >> 16);
+                frequencies[i] = (short) packed[i];
+            }
+        }
+    }
+
+    /**
+     * What the index holds for one message: the posting lists it is in and its length in terms.
+     */
+    private static final class Document {
+        final Postings[] postings;
+        final int length;
+
+        Document(Postings[] postings, int length) {
+            this.postings = postings;
+            this.length = length;
+        }
+    }
+
+    /**
+     * The best n (score, message_id) pairs seen, in a min-heap of longs. Scores are never negative, so the bits of
+     * the float order the same way as the score, and the message_id in the low bits breaks ties in favour of newer
+     * messages.
+     */
+    private static final class TopScores {
+        private final long[] heap;
+        private int size;
+
+        TopScores(int capacity) {
+            this.heap = new long[capacity];
+        }
+
+        void offer(float score, int messageId) {
+            long entry = (long) Float.floatToIntBits(score) << 32 | (messageId & 0xFFFFFFFFL);
+            if (size < heap.length) {
+                heap[size] = entry;
+                siftUp(size++);
+            } else if (entry > heap[0]) {
+                heap[0] = entry;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * @return the message_ids held, best first; the heap is left empty.
+         */
+        int[] drainBestFirst() {
+            int[] ids = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                ids[i] = (int) heap[0];
+                heap[0] = heap[--size];
+                siftDown(0);
+            }
+            return ids;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (heap[parent] <= heap[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && heap[left] < heap[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && heap[right] < heap[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long t = heap[a];
+            heap[a] = heap[b];
+            heap[b] = t;
+        }
+    }
+}
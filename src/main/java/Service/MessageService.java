@@ -2,56 +2,294 @@ package Service;
 
 import DAO.MessageDAO;
 import DAO.AccountDAO;
+import DAO.FollowDAO;
+import DAO.MessageRowHandler;
 import Model.Message;
-import Model.Account;
+import Model.MessageBatchResult;
+import Model.MessageCursor;
+import Model.MessagePage;
+import Util.Bulkhead;
+import Util.Config;
+import Util.ConnectionUtil;
+import Util.DatabaseExecutor;
+import Util.Metrics;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 
 public class MessageService {
 
+    /**
+     * Page size used when a client asks for a paginated listing without giving a limit.
+     */
+    public static final int DEFAULT_PAGE_SIZE = Config.getInt("messages.page.defaultSize", 20);
+    /**
+     * Hard upper bound on the page size; larger limits are clamped to this value.
+     */
+    public static final int MAX_PAGE_SIZE = Config.getInt("messages.page.maxSize", 100);
+    /**
+     * Largest number of messages accepted in one batch creation request.
+     */
+    public static final int MAX_BATCH_SIZE = Config.getInt("messages.batch.maxSize", 1000);
+    /**
+     * How deep into a search's ranked matches clients may page.
+     */
+    public static final int MAX_SEARCH_DEPTH = Config.getInt("messages.search.maxDepth", 10000);
+
     private MessageDAO messageDAO;
-    private AccountDAO accountDAO;
+    private AccountIdSet accountIds;
+    private MessageCache messageCache;
+    private Bulkhead bulkhead;
+    private DatabaseExecutor dbExecutor;
+    /**
+     * Writes POST /messages inserts in groups when messages.groupCommit.enabled is set; null to insert them singly.
+     */
+    private MessageGroupCommitter groupCommitter;
+    /**
+     * Advanced after every committed write, for conditional GETs.
+     */
+    private MessageVersions versions;
+    /**
+     * Full-text index over message_text, loaded at startup and kept current alongside the versions.
+     */
+    private MessageSearchIndex searchIndex;
+    /**
+     * Pushes every committed change to live subscribers.
+     */
+    private MessageFeed feed;
+    /**
+     * Home timelines, which new messages are fanned out to.
+     */
+    private HomeTimelines timelines;
 
     public MessageService() {
+        this(AccountIdSet.load(new AccountDAO()));
+    }
+
+    /**
+     * @param accountIds the set of existing account_ids, shared with the AccountService that keeps it current.
+     */
+    public MessageService(AccountIdSet accountIds) {
+        this(accountIds, MessageGroupCommitter.get());
+    }
+
+    /**
+     * @param accountIds the set of existing account_ids, shared with the AccountService that keeps it current.
+     * @param groupCommitter the committer POST /messages inserts are written by, or null to insert them one at a time.
+     */
+    public MessageService(AccountIdSet accountIds, MessageGroupCommitter groupCommitter) {
         this.messageDAO = new MessageDAO();
-        this.accountDAO = new AccountDAO();
+        this.accountIds = accountIds;
+        this.bulkhead = ConnectionUtil.getBulkhead();
+        this.dbExecutor = DatabaseExecutor.get();
+        this.groupCommitter = groupCommitter;
+        this.messageCache = new MessageCache(Config.getInt("messages.cache.maxSize", 10000),
+                Config.getLong("messages.cache.ttlMs", 0));
+        this.versions = new MessageVersions(Config.getInt("messages.versions.stripes", 4096));
+        this.searchIndex = MessageSearchIndex.load(messageDAO);
+        this.feed = new MessageFeed();
+        this.timelines = new HomeTimelines(FollowGraph.load(new FollowDAO()), messageDAO, bulkhead);
+        Metrics.gauge("message_search_index_documents", "Messages held by the full-text search index.", "",
+                searchIndex::documentCount);
+        Metrics.gauge("message_search_index_terms", "Distinct terms in the full-text search index.", "",
+                searchIndex::termCount);
+        Metrics.gauge("message_search_index_postings", "Postings held by the full-text search index.", "",
+                searchIndex::postingCount);
+        Metrics.gauge("message_search_index_bytes", "Estimated heap held by the full-text search index.", "",
+                searchIndex::estimatedBytes);
+        Metrics.gauge("message_feed_subscribers", "Connections subscribed to the live message feed.", "",
+                feed::subscriberCount);
+        Metrics.gauge("home_timelines", "Home timelines held in memory.", "", timelines::timelineCount);
+        Metrics.gauge("follow_graph_edges", "Follows between accounts held in the follow graph.", "",
+                () -> timelines.graph().edgeCount());
     }
 
     public Message createMessage(Message message) {
-        // Validate that message_text is not blank and under 255 characters
-        if (message.getMessage_text() == null || message.getMessage_text().trim().isEmpty() || message.getMessage_text().length() >= 255) {
+        if (validateMessage(message) != null) {
             return null; 
         }
-    
-        Account account = accountDAO.getAccountById(message.getPosted_by());
-        if (account == null) {
-            return null; 
-        }  
-        return messageDAO.insertMessage(message); 
+        return recordCreate(bulkhead.call(() -> messageDAO.insertMessage(message)));
+    }
+
+    /**
+     * Creates a batch of messages. Each message is validated with the same rules as {@link #createMessage}; the
+     * valid ones are then inserted together in a single JDBC batch and transaction.
+     * @return one result per submitted message, in the same order, with either the created message or an error.
+     * @throws IllegalArgumentException if the batch is larger than {@link #MAX_BATCH_SIZE}.
+     */
+    public List<MessageBatchResult> createMessages(List<Message> messages) {
+        if (messages.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("A batch may contain at most " + MAX_BATCH_SIZE + " messages");
+        }
+        MessageBatchResult[] results = new MessageBatchResult[messages.size()];
+        List<Message> valid = new ArrayList<>(messages.size());
+        List<Integer> validIndexes = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            String error = validateMessage(messages.get(i));
+            if (error != null) {
+                results[i] = MessageBatchResult.failed(i, error);
+            } else {
+                valid.add(messages.get(i));
+                validIndexes.add(i);
+            }
+        }
+
+        List<Message> inserted = bulkhead.call(() -> messageDAO.insertMessages(valid));
+        for (int i = 0; i < validIndexes.size(); i++) {
+            int index = validIndexes.get(i);
+            results[index] = inserted != null
+                    ? MessageBatchResult.created(index, recordCreate(inserted.get(i)))
+                    : MessageBatchResult.failed(index, "insert failed");
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * @return why the message cannot be created, or null if it is valid.
+     */
+    private String validateMessage(Message message) {
+        // Validate that message_text is not blank and under 255 characters
+        if (message == null) {
+            return "message is missing";
+        }
+        if (message.getMessage_text() == null || message.getMessage_text().trim().isEmpty()) {
+            return "message_text must not be blank";
+        }
+        if (message.getMessage_text().length() >= 255) {
+            return "message_text must be under 255 characters";
+        }
+        // Checked against the in-memory account_id set, so a bogus posted_by never reaches the database
+        if (!accountIds.contains(message.getPosted_by())) {
+            return "posted_by does not refer to an existing account";
+        }
+        return null;
     }
 
     public List<Message> getAllMessages() {
-        return messageDAO.getAllMessages();
+        return bulkhead.call(messageDAO::getAllMessages);
     }
     
+    /**
+     * Retrieves one page of messages in (time_posted_epoch, message_id) order.
+     * @param cursor the opaque cursor returned with the previous page, or null for the first page.
+     * @param limit the requested page size; values above {@link #MAX_PAGE_SIZE} are clamped.
+     * @return the page, with a next_cursor if more messages may follow.
+     * @throws IllegalArgumentException if the cursor is malformed or the limit is not positive.
+     */
+    public MessagePage getMessagesPage(String cursor, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+        MessageCursor after = cursor == null ? null : MessageCursor.decode(cursor);
+
+        // Ask for one extra row so we know whether there is a next page without a second query
+        return toPage(bulkhead.call(() -> messageDAO.getMessagesPage(after, pageSize + 1)), pageSize);
+    }
+
+    /**
+     * Retrieves one page of an account's timeline.
+     * @param since the earliest time_posted_epoch to include, or null for no lower bound.
+     * @param until the time_posted_epoch to stop before, or null for no upper bound.
+     * @param newestFirst true to list the latest messages first, false for the oldest first.
+     * @param cursor the opaque cursor returned with the previous page, or null for the first page.
+     * @param limit the requested page size; values above {@link #MAX_PAGE_SIZE} are clamped.
+     * @return the page, with a next_cursor if more messages may follow.
+     * @throws IllegalArgumentException if the cursor is malformed, the limit is not positive, or since is not
+     * before until.
+     */
+    public MessagePage getMessagesByAccountIdPage(int accountId, Long since, Long until, boolean newestFirst,
+                                                  String cursor, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        if (since != null && until != null && since >= until) {
+            throw new IllegalArgumentException("since must be before until");
+        }
+        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+        MessageCursor after = cursor == null ? null : MessageCursor.decode(cursor);
+
+        long lowest = since == null ? Long.MIN_VALUE : since;
+        long highest = until == null ? Long.MAX_VALUE : until;
+        List<Message> messages = bulkhead.call(() -> messageDAO.getMessagesByAccountIdPage(accountId, lowest, highest,
+                newestFirst, after, pageSize + 1));
+        return toPage(messages, pageSize);
+    }
+
+    /**
+     * Turns the result of a query for pageSize + 1 rows into a page, using the extra row, if there was one, only to
+     * tell that a next page exists.
+     */
+    private static MessagePage toPage(List<Message> messages, int pageSize) {
+        String nextCursor = null;
+        if (messages.size() > pageSize) {
+            messages.remove(pageSize);
+            nextCursor = MessageCursor.after(messages.get(pageSize - 1)).encode();
+        }
+        return new MessagePage(messages, nextCursor);
+    }
+    
+    /**
+     * Retrieves a message, serving it from the message cache when possible.
+     */
     public Message getMessageById(int message_id) {
-        return messageDAO.getMessageById(message_id);
+        return messageCache.getOrLoad(message_id, id -> bulkhead.call(() -> messageDAO.getMessageById(id)));
     }
 
     public Message deleteMessageById(int message_id) {
-        return messageDAO.deleteMessageById(message_id);
+        return deleteMessageById(message_id, null);
+    }
+
+    /**
+     * Deletes a message on behalf of an account, which must have posted it. posted_by never changes, so checking the
+     * (usually cached) message first cannot race with the delete.
+     * @param actingAccountId the account deleting the message, or null to skip the ownership check.
+     * @return the deleted message, or null if there was no such message or it belongs to another account.
+     */
+    public Message deleteMessageById(int message_id, Integer actingAccountId) {
+        if (actingAccountId != null) {
+            Message existingMessage = getMessageById(message_id);
+            if (existingMessage == null || existingMessage.getPosted_by() != actingAccountId) {
+                return null;
+            }
+        }
+        Message deletedMessage = bulkhead.call(() -> messageDAO.deleteMessageById(message_id));
+        messageCache.invalidate(message_id);
+        return recordDelete(deletedMessage);
     }
 
     public Message updateMessageById(int messageId, String newMessageText) {
-        Message existingMessage = messageDAO.getMessageById(messageId);
+        return updateMessageById(messageId, newMessageText, null);
+    }
+
+    /**
+     * Updates a message's text on behalf of an account, which must have posted it.
+     * @param actingAccountId the account updating the message, or null to skip the ownership check.
+     * @return the updated message, or null if there was no such message or it belongs to another account.
+     */
+    public Message updateMessageById(int messageId, String newMessageText, Integer actingAccountId) {
+        Message existingMessage = getMessageById(messageId);
+        if (existingMessage != null && actingAccountId != null && existingMessage.getPosted_by() != actingAccountId) {
+            return null;
+        }
         if (existingMessage != null) {
             // Update the message_text
             existingMessage.setMessage_text(newMessageText);
             // Perform the update in the database
-            boolean isUpdated = messageDAO.updateMessage(existingMessage);
+            boolean isUpdated = bulkhead.call(() -> messageDAO.updateMessage(existingMessage));
+            // Invalidated rather than overwritten: a delete or another update may have committed since ours, and
+            // the next read reloads whichever won under the cache's write stamp
+            messageCache.invalidate(messageId);
             if (isUpdated) {
-                return existingMessage; 
+                return recordUpdate(existingMessage);
             } else {
                 return null; 
             }
@@ -60,7 +298,232 @@ public class MessageService {
         }
     }
 
+    /*
+     * After a write commits, these bring the search index and the versions up to date with the message it wrote, if
+     * there was one, and publish the change to the feed; a new message is also fanned out to home timelines. Each
+     * returns the message.
+     */
+
+    private Message recordCreate(Message message) {
+        if (message != null) {
+            searchIndex.put(message);
+            timelines.messageCreated(message);
+            feed.publish(MessageFeed.EventType.CREATED, message, versions.changed(message));
+        }
+        return message;
+    }
+
+    private Message recordUpdate(Message message) {
+        if (message != null) {
+            searchIndex.put(message);
+            feed.publish(MessageFeed.EventType.UPDATED, message, versions.changed(message));
+        }
+        return message;
+    }
+
+    private Message recordDelete(Message message) {
+        if (message != null) {
+            searchIndex.remove(message.getMessage_id());
+            feed.publish(MessageFeed.EventType.DELETED, message, versions.changed(message));
+        }
+        return message;
+    }
+
+    /**
+     * @return the home timelines fed by messages created through this service.
+     */
+    public HomeTimelines getTimelines() {
+        return timelines;
+    }
+
+    /**
+     * @return the live feed of changes made through this service.
+     */
+    public MessageFeed getFeed() {
+        return feed;
+    }
+
+    /**
+     * Searches message_text with the in-memory index and loads the page of matches, best match first, in one query.
+     * @param query the words to look for; messages containing more of them, or rarer ones, rank higher.
+     * @param cursor the opaque cursor returned with the previous page, or null for the first page.
+     * @param limit the requested page size; values above {@link #MAX_PAGE_SIZE} are clamped.
+     * @return the page, with a next_cursor if more matches may follow.
+     * @throws IllegalArgumentException if the query has no words, the cursor is malformed, the limit is not
+     * positive, or the page lies beyond {@link #MAX_SEARCH_DEPTH} matches.
+     */
+    public MessagePage searchMessages(String query, String cursor, int limit) {
+        if (query == null || MessageSearchIndex.tokenize(query).isEmpty()) {
+            throw new IllegalArgumentException("q must contain at least one word");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+        int offset = cursor == null ? 0 : decodeSearchCursor(cursor);
+        if (offset + pageSize > MAX_SEARCH_DEPTH) {
+            throw new IllegalArgumentException("Search results are limited to the first " + MAX_SEARCH_DEPTH);
+        }
+
+        // Rank one extra match so we know whether there is a next page
+        int[] ranked = searchIndex.search(query, offset, pageSize + 1);
+        int[] pageIds = Arrays.copyOf(ranked, Math.min(ranked.length, pageSize));
+        List<Message> messages = new ArrayList<>(pageIds.length);
+        if (pageIds.length > 0) {
+            Map<Integer, Message> byId = new HashMap<>();
+            for (Message message : bulkhead.call(() -> messageDAO.getMessagesByIds(pageIds))) {
+                byId.put(message.getMessage_id(), message);
+            }
+            for (int messageId : pageIds) {
+                // A message deleted since it was ranked is left out
+                Message message = byId.get(messageId);
+                if (message != null) {
+                    messages.add(message);
+                }
+            }
+        }
+        String nextCursor = ranked.length > pageSize ? encodeSearchCursor(offset + pageSize) : null;
+        return new MessagePage(messages, nextCursor);
+    }
+
+    /**
+     * @return the number of documents, terms and postings in the search index and its estimated size.
+     */
+    public Map<String, Object> getSearchIndexStats() {
+        return searchIndex.stats();
+    }
+
+    /**
+     * Search results are ranked, not ordered by a key, so a search cursor is the number of matches already seen.
+     */
+    private static String encodeSearchCursor(int offset) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("search:" + offset).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static int decodeSearchCursor(String encoded) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.US_ASCII);
+            if (!raw.startsWith("search:")) {
+                throw new IllegalArgumentException("Malformed cursor: " + encoded);
+            }
+            int offset = Integer.parseInt(raw.substring("search:".length()));
+            if (offset < 0) {
+                throw new IllegalArgumentException("Malformed cursor: " + encoded);
+            }
+            return offset;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + encoded, e);
+        }
+    }
+
+    /**
+     * @return the versions of the message data, advanced after every write made through this service.
+     */
+    public MessageVersions getVersions() {
+        return versions;
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the message cache.
+     */
+    public Map<String, Object> getCacheStats() {
+        return messageCache.stats();
+    }
+
+    /**
+     * @return the group commit counters, or null if group commit is not enabled.
+     */
+    public Map<String, Object> getGroupCommitStats() {
+        return groupCommitter == null ? null : groupCommitter.stats();
+    }
+
     public List<Message> getMessagesByAccountId(int accountId) {
-        return messageDAO.getMessagesByAccountId(accountId);
+        return bulkhead.call(() -> messageDAO.getMessagesByAccountId(accountId));
+    }
+
+    /**
+     * Streams every message to the handler without collecting them in memory.
+     */
+    public void streamAllMessages(MessageRowHandler handler) throws SQLException, IOException {
+        bulkhead.acquire();
+        try {
+            messageDAO.streamAllMessages(handler);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Streams every message posted by the given account to the handler without collecting them in memory.
+     */
+    public void streamMessagesByAccountId(int accountId, MessageRowHandler handler) throws SQLException, IOException {
+        bulkhead.acquire();
+        try {
+            messageDAO.streamMessagesByAccountId(accountId, handler);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /*
+     * Asynchronous variants. Each runs its synchronous counterpart on the DatabaseExecutor, so the calling thread is
+     * free as soon as the work is queued. Cancelling or timing out the returned future keeps queued work from
+     * starting.
+     */
+
+    /**
+     * With group commit enabled, the message is validated on the calling thread and then written as part of the next
+     * group; see {@link MessageGroupCommitter}.
+     */
+    public CompletableFuture<Message> createMessageAsync(Message message) {
+        if (groupCommitter == null) {
+            return dbExecutor.supply(() -> createMessage(message));
+        }
+        if (validateMessage(message) != null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // Recorded by the committer for every message it commits, even one whose caller has timed out meanwhile; a
+        // timeout or cancellation of the returned future only drops a message still queued
+        return groupCommitter.insert(message, this::recordCreate);
+    }
+
+    public CompletableFuture<List<MessageBatchResult>> createMessagesAsync(List<Message> messages) {
+        return dbExecutor.supply(() -> createMessages(messages));
+    }
+
+    public CompletableFuture<List<Message>> getAllMessagesAsync() {
+        return dbExecutor.supply(this::getAllMessages);
+    }
+
+    public CompletableFuture<MessagePage> getMessagesPageAsync(String cursor, int limit) {
+        return dbExecutor.supply(() -> getMessagesPage(cursor, limit));
+    }
+
+    public CompletableFuture<MessagePage> getMessagesByAccountIdPageAsync(int accountId, Long since, Long until,
+                                                                         boolean newestFirst, String cursor,
+                                                                         int limit) {
+        return dbExecutor.supply(() -> getMessagesByAccountIdPage(accountId, since, until, newestFirst, cursor, limit));
+    }
+
+    public CompletableFuture<MessagePage> searchMessagesAsync(String query, String cursor, int limit) {
+        return dbExecutor.supply(() -> searchMessages(query, cursor, limit));
+    }
+
+    public CompletableFuture<Message> getMessageByIdAsync(int message_id) {
+        return dbExecutor.supply(() -> getMessageById(message_id));
+    }
+
+    public CompletableFuture<Message> deleteMessageByIdAsync(int message_id, Integer actingAccountId) {
+        return dbExecutor.supply(() -> deleteMessageById(message_id, actingAccountId));
+    }
+
+    public CompletableFuture<Message> updateMessageByIdAsync(int messageId, String newMessageText,
+                                                             Integer actingAccountId) {
+        return dbExecutor.supply(() -> updateMessageById(messageId, newMessageText, actingAccountId));
+    }
+
+    public CompletableFuture<List<Message>> getMessagesByAccountIdAsync(int accountId) {
+        return dbExecutor.supply(() -> getMessagesByAccountId(accountId));
     }
 }
@@ -0,0 +1,81 @@
+package Service;
+
+import Model.Message;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Monotonic versions of the message data, for entity tags: one for the set of all messages, one per message and one
+ * per account's messages. A version only ever grows, and it grows whenever what it covers changes, so a client
+ * holding a version that is still current has nothing new to fetch.
+ *
+ * Every change draws the next number from a single sequence and raises the versions it affects to it. Per-message and
+ * per-account versions are kept in fixed arrays of stripes indexed by id, so memory does not grow with the number of
+ * messages; a change to one id also moves the version of the ids sharing its stripe, which only costs those clients
+ * a full response, never a stale one.
+ *
+ * Writers must call {@link #changed} after their change is committed, and readers must take the version before
+ * they query. A response can then only be tagged with a version older than its contents, never newer.
+ *
+ * Versions start again from zero whenever a MessageVersions is created, so each instance has a random epoch that
+ * belongs in any tag built from its versions.
+ */
+public class MessageVersions {
+
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private final AtomicLong global = new AtomicLong();
+    private final AtomicLongArray messageStripes;
+    private final AtomicLongArray accountStripes;
+    private final int mask;
+
+    /**
+     * @param stripes the number of per-message and of per-account versions; rounded up to a power of two.
+     */
+    public MessageVersions(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.messageStripes = new AtomicLongArray(size);
+        this.accountStripes = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return the random epoch of this instance's versions.
+     */
+    public String epoch() {
+        return epoch;
+    }
+
+    /**
+     * @return the version of the set of all messages.
+     */
+    public long global() {
+        return global.get();
+    }
+
+    /**
+     * @return the version of one message.
+     */
+    public long ofMessage(int messageId) {
+        return messageStripes.get(messageId & mask);
+    }
+
+    /**
+     * @return the version of the messages posted by one account.
+     */
+    public long ofAccount(int accountId) {
+        return accountStripes.get(accountId & mask);
+    }
+
+    /**
+     * Records that a message was created, updated or deleted.
+     * @return the version given to the change.
+     */
+    public long changed(Message message) {
+        long version = global.incrementAndGet();
+        messageStripes.accumulateAndGet(message.getMessage_id() & mask, version, Math::max);
+        accountStripes.accumulateAndGet(message.getPosted_by() & mask, version, Math::max);
+        return version;
+    }
+}
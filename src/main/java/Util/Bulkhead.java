@@ -0,0 +1,92 @@
+package Util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Limits how many callers may be inside a section of code at once. Callers beyond the limit wait up to maxWaitMillis
+ * for a permit and are then turned away with a {@link BulkheadFullException}, so that a burst of requests (easily
+ * tens of thousands when every request has its own virtual thread) is shed at the door instead of piling up on the
+ * database.
+ *
+ * A bulkhead created with maxConcurrent of 0 or less admits everyone and costs nothing.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final long maxWaitMillis;
+    /**
+     * Null when the bulkhead is disabled. Waiting on a semaphore rather than a monitor keeps virtual threads from
+     * pinning their carrier while they wait.
+     */
+    private final Semaphore permits;
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public Bulkhead(String name, int maxConcurrent, long maxWaitMillis) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent, true) : null;
+    }
+
+    /**
+     * Runs the call while holding a permit.
+     * @throws BulkheadFullException if no permit became free within the maximum wait.
+     */
+    public <T> T call(Supplier<T> call) {
+        acquire();
+        try {
+            return call.get();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Takes a permit, for callers that cannot be expressed as a Supplier. Every successful acquire must be paired with
+     * a {@link #release()} in a finally block.
+     * @throws BulkheadFullException if no permit became free within the maximum wait.
+     */
+    public void acquire() {
+        if (permits == null) {
+            return;
+        }
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new BulkheadFullException("Bulkhead '" + name + "' is full: " + maxConcurrent
+                        + " calls in progress and no permit became free within " + maxWaitMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            throw new BulkheadFullException("Interrupted while waiting to enter bulkhead '" + name + "'");
+        }
+        admitted.increment();
+    }
+
+    public void release() {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return the configured limit, calls in progress, callers waiting and the admitted and rejected counters.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("max_concurrent", maxConcurrent);
+        stats.put("in_use", permits == null ? 0 : maxConcurrent - permits.availablePermits());
+        stats.put("waiting", permits == null ? 0 : permits.getQueueLength());
+        stats.put("admitted", admitted.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+}
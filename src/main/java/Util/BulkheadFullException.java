@@ -0,0 +1,13 @@
+package Util;
+
+/**
+ * Thrown when a {@link Bulkhead} turns a caller away because it is already at its concurrency limit.
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,73 @@
+package Util;
+
+/**
+ * The Config class gives the rest of the application one place to read tunable settings from. A setting such as
+ * "db.pool.maxSize" is looked up first as a JVM system property (-Ddb.pool.maxSize=20) and then as an environment
+ * variable (DB_POOL_MAXSIZE=20). If neither is present, or the value cannot be parsed, the supplied default is used.
+ */
+public final class Config {
+
+    private Config() {
+    }
+
+    /**
+     * @param key the dotted name of the setting.
+     * @return the raw value of the setting, or null if it has not been configured.
+     */
+    public static String get(String key) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(key.replace('.', '_').toUpperCase());
+        }
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    public static String getString(String key, String defaultValue) {
+        String value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public static double getDouble(String key, double defaultValue) {
+        String value = get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+}
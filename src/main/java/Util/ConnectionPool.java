@@ -0,0 +1,338 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of reusable physical connections. Callers borrow a connection with {@link #getConnection()} and
+ * give it back by calling close() on it, exactly as they would with an unpooled connection, so DAO code written with
+ * try-with-resources works unchanged.
+ *
+ * At most maxSize connections exist at any time. A borrower that finds the pool exhausted waits up to
+ * acquireTimeoutMillis before an SQLTimeoutException is thrown. A background housekeeper closes connections that have
+ * sat idle longer than idleTimeoutMillis (never dropping below minSize) and logs the borrowing stack trace of any
+ * connection that has been held longer than leakThresholdMillis.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final DataSource dataSource;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+
+    /**
+     * One permit per connection that may be handed out. Waiting on a semaphore (rather than a monitor) keeps
+     * borrowers from pinning a carrier thread when they run on virtual threads.
+     */
+    private final Semaphore permits;
+    /**
+     * Idle connections, most recently returned first, so hot connections are reused and cold ones age out at the tail.
+     */
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(DataSource dataSource, int minSize, int maxSize, long acquireTimeoutMillis,
+                          long idleTimeoutMillis, long leakThresholdMillis, long housekeepingPeriodMillis) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.dataSource = dataSource;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        fillToMinimum();
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, housekeepingPeriodMillis, housekeepingPeriodMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new physical connection if none is idle and the pool is not yet
+     * at its maximum size.
+     * @return a connection that returns itself to the pool when closed.
+     * @throws SQLTimeoutException if no connection became available within the acquire timeout.
+     * @throws SQLException if a new physical connection could not be opened.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + acquireTimeoutMillis
+                        + "ms waiting for a database connection (max pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null && !pooled.isUsable()) {
+                destroy(pooled);
+            }
+            if (pooled == null) {
+                pooled = open();
+            }
+            pooled.lease(leakThresholdMillis > 0);
+            borrowed.add(pooled);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    public int getWaitingThreads() {
+        return permits.getQueueLength();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Closes every idle connection and stops the housekeeper. Borrowed connections are closed as they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        PooledConnection pooled = new PooledConnection(dataSource.getConnection());
+        totalConnections.incrementAndGet();
+        return pooled;
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            LOGGER.debug("Error closing pooled connection", e);
+        }
+    }
+
+    /**
+     * Called when a borrower closes its handle. The connection is put back into a clean auto-commit state before it
+     * is made available again; if that fails the physical connection is discarded instead.
+     */
+    private void release(PooledConnection pooled) {
+        if (!borrowed.remove(pooled)) {
+            return;
+        }
+        try {
+            if (closed || !pooled.reset()) {
+                destroy(pooled);
+            } else {
+                pooled.lastReturnedAt = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed && totalConnections.get() < minSize) {
+            try {
+                idle.offerLast(open());
+            } catch (SQLException e) {
+                LOGGER.warn("Could not open connection while filling pool to minimum size", e);
+                return;
+            }
+        }
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+
+            if (idleTimeoutMillis > 0) {
+                Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+                while (oldestFirst.hasNext() && totalConnections.get() > minSize) {
+                    PooledConnection pooled = oldestFirst.next();
+                    if (now - pooled.lastReturnedAt > idleTimeoutMillis && idle.removeLastOccurrence(pooled)) {
+                        destroy(pooled);
+                    }
+                }
+            }
+            fillToMinimum();
+
+            if (leakThresholdMillis > 0) {
+                for (PooledConnection pooled : borrowed) {
+                    Throwable borrowSite = pooled.borrowSite;
+                    long heldFor = now - pooled.borrowedAt;
+                    if (!pooled.leakReported && heldFor > leakThresholdMillis && borrowSite != null) {
+                        pooled.leakReported = true;
+                        LOGGER.warn("Possible connection leak: connection held for " + heldFor
+                                + "ms by thread '" + pooled.borrowerThread + "'. Borrowed at:", borrowSite);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Connection pool housekeeping failed", e);
+        }
+    }
+
+    /**
+     * A physical connection plus the bookkeeping the pool keeps about it. Every lease hands out a fresh proxy handle,
+     * so a caller holding on to a handle after closing it can never touch the connection's next borrower.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private volatile long borrowedAt;
+        private volatile long lastReturnedAt = System.currentTimeMillis();
+        private volatile Throwable borrowSite;
+        private volatile String borrowerThread;
+        private volatile boolean leakReported;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        private boolean isUsable() {
+            try {
+                return !physical.isClosed();
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private void lease(boolean captureBorrowSite) {
+            borrowedAt = System.currentTimeMillis();
+            borrowerThread = Thread.currentThread().getName();
+            borrowSite = captureBorrowSite ? new Throwable("Connection borrowed here") : null;
+            leakReported = false;
+        }
+
+        /**
+         * @return true if the connection is back in its default state and may be reused.
+         */
+        private boolean reset() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                if (physical.isReadOnly()) {
+                    physical.setReadOnly(false);
+                }
+                physical.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                LOGGER.debug("Discarding connection that could not be reset", e);
+                return false;
+            }
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new Handle(this));
+        }
+    }
+
+    /**
+     * The borrower's view of a pooled connection. close() returns the connection to the pool instead of closing it.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private volatile boolean handleClosed;
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!handleClosed) {
+                        handleClosed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return handleClosed || pooled.physical.isClosed();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + (handleClosed ? ", closed]" : "]");
+                default:
+                    break;
+            }
+            if (handleClosed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package Util;
 
-import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.h2.jdbcx.JdbcDataSource;
 import org.h2.tools.RunScript;
@@ -13,7 +17,21 @@ import org.h2.tools.RunScript;
  * our database. This class utilizes the singleton design pattern. We will be
  * utilizing an in-memory called h2database for the sql demos.
  *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
+ * Connections are handed out by a bounded {@link ConnectionPool}; callers must close every connection they borrow
+ * (ideally with try-with-resources) so that it is returned to the pool. The pool is tuned with the following
+ * settings (see {@link Config}):
+ * db.pool.minSize, db.pool.maxSize, db.pool.acquireTimeoutMs, db.pool.idleTimeoutMs, db.pool.leakThresholdMs and
+ * db.pool.housekeepingMs.
+ *
+ * Services make their DAO calls through the shared database {@link Bulkhead}, which is off unless
+ * db.bulkhead.maxConcurrent is set; db.bulkhead.maxWaitMs bounds how long a call waits to be admitted.
+ *
+ * The time taken to borrow each connection, failed borrows and the pool's size are published as {@link Metrics}.
+ *
+ * Every statement run on a borrowed connection is timed by the {@link SlowQueryLog}: db.slowQuery.thresholdMs (-1 to
+ * turn it off) sets what counts as slow, db.slowQuery.explainThresholdMs (-1, the default, for never) what is slow
+ * enough to have its plan captured, db.slowQuery.bufferSize how many slow statements are kept and
+ * db.slowQuery.redactColumns which columns' parameters are never logged.
  */
 public class ConnectionUtil {
 
@@ -32,42 +50,115 @@ public class ConnectionUtil {
 	private static String password = "sa";
 
 	/**
-	 * DataSource for pooling. Pooling enables the creation of multiple connections when connections are closed.
+	 * DataSource that opens the physical connections kept by the pool.
+	 */
+	private static JdbcDataSource dataSource = new JdbcDataSource();
+
+	/**
+	 * The pool every DAO borrows its connections from.
+	 */
+	private static ConnectionPool pool;
+
+	/**
+	 * The bulkhead every service's DAO calls pass through.
+	 */
+	private static Bulkhead bulkhead = new Bulkhead("database",
+			Config.getInt("db.bulkhead.maxConcurrent", 0),
+			Config.getLong("db.bulkhead.maxWaitMs", 1000));
+
+	/**
+	 * The log every statement on a borrowed connection is timed by.
+	 */
+	private static SlowQueryLog slowQueryLog = new SlowQueryLog(
+			Config.getLong("db.slowQuery.thresholdMs", 100),
+			Config.getLong("db.slowQuery.explainThresholdMs", -1),
+			Config.getInt("db.slowQuery.bufferSize", 100),
+			new HashSet<>(Arrays.asList(Config.getString("db.slowQuery.redactColumns", "password")
+					.toLowerCase(Locale.ROOT).split("\\s*,\\s*"))));
+
+	/**
+	 * How long {@link #getConnection()} took, whether it succeeded or not.
 	 */
-	private static JdbcDataSource pool = new JdbcDataSource();
+	private static final LatencyHistogram ACQUIRE_TIME = Metrics.histogram("db_connection_acquire_seconds",
+			"Time taken to borrow a connection from the pool.", "");
+	private static final LongAdder ACQUIRE_FAILURES = Metrics.counter("db_connection_acquire_failures_total",
+			"Connection borrows that timed out or failed.", "");
 
 	/**
-	 * static initialization block to establish credentials for DataSoure Pool
+	 * static initialization block to establish credentials for the DataSource and start the pool
 	 */
 	static {
-		pool.setURL(url);
-		pool.setUser(username);
-		pool.setPassword(password);
+		dataSource.setURL(url);
+		dataSource.setUser(username);
+		dataSource.setPassword(password);
+		pool = new ConnectionPool(dataSource,
+				Config.getInt("db.pool.minSize", 2),
+				Config.getInt("db.pool.maxSize", 10),
+				Config.getLong("db.pool.acquireTimeoutMs", 5000),
+				Config.getLong("db.pool.idleTimeoutMs", 300000),
+				Config.getLong("db.pool.leakThresholdMs", 60000),
+				Config.getLong("db.pool.housekeepingMs", 5000));
+		Metrics.gauge("db_pool_connections", "Connections held by the pool, by state.",
+				Metrics.labels("state", "active"), () -> pool.getActiveConnections());
+		Metrics.gauge("db_pool_connections", "Connections held by the pool, by state.",
+				Metrics.labels("state", "idle"), () -> pool.getIdleConnections());
+		Metrics.gauge("db_pool_max_connections", "The most connections the pool will open.", "",
+				() -> pool.getMaxSize());
+		Metrics.gauge("db_pool_waiting_threads", "Threads waiting to borrow a connection.", "",
+				() -> pool.getWaitingThreads());
 	}
 
 	/**
+	 * Borrows a connection from the pool. The connection must be closed to return it to the pool.
 	 * @return an active connection to the database
+	 * @throws SQLException if no connection could be obtained within the acquire timeout
 	 */
-	public static Connection getConnection() {
+	public static Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
 		try {
-			return pool.getConnection();
+			return slowQueryLog.wrap(pool.getConnection());
 		} catch (SQLException e) {
-			e.printStackTrace();
+			ACQUIRE_FAILURES.increment();
+			throw e;
+		} finally {
+			ACQUIRE_TIME.observeSince(start);
 		}
+	}
+
+	/**
+	 * @return the pool backing {@link #getConnection()}, for monitoring.
+	 */
+	public static ConnectionPool getPool() {
+		return pool;
+	}
 
-		return null;
+	/**
+	 * @return the log of statements slower than db.slowQuery.thresholdMs.
+	 */
+	public static SlowQueryLog getSlowQueryLog() {
+		return slowQueryLog;
+	}
+
+	/**
+	 * @return the bulkhead that limits how many DAO calls run at once.
+	 */
+	public static Bulkhead getBulkhead() {
+		return bulkhead;
 	}
 
 	/**
 	 * For the purpose of testing, we will need to drop and recreate our database
 	 * tables to keep it consistent across all tests. The method will read the sql
-	 * file in resources. This will be performed before every test.
+	 * file in resources. This will be performed before every test. The schema
+	 * migrations are then re-applied so tests run against the same indexes as
+	 * production.
 	 */
 	public static void resetTestDatabase() {
-		try {
-			FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-			RunScript.execute(getConnection(), sqlReader);
-		} catch (SQLException | FileNotFoundException e) {
+		try (Connection connection = getConnection();
+				FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql")) {
+			RunScript.execute(connection, sqlReader);
+			SchemaMigrator.migrate(connection, Integer.MAX_VALUE);
+		} catch (SQLException | IOException e) {
 			e.printStackTrace();
 		}
 	}
@@ -0,0 +1,98 @@
+package Util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A fixed-size pool of threads reserved for blocking JDBC work, so that HTTP threads can hand a query off and be
+ * released while it runs. The pool has db.executor.threads threads (by default as many as there are pooled
+ * connections, since more could only wait for a connection) and queues at most db.executor.queueSize tasks; work
+ * submitted beyond that fails at once with a RejectedExecutionException rather than queueing without bound.
+ *
+ * Use the shared instance from {@link #get()}.
+ */
+public class DatabaseExecutor {
+
+    private static final DatabaseExecutor INSTANCE = new DatabaseExecutor(
+            Config.getInt("db.executor.threads", Config.getInt("db.pool.maxSize", 10)),
+            Config.getInt("db.executor.queueSize", 10000));
+
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+
+    public DatabaseExecutor(int threads, int queueSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "db-executor-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public static DatabaseExecutor get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Runs the work on a database thread.
+     *
+     * If the returned future is completed by anyone else first, typically by a request timeout or cancel(), work that
+     * has not started yet never runs. Work already running is not interrupted, because interrupting a thread inside
+     * H2 can close the database file; it finishes and its result is discarded.
+     * @return a future completed with the work's result or failure, or failed with a RejectedExecutionException if
+     * the queue is full.
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(work.get());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            result.completeExceptionally(e);
+            return result;
+        }
+        result.whenComplete((value, failure) -> {
+            if (failure != null && task.cancel(false)) {
+                cancelled.increment();
+                // Free the queue slot now rather than when a thread gets round to the dead task
+                executor.remove((Runnable) task);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return the pool size, busy threads, queue depth and the completed, rejected and cancelled task counters.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", executor.getMaximumPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("completed", executor.getCompletedTaskCount());
+        stats.put("rejected", rejected.sum());
+        stats.put("cancelled", cancelled.sum());
+        return stats;
+    }
+}
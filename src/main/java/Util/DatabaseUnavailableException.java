@@ -0,0 +1,16 @@
+package Util;
+
+import java.sql.SQLTimeoutException;
+
+/**
+ * Thrown by a DAO when no database connection became available within the pool's acquire timeout, so that the
+ * caller gets an error rather than an empty or failed result it cannot tell from a real one.
+ */
+public class DatabaseUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DatabaseUnavailableException(SQLTimeoutException cause) {
+        super(cause.getMessage(), cause);
+    }
+}
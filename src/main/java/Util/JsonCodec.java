@@ -0,0 +1,245 @@
+package Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+import Model.Account;
+import Model.Message;
+import io.javalin.json.JsonMapper;
+
+/**
+ * The JsonCodec class is the application's single JSON (de)serialization layer. One ObjectMapper is built at
+ * startup, and an ObjectReader and ObjectWriter are cached for every type the first time it is seen, so request
+ * handlers never construct mappers or resolve serializers on the hot path. Bodies are parsed directly from the request
+ * input stream without first being copied into a String.
+ *
+ * The codec is registered as Javalin's JsonMapper, so ctx.json(...) goes through the same cached writers.
+ *
+ * The same data model can also be read and written in the binary {@link WireFormat}s (Smile, CBOR and MessagePack).
+ * Each format has its own mapper, configured like the JSON one, with its own cached readers and writers.
+ *
+ * Setting json.backend=blackbird (see {@link Config}) switches property access from reflection to generated
+ * lambda accessors via Jackson's Blackbird module, for every format.
+ */
+public final class JsonCodec implements JsonMapper {
+
+    private static final JsonCodec INSTANCE = new JsonCodec(Config.getString("json.backend", "default"));
+
+    private final ObjectMapper mapper;
+    private final Map<WireFormat, Encoding> encodings = new EnumMap<>(WireFormat.class);
+
+    /**
+     * The mapper of one wire format and the readers and writers cached for it.
+     */
+    private static final class Encoding {
+        final ObjectMapper mapper;
+        final ConcurrentHashMap<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+        Encoding(ObjectMapper mapper) {
+            this.mapper = mapper;
+        }
+    }
+
+    private JsonCodec(String backend) {
+        boolean blackbird = "blackbird".equalsIgnoreCase(backend);
+        if (!blackbird && !"default".equalsIgnoreCase(backend)) {
+            System.out.println("Unknown json.backend '" + backend + "', using the default Jackson backend");
+        }
+        for (WireFormat format : WireFormat.values()) {
+            ObjectMapper formatMapper = newMapper(format);
+            if (blackbird) {
+                formatMapper.registerModule(new BlackbirdModule());
+            }
+            encodings.put(format, new Encoding(formatMapper));
+        }
+        this.mapper = encodings.get(WireFormat.JSON).mapper;
+        // Build the readers and writers for the model types up front so the first requests don't pay for it
+        for (WireFormat format : WireFormat.values()) {
+            for (Class<?> modelType : new Class<?>[] { Account.class, Message.class }) {
+                readerFor(format, modelType);
+                writerFor(format, modelType);
+            }
+        }
+    }
+
+    private static ObjectMapper newMapper(WireFormat format) {
+        switch (format) {
+            case SMILE:
+                return new ObjectMapper(new SmileFactory());
+            case CBOR:
+                return new ObjectMapper(new CBORFactory());
+            case MSGPACK:
+                return new ObjectMapper(new MessagePackFactory());
+            default:
+                return new ObjectMapper();
+        }
+    }
+
+    /**
+     * @return the shared codec.
+     */
+    public static JsonCodec get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the JsonFactory behind the shared mapper, for code that writes JSON with a streaming JsonGenerator.
+     */
+    public JsonFactory factory() {
+        return mapper.getFactory();
+    }
+
+    /**
+     * @return the cached reader for the given type.
+     */
+    public ObjectReader readerFor(Type type) {
+        return readerFor(WireFormat.JSON, type);
+    }
+
+    /**
+     * @return the cached writer for the given type.
+     */
+    public ObjectWriter writerFor(Type type) {
+        return writerFor(WireFormat.JSON, type);
+    }
+
+    /**
+     * @return the cached reader for the given type in the given format.
+     */
+    public ObjectReader readerFor(WireFormat format, Type type) {
+        Encoding encoding = encodings.get(format);
+        return encoding.readers.computeIfAbsent(type,
+                t -> encoding.mapper.readerFor(encoding.mapper.getTypeFactory().constructType(t)));
+    }
+
+    /**
+     * @return the cached writer for the given type in the given format.
+     */
+    public ObjectWriter writerFor(WireFormat format, Type type) {
+        Encoding encoding = encodings.get(format);
+        return encoding.writers.computeIfAbsent(type,
+                t -> encoding.mapper.writerFor(encoding.mapper.getTypeFactory().constructType(t)));
+    }
+
+    /**
+     * Parses a value of the given type directly from a stream, such as a request body.
+     */
+    public <T> T read(InputStream in, Class<T> type) throws IOException {
+        return readerFor(type).readValue(in);
+    }
+
+    /**
+     * Parses a JSON array of the given element type directly from a stream.
+     */
+    public <T> List<T> readList(InputStream in, Class<T> elementType) throws IOException {
+        return readerFor(mapper.getTypeFactory().constructCollectionType(List.class, elementType)).readValue(in);
+    }
+
+    /**
+     * Parses a JSON array of the given element type directly from a stream, one element at a time, and stops as soon
+     * as it holds more than maxSize elements, so an oversized array is never read into memory whole.
+     * @return the elements, or null if the stream holds a JSON null or nothing at all.
+     * @throws IllegalArgumentException if the array has more than maxSize elements.
+     */
+    public <T> List<T> readList(InputStream in, Class<T> elementType, int maxSize) throws IOException {
+        ObjectReader reader = readerFor(elementType);
+        try (JsonParser parser = reader.createParser(in)) {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw MismatchedInputException.from(parser, List.class, "Expected a JSON array");
+            }
+            List<T> values = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (values.size() == maxSize) {
+                    throw new IllegalArgumentException("Expected at most " + maxSize + " elements");
+                }
+                values.add(reader.readValue(parser));
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Parses a value of the given type from a stream encoded in the given format.
+     */
+    public <T> T read(InputStream in, Class<T> type, WireFormat format) throws IOException {
+        return readerFor(format, type).readValue(in);
+    }
+
+    /**
+     * Serializes a value to UTF-8 JSON bytes.
+     */
+    public byte[] writeBytes(Object value) throws IOException {
+        return writerFor(value.getClass()).writeValueAsBytes(value);
+    }
+
+    /**
+     * Serializes a value in the given format.
+     */
+    public byte[] writeBytes(Object value, WireFormat format) throws IOException {
+        return writerFor(format, value.getClass()).writeValueAsBytes(value);
+    }
+
+    @Override
+    public String toJsonString(Object obj, Type type) {
+        if (obj instanceof String) {
+            return (String) obj;
+        }
+        try {
+            return writerFor(obj.getClass()).writeValueAsString(obj);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public InputStream toJsonStream(Object obj, Type type) {
+        try {
+            return new ByteArrayInputStream(writeBytes(obj));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonString(String json, Type targetType) {
+        try {
+            return readerFor(targetType).readValue(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonStream(InputStream json, Type targetType) {
+        try {
+            return readerFor(targetType).readValue(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package Util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with fixed bucket boundaries from 100 microseconds to 10 seconds, in the shape Prometheus
+ * expects. Each bucket is a LongAdder, so recording is a short scan of a constant array plus two striped increments:
+ * no allocation and no contention between threads. Obtain instances from {@link Metrics#histogram}.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Upper bounds of the buckets, in nanoseconds. Anything slower falls into the implicit +Inf bucket.
+     */
+    private static final long[] BOUNDS_NANOS = {
+            100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L,
+            10_000_000L, 25_000_000L, 50_000_000L,
+            100_000_000L, 250_000_000L, 500_000_000L,
+            1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+    /**
+     * The same bounds as Prometheus "le" labels, in seconds.
+     */
+    private static final String[] BOUND_LABELS = {
+            "0.0001", "0.00025", "0.0005",
+            "0.001", "0.0025", "0.005",
+            "0.01", "0.025", "0.05",
+            "0.1", "0.25", "0.5",
+            "1", "2.5", "5", "10"
+    };
+
+    /**
+     * Non-cumulative counts; the last element is the +Inf bucket.
+     */
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void observeNanos(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Records the time elapsed since startNanos, a value previously read from System.nanoTime().
+     */
+    public void observeSince(long startNanos) {
+        observeNanos(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Appends the _bucket, _sum and _count samples of this histogram in Prometheus text format.
+     * @param labels the histogram's labels, already formatted by {@link Metrics#labels}, or an empty string.
+     */
+    void writeTo(StringBuilder out, String name, String labels) {
+        String separator = labels.isEmpty() ? "" : ",";
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i].sum();
+            out.append(name).append("_bucket{").append(labels).append(separator).append("le=\"")
+                    .append(i < BOUND_LABELS.length ? BOUND_LABELS[i] : "+Inf").append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(braces).append(' ').append(sumNanos.sum() / 1e9).append('\n');
+        out.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+    }
+}
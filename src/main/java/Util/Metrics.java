@@ -0,0 +1,120 @@
+package Util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * The application's metrics registry, rendered in the Prometheus text exposition format by {@link #scrape()}.
+ *
+ * Metrics are registered once, typically into a static final field, and then updated without further lookups:
+ * counters are LongAdders and histograms are {@link LatencyHistogram}s, so the hot path never allocates or takes a
+ * lock. Registering the same name and labels again returns the metric already registered, which lets objects that are
+ * created more than once (such as controllers in tests) share their metrics. Gauges are read when scraped.
+ */
+public final class Metrics {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final Map<String, Family> FAMILIES = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the counter with this name and labels, registering it if needed.
+     */
+    public static LongAdder counter(String name, String help, String labels) {
+        return (LongAdder) family(name, help, "counter").metrics.computeIfAbsent(labels, l -> new LongAdder());
+    }
+
+    /**
+     * @return the histogram with this name and labels, registering it if needed. By convention the name ends in
+     * _seconds; values are recorded in nanoseconds and exposed in seconds.
+     */
+    public static LatencyHistogram histogram(String name, String help, String labels) {
+        return (LatencyHistogram) family(name, help, "histogram").metrics.computeIfAbsent(labels,
+                l -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a gauge whose value is read from the supplier at every scrape, replacing any earlier gauge with the
+     * same name and labels.
+     */
+    public static void gauge(String name, String help, String labels, DoubleSupplier value) {
+        family(name, help, "gauge").metrics.put(labels, value);
+    }
+
+    /**
+     * Formats label pairs for the registration methods, escaping values as the exposition format requires.
+     * @param namesAndValues alternating label names and values, such as "method", "GET", "route", "/messages".
+     */
+    public static String labels(String... namesAndValues) {
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i + 1 < namesAndValues.length; i += 2) {
+            if (labels.length() > 0) {
+                labels.append(',');
+            }
+            labels.append(namesAndValues[i]).append("=\"")
+                    .append(namesAndValues[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return labels.toString();
+    }
+
+    /**
+     * @return every registered metric in Prometheus text format, families in name order.
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        for (Map.Entry<String, Family> entry : FAMILIES.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+                String labels = metric.getKey();
+                Object value = metric.getValue();
+                if (value instanceof LatencyHistogram) {
+                    ((LatencyHistogram) value).writeTo(out, name, labels);
+                    continue;
+                }
+                out.append(name);
+                if (!labels.isEmpty()) {
+                    out.append('{').append(labels).append('}');
+                }
+                out.append(' ');
+                if (value instanceof LongAdder) {
+                    out.append(((LongAdder) value).sum());
+                } else {
+                    out.append(((DoubleSupplier) value).getAsDouble());
+                }
+                out.append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static Family family(String name, String help, String type) {
+        Family family = FAMILIES.computeIfAbsent(name, n -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private static final class Family {
+        final String help;
+        final String type;
+        /**
+         * Metrics of this family by their formatted labels.
+         */
+        final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
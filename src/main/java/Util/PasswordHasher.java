@@ -0,0 +1,169 @@
+package Util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Hashes and verifies passwords with PBKDF2-HMAC-SHA256 on a small pool of its own, so that the deliberately slow
+ * hashing competes neither with HTTP threads nor with database threads. The pool has auth.hashing.threads threads (by
+ * default one per processor, as the work is pure CPU) and queues at most auth.hashing.queueSize requests; beyond that
+ * work fails at once with a RejectedExecutionException.
+ *
+ * Hashes are stored as "pbkdf2-sha256$iterations$salt$hash" with base64 salt and hash, so the iteration count
+ * (auth.password.iterations) can be raised later without invalidating existing hashes. A stored value not in that
+ * form is a password saved in plain text before hashing was introduced; it is still accepted, compared in constant
+ * time, and {@link #needsRehash} tells the caller to replace it.
+ *
+ * Use the shared instance from {@link #get()}.
+ */
+public class PasswordHasher {
+
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final PasswordHasher INSTANCE = new PasswordHasher(
+            Config.getInt("auth.password.iterations", 100_000),
+            Config.getInt("auth.hashing.threads", Runtime.getRuntime().availableProcessors()),
+            Config.getInt("auth.hashing.queueSize", 1000));
+
+    private final int iterations;
+    private final ThreadPoolExecutor executor;
+    private final SecureRandom random = new SecureRandom();
+    private final LongAdder rejected = new LongAdder();
+    /**
+     * Verified against when there is no stored hash, so that an unknown username costs as much as a wrong password.
+     */
+    private final String decoyHash;
+
+    public PasswordHasher(int iterations, int threads, int queueSize) {
+        this.iterations = iterations;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.decoyHash = hash("decoy password");
+    }
+
+    public static PasswordHasher get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Hashes the password on the hashing pool.
+     */
+    public CompletableFuture<String> hashAsync(String password) {
+        return supply(() -> hash(password));
+    }
+
+    /**
+     * Checks the password against a stored hash, or a legacy plain-text password, on the hashing pool.
+     * @param stored the stored value, or null if there is none, in which case the check still costs a full hash and
+     * fails.
+     */
+    public CompletableFuture<Boolean> verifyAsync(String password, String stored) {
+        return supply(() -> {
+            if (stored == null) {
+                verify(password, decoyHash);
+                return false;
+            }
+            return verify(password, stored);
+        });
+    }
+
+    /**
+     * @return true if the stored value is plain text or was hashed with fewer iterations than are now configured.
+     */
+    public boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        return parts.length != 4 || Integer.parseInt(parts[1]) < iterations;
+    }
+
+    /**
+     * @return the pool size, busy threads, queue depth and rejections.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("iterations", iterations);
+        stats.put("threads", executor.getMaximumPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("completed", executor.getCompletedTaskCount());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    private String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    private static boolean verify(String password, String stored) {
+        if (password == null) {
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        Base64.Decoder base64 = Base64.getDecoder();
+        byte[] expected = base64.decode(parts[3]);
+        return MessageDigest.isEqual(expected, pbkdf2(password, base64.decode(parts[2]), Integer.parseInt(parts[1])));
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e);
+        }
+    }
+
+    private <T> CompletableFuture<T> supply(Supplier<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(work.get());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+}
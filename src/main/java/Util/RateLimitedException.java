@@ -0,0 +1,32 @@
+package Util;
+
+/**
+ * Thrown when a {@link RateLimiter} turns a request away because its key has used up its allowance.
+ *
+ * Rate limits are hit hardest under abuse, so no stack trace is captured.
+ */
+public class RateLimitedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterNanos;
+
+    public RateLimitedException(String message, long retryAfterNanos) {
+        super(message, null, false, false);
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    /**
+     * @return how long until the key may make another request, in nanoseconds.
+     */
+    public long getRetryAfterNanos() {
+        return retryAfterNanos;
+    }
+
+    /**
+     * @return the wait rounded up to whole seconds, as a Retry-After header needs it, and at least 1.
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfterNanos + 999_999_999L) / 1_000_000_000L);
+    }
+}
@@ -0,0 +1,129 @@
+package Util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A token bucket per key (a client IP, an account, ...), refilled at ratePerSecond and holding at most burst tokens.
+ *
+ * Each bucket is a single AtomicLong holding the time at which it will be full again (the "generic cell rate
+ * algorithm" form of a token bucket), so taking a token is one compare-and-set: no locks, and no allocation once the
+ * key has a bucket. A bucket that has refilled completely is indistinguishable from a new one, so it can be dropped
+ * at any moment; the table is swept of such idle buckets every sweep interval and whenever it reaches maxKeys. If it
+ * is still full of active buckets, new keys are let through untracked rather than evicting buckets that are
+ * limiting someone.
+ *
+ * A limiter created with ratePerSecond of 0 or less admits everyone and costs nothing.
+ */
+public class RateLimiter {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final String name;
+    private final double ratePerSecond;
+    private final int burst;
+    private final int maxKeys;
+    /**
+     * Time between tokens, or 0 when the limiter is disabled.
+     */
+    private final long intervalNanos;
+    /**
+     * How far ahead of now a bucket's full-again time may be and still have a token to give.
+     */
+    private final long toleranceNanos;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private volatile long nextSweepAt = System.nanoTime() + SWEEP_INTERVAL_NANOS;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+    private final LongAdder rejectedMetric;
+
+    public RateLimiter(String name, double ratePerSecond, int burst, int maxKeys) {
+        this.name = name;
+        this.ratePerSecond = ratePerSecond;
+        this.burst = Math.max(1, burst);
+        this.maxKeys = maxKeys;
+        this.intervalNanos = ratePerSecond > 0 ? Math.max(1, (long) (1e9 / ratePerSecond)) : 0;
+        this.toleranceNanos = intervalNanos * (this.burst - 1);
+        this.rejectedMetric = Metrics.counter("rate_limit_rejected_total",
+                "Requests turned away by a rate limit, by limit.", Metrics.labels("limit", name));
+    }
+
+    /**
+     * Takes a token from the key's bucket.
+     * @param key who the request is counted against; null counts against no one.
+     * @throws RateLimitedException if the bucket is empty.
+     */
+    public void acquire(String key) {
+        if (intervalNanos == 0 || key == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys) {
+                sweep(now);
+                if (buckets.size() >= maxKeys) {
+                    untracked.increment();
+                    return;
+                }
+            }
+            // A new bucket is full as of now
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+
+        while (true) {
+            long fullAt = bucket.get();
+            long start = Math.max(fullAt, now);
+            long wait = start - now - toleranceNanos;
+            if (wait > 0) {
+                rejected.increment();
+                rejectedMetric.increment();
+                throw new RateLimitedException("Rate limit '" + name + "' exceeded", wait);
+            }
+            if (bucket.compareAndSet(fullAt, start + intervalNanos)) {
+                break;
+            }
+        }
+        allowed.increment();
+        if (now - nextSweepAt >= 0) {
+            sweep(now);
+        }
+    }
+
+    /**
+     * @return the limit, the number of tracked keys, and the allowed, rejected and untracked counters.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("rate_per_second", ratePerSecond);
+        stats.put("burst", burst);
+        stats.put("keys", buckets.size());
+        stats.put("max_keys", maxKeys);
+        stats.put("allowed", allowed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("untracked", untracked.sum());
+        return stats;
+    }
+
+    /**
+     * Drops every bucket that has refilled completely. Only one thread sweeps at a time; the others carry on.
+     */
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            nextSweepAt = now + SWEEP_INTERVAL_NANOS;
+            buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
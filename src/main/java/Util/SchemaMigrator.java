@@ -0,0 +1,149 @@
+package Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.h2.tools.RunScript;
+
+/**
+ * The SchemaMigrator class brings the database schema up to date by applying numbered SQL scripts from
+ * src/main/resources/db/migration. Each script is named V&lt;version&gt;__&lt;description&gt;.sql and listed, in order,
+ * in migrations.txt in the same directory. The highest applied version is recorded in the schema_version table, so
+ * each script runs exactly once per database and existing data is left in place.
+ *
+ * To change the schema, add a new script with the next version number and append it to migrations.txt; never edit
+ * a script that has already been released.
+ */
+public final class SchemaMigrator {
+
+    private static final String MIGRATION_DIRECTORY = "db/migration/";
+    private static final String MANIFEST = MIGRATION_DIRECTORY + "migrations.txt";
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Applies every pending migration using a connection from {@link ConnectionUtil}.
+     */
+    public static void migrate() {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            migrate(connection, Integer.MAX_VALUE);
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Database migration failed", e);
+        }
+    }
+
+    /**
+     * Applies pending migrations up to and including targetVersion.
+     * @return the schema version after migrating.
+     */
+    public static int migrate(Connection connection, int targetVersion) throws SQLException, IOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists schema_version ("
+                    + "version int primary key, "
+                    + "description varchar(255), "
+                    + "installed_on timestamp default current_timestamp)");
+        }
+
+        int current = currentVersion(connection);
+        for (String script : listMigrations()) {
+            int version = versionOf(script);
+            if (version <= current || version > targetVersion) {
+                continue;
+            }
+            apply(connection, script, version);
+            current = version;
+        }
+        return current;
+    }
+
+    /**
+     * @return the highest applied version, or 0 for a database that has never been migrated.
+     */
+    public static int currentVersion(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                "SELECT COALESCE(MAX(version), 0) FROM schema_version");
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static void apply(Connection connection, String script, int version) throws SQLException, IOException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Reader reader = open(MIGRATION_DIRECTORY + script)) {
+            RunScript.execute(connection, reader);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                preparedStatement.setInt(1, version);
+                preparedStatement.setString(2, descriptionOf(script));
+                preparedStatement.executeUpdate();
+            }
+            connection.commit();
+            System.out.println("Applied database migration " + script);
+        } catch (SQLException | IOException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static List<String> listMigrations() throws IOException {
+        List<String> scripts = new ArrayList<>();
+        int previous = 0;
+        try (BufferedReader reader = new BufferedReader(open(MANIFEST))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int version = versionOf(line);
+                if (version <= previous) {
+                    throw new IllegalStateException("Migrations must be listed in increasing version order: " + line);
+                }
+                previous = version;
+                scripts.add(line);
+            }
+        }
+        return scripts;
+    }
+
+    private static int versionOf(String script) {
+        int separator = script.indexOf("__");
+        if (!script.startsWith("V") || separator < 2) {
+            throw new IllegalStateException("Migration script name must look like V<version>__<description>.sql: "
+                    + script);
+        }
+        return Integer.parseInt(script.substring(1, separator));
+    }
+
+    private static String descriptionOf(String script) {
+        String description = script.substring(script.indexOf("__") + 2);
+        if (description.endsWith(".sql")) {
+            description = description.substring(0, description.length() - 4);
+        }
+        return description.replace('_', ' ');
+    }
+
+    private static Reader open(String resource) throws IOException {
+        InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("Missing migration resource " + resource);
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+}
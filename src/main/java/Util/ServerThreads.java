@@ -0,0 +1,60 @@
+package Util;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * Builds the Jetty server Javalin runs on, with the thread model chosen by the "server.threads" setting:
+ *
+ * platform (the default) handles each request on a thread from a bounded pool of server.threads.max platform
+ * threads (minimum server.threads.min), so at most that many requests can be blocked in JDBC calls at once.
+ *
+ * virtual hands each request to its own virtual thread. Blocking on the database then parks a cheap virtual thread
+ * instead of holding a pool thread, so concurrency is no longer capped by the pool size; the database bulkhead
+ * (db.bulkhead.maxConcurrent, see {@link ConnectionUtil}) should be set to keep that concurrency from reaching H2.
+ * Requires a Java 21 runtime; the code is compiled against older JDKs too and finds virtual threads reflectively.
+ */
+public final class ServerThreads {
+
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    private ServerThreads() {
+    }
+
+    /**
+     * @return the configured thread model, PLATFORM or VIRTUAL.
+     * @throws IllegalStateException if server.threads is set to anything else.
+     */
+    public static String mode() {
+        String mode = Config.getString("server.threads", PLATFORM).toLowerCase();
+        if (!mode.equals(PLATFORM) && !mode.equals(VIRTUAL)) {
+            throw new IllegalStateException("server.threads must be " + PLATFORM + " or " + VIRTUAL + ", not " + mode);
+        }
+        return mode;
+    }
+
+    /**
+     * @return a new, unstarted Jetty server using the configured thread model.
+     * @throws IllegalStateException if virtual threads were asked for but the runtime does not support them.
+     */
+    public static Server createServer() {
+        QueuedThreadPool threadPool = new QueuedThreadPool(
+                Config.getInt("server.threads.max", 250),
+                Config.getInt("server.threads.min", 8),
+                Config.getInt("server.threads.idleTimeoutMs", 60000));
+        if (mode().equals(VIRTUAL)) {
+            if (!VirtualThreads.areSupported()) {
+                throw new IllegalStateException("server.threads=" + VIRTUAL + " needs a Java 21 runtime, but this is "
+                        + System.getProperty("java.version"));
+            }
+            // Jetty keeps the pool's platform threads for its selectors and runs request handling on virtual threads
+            threadPool.setUseVirtualThreads(true);
+            threadPool.setName("JettyServerVirtualThreadPool");
+        } else {
+            threadPool.setName("JettyServerThreadPool");
+        }
+        return new Server(threadPool);
+    }
+}
@@ -0,0 +1,112 @@
+package Util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Stateless session tokens: an account_id and an expiry time, signed with HMAC-SHA256. A token is checked entirely in
+ * memory, so authenticated requests need no session store and no account lookup.
+ *
+ * Tokens look like "v1.{account_id}.{expires_epoch_seconds}.{signature}", the signature being base64url without
+ * padding. They are valid for auth.token.ttlSeconds (default an hour). The key comes from auth.token.secret; without
+ * one a random key is generated at startup, which is fine for a single server but means tokens do not survive a
+ * restart and are not accepted by other instances.
+ *
+ * Use the shared instance from {@link #get()}.
+ */
+public class SessionTokens {
+
+    private static final String VERSION = "v1";
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final SessionTokens INSTANCE = new SessionTokens(secret(Config.get("auth.token.secret")),
+            Config.getLong("auth.token.ttlSeconds", 3600));
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+    /**
+     * Mac instances are not thread-safe and costly to create, so each thread keeps its own.
+     */
+    private final ThreadLocal<Mac> macs;
+
+    public SessionTokens(byte[] secret, long ttlSeconds) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.ttlSeconds = ttlSeconds;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITHM + " is not available", e);
+            }
+        });
+    }
+
+    public static SessionTokens get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return a token for the account, expiring auth.token.ttlSeconds from now.
+     */
+    public String issue(int accountId) {
+        String payload = VERSION + "." + accountId + "." + (System.currentTimeMillis() / 1000 + ttlSeconds);
+        return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(payload));
+    }
+
+    /**
+     * @return the account_id the token was issued for, or null if it is malformed, forged or expired.
+     */
+    public Integer verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int signatureStart = token.lastIndexOf('.');
+        if (signatureStart < 0 || !token.startsWith(VERSION + ".")) {
+            return null;
+        }
+        String payload = token.substring(0, signatureStart);
+        byte[] signature;
+        try {
+            signature = Base64.getUrlDecoder().decode(token.substring(signatureStart + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // Checked before the payload is parsed, so nothing in a forged token is ever trusted
+        if (!MessageDigest.isEqual(signature, sign(payload))) {
+            return null;
+        }
+        String[] fields = payload.split("\\.");
+        if (fields.length != 3) {
+            return null;
+        }
+        try {
+            if (Long.parseLong(fields[2]) <= System.currentTimeMillis() / 1000) {
+                return null;
+            }
+            return Integer.valueOf(fields[1]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(String payload) {
+        return macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] secret(String configured) {
+        if (configured != null && !configured.isEmpty()) {
+            return configured.getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+}
@@ -0,0 +1,495 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Times every statement executed through the connections it wraps and records the ones slower than a threshold.
+ *
+ * {@link #wrap(Connection)} returns a connection whose statements remember their SQL and bind parameters and time
+ * each execute call (for a query that is the time to run it and open the result set, not to read the rows). A slow
+ * statement is logged, counted against its SQL text, and kept in a fixed-size ring buffer of the most recent slow
+ * statements, which {@link #snapshot(int)} reports. Bind parameters for columns whose name contains one of the redacted
+ * names (password, by default) are replaced with "<redacted>" before they are logged or stored.
+ *
+ * Statements slower than the explain threshold also have their plan captured on the same connection, right after
+ * they ran: EXPLAIN ANALYZE for a plain SELECT, which runs the query again, and EXPLAIN for anything else, which
+ * does not. Capturing a plan delays the caller, so the explain threshold is off by default and should stay well above
+ * the logging threshold.
+ */
+public class SlowQueryLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private static final String REDACTED = "<redacted>";
+    private static final int MAX_LOGGED_VALUE_LENGTH = 100;
+    /**
+     * The most distinct SQL texts counted; DAO statements are a fixed set, so this is only a guard against SQL built
+     * from values.
+     */
+    private static final int MAX_STATEMENTS = 1000;
+    private static final Pattern PLAIN_SELECT = Pattern.compile(
+            "(?is)\\s*SELECT\\b(?!.*\\b(OLD|NEW|FINAL)\\s+TABLE\\s*\\().*");
+
+    private final long thresholdNanos;
+    private final long explainThresholdNanos;
+    private final Set<String> redactedColumns;
+    private final AtomicReferenceArray<Entry> recent;
+    private final AtomicLong slowCount = new AtomicLong();
+    private final Map<String, StatementStats> byStatement = new ConcurrentHashMap<>();
+    private final Map<String, String[]> parameterColumns = new ConcurrentHashMap<>();
+    private final LongAdder slowQueriesMetric = Metrics.counter("db_slow_queries_total",
+            "Statements that took longer than the slow-query threshold.", "");
+
+    /**
+     * @param thresholdMillis statements taking at least this long are recorded; negative to record none.
+     * @param explainThresholdMillis statements taking at least this long also have their plan captured; negative
+     * to capture none.
+     * @param capacity how many of the most recent slow statements are kept.
+     * @param redactedColumns lower-case column name fragments whose bind parameters are never recorded.
+     */
+    public SlowQueryLog(long thresholdMillis, long explainThresholdMillis, int capacity, Set<String> redactedColumns) {
+        this.thresholdNanos = thresholdMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.explainThresholdNanos = explainThresholdMillis < 0 ? -1
+                : TimeUnit.MILLISECONDS.toNanos(Math.max(explainThresholdMillis, thresholdMillis));
+        this.recent = new AtomicReferenceArray<>(Math.max(1, capacity));
+        this.redactedColumns = redactedColumns;
+    }
+
+    /**
+     * @return the connection with its statements timed, or the connection itself if nothing is recorded.
+     */
+    public Connection wrap(Connection connection) {
+        if (thresholdNanos < 0) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ConnectionHandle(connection));
+    }
+
+    /**
+     * @param limit the most recent slow statements to include.
+     * @return the thresholds, the number of slow statements seen, counts per SQL text (most frequent first) and the
+     * most recent slow statements (newest first).
+     */
+    public Map<String, Object> snapshot(int limit) {
+        List<Map<String, Object>> statements = new ArrayList<>();
+        byStatement.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> -e.getValue().count.sum()))
+                .forEach(e -> {
+                    Map<String, Object> statement = new LinkedHashMap<>();
+                    statement.put("sql", e.getKey());
+                    statement.put("count", e.getValue().count.sum());
+                    statement.put("total_ms", e.getValue().totalNanos.sum() / 1e6);
+                    statement.put("max_ms", e.getValue().maxNanos.get() / 1e6);
+                    statements.add(statement);
+                });
+
+        List<Map<String, Object>> entries = new ArrayList<>();
+        long newest = slowCount.get();
+        for (long sequence = newest - 1; sequence >= 0 && sequence >= newest - recent.length()
+                && entries.size() < limit; sequence--) {
+            Entry entry = recent.get((int) (sequence % recent.length()));
+            if (entry != null && entry.sequence == sequence) {
+                entries.add(entry.toMap());
+            }
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("threshold_ms", thresholdNanos < 0 ? -1 : thresholdNanos / 1e6);
+        snapshot.put("explain_threshold_ms", explainThresholdNanos < 0 ? -1 : explainThresholdNanos / 1e6);
+        snapshot.put("slow_queries", newest);
+        snapshot.put("by_statement", statements);
+        snapshot.put("recent", entries);
+        return snapshot;
+    }
+
+    private void record(Connection connection, String sql, Object[] parameters, int batchSize, long elapsedNanos) {
+        slowQueriesMetric.increment();
+        StatementStats stats = byStatement.get(sql);
+        if (stats == null && byStatement.size() < MAX_STATEMENTS) {
+            stats = byStatement.computeIfAbsent(sql, s -> new StatementStats());
+        }
+        if (stats != null) {
+            stats.count.increment();
+            stats.totalNanos.add(elapsedNanos);
+            stats.maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+        }
+
+        List<String> loggedParameters = describeParameters(sql, parameters);
+        String plan = explainThresholdNanos >= 0 && elapsedNanos >= explainThresholdNanos
+                ? explain(connection, sql, parameters) : null;
+        long sequence = slowCount.getAndIncrement();
+        Entry entry = new Entry(sequence, System.currentTimeMillis(), elapsedNanos, sql, loggedParameters, batchSize,
+                Thread.currentThread().getName(), plan);
+        recent.set((int) (sequence % recent.length()), entry);
+
+        if (plan == null) {
+            LOGGER.warn("Slow query ({} ms): {} parameters={}{}", elapsedNanos / 1e6, sql, loggedParameters,
+                    batchSize > 0 ? " batch=" + batchSize : "");
+        } else {
+            LOGGER.warn("Slow query ({} ms): {} parameters={}{}\n{}", elapsedNanos / 1e6, sql, loggedParameters,
+                    batchSize > 0 ? " batch=" + batchSize : "", plan);
+        }
+    }
+
+    private List<String> describeParameters(String sql, Object[] parameters) {
+        List<String> described = new ArrayList<>();
+        if (parameters == null) {
+            return described;
+        }
+        String[] columns = parameterColumns.computeIfAbsent(sql, SlowQueryLog::parameterColumns);
+        for (int i = 0; i < parameters.length; i++) {
+            String column = i < columns.length ? columns[i] : null;
+            described.add(isRedacted(column) ? REDACTED : describe(parameters[i]));
+        }
+        return described;
+    }
+
+    private boolean isRedacted(String column) {
+        if (column == null) {
+            return false;
+        }
+        String name = column.toLowerCase(Locale.ROOT);
+        for (String redacted : redactedColumns) {
+            if (name.contains(redacted)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String describe(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        if (!(value instanceof CharSequence)) {
+            return String.valueOf(value);
+        }
+        String text = value.toString();
+        if (text.length() > MAX_LOGGED_VALUE_LENGTH) {
+            text = text.substring(0, MAX_LOGGED_VALUE_LENGTH) + "...";
+        }
+        return "'" + text.replace("'", "''") + "'";
+    }
+
+    /**
+     * Runs EXPLAIN ANALYZE (for a plain SELECT) or EXPLAIN (for anything else) with the same bind parameters.
+     * @return the plan, or why it could not be captured.
+     */
+    private static String explain(Connection connection, String sql, Object[] parameters) {
+        String explain = (PLAIN_SELECT.matcher(sql).matches() ? "EXPLAIN ANALYZE " : "EXPLAIN ") + sql;
+        try (PreparedStatement preparedStatement = connection.prepareStatement(explain)) {
+            if (parameters != null) {
+                for (int i = 0; i < parameters.length; i++) {
+                    preparedStatement.setObject(i + 1, parameters[i]);
+                }
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+            }
+            return plan.toString().trim();
+        } catch (SQLException e) {
+            LOGGER.debug("Could not capture the plan of {}", sql, e);
+            return "Plan unavailable: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Works out which column each "?" of a statement is bound to, from "column = ?" style comparisons (any of
+     * =, <>, !=, <, <=, >, >= or LIKE) and from the column list of an INSERT ... VALUES. Placeholders in any other
+     * position are left unnamed.
+     * @return one entry per placeholder, in order: the column name, or null if it is not known.
+     */
+    static String[] parameterColumns(String sql) {
+        List<String> tokens = tokenize(sql);
+        List<String> columns = new ArrayList<>();
+        List<String> insertColumns = null;
+        int valuesDepth = -1;
+        int valuesIndex = 0;
+        int depth = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (token.equals("(")) {
+                depth++;
+                // INSERT INTO table (a, b, ...): remember the column list
+                if (insertColumns == null && i >= 3 && tokens.get(i - 3).equalsIgnoreCase("INSERT")
+                        && tokens.get(i - 2).equalsIgnoreCase("INTO")) {
+                    insertColumns = new ArrayList<>();
+                    for (int j = i + 1; j < tokens.size() && !tokens.get(j).equals(")"); j++) {
+                        if (!tokens.get(j).equals(",")) {
+                            insertColumns.add(tokens.get(j));
+                        }
+                    }
+                }
+                if (insertColumns != null && valuesDepth < 0 && i >= 1
+                        && tokens.get(i - 1).equalsIgnoreCase("VALUES")) {
+                    valuesDepth = depth;
+                    valuesIndex = 0;
+                }
+            } else if (token.equals(")")) {
+                if (depth == valuesDepth) {
+                    valuesDepth = -1;
+                }
+                depth--;
+            } else if (token.equals(",") && depth == valuesDepth) {
+                valuesIndex++;
+            } else if (token.equals("?")) {
+                if (depth == valuesDepth) {
+                    columns.add(valuesIndex < insertColumns.size() ? insertColumns.get(valuesIndex) : null);
+                } else if (i >= 2 && isComparison(tokens.get(i - 1)) && isIdentifier(tokens.get(i - 2))) {
+                    String column = tokens.get(i - 2);
+                    columns.add(column.substring(column.lastIndexOf('.') + 1));
+                } else {
+                    columns.add(null);
+                }
+            }
+        }
+        return columns.toArray(new String[0]);
+    }
+
+    /**
+     * Splits SQL into identifiers (with any table qualifier), "?", operators and single punctuation characters,
+     * dropping string literals, quoted identifiers and whitespace.
+     */
+    private static List<String> tokenize(String sql) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'' || c == '"') {
+                int end = sql.indexOf(c, i + 1);
+                if (c == '"' && end > i) {
+                    tokens.add(sql.substring(i + 1, end));
+                }
+                i = end < 0 ? sql.length() : end + 1;
+            } else if (Character.isLetterOrDigit(c) || c == '_') {
+                int start = i;
+                while (i < sql.length() && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_'
+                        || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                tokens.add(sql.substring(start, i));
+            } else if ((c == '<' || c == '>' || c == '!') && i + 1 < sql.length()
+                    && (sql.charAt(i + 1) == '=' || sql.charAt(i + 1) == '>')) {
+                tokens.add(sql.substring(i, i + 2));
+                i += 2;
+            } else {
+                tokens.add(String.valueOf(c));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isComparison(String token) {
+        switch (token.toUpperCase(Locale.ROOT)) {
+            case "=":
+            case "<>":
+            case "!=":
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+            case "LIKE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isIdentifier(String token) {
+        return Character.isLetter(token.charAt(0)) || token.charAt(0) == '_';
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Hands out timed statements; everything else goes straight to the wrapped connection.
+     */
+    private final class ConnectionHandle implements InvocationHandler {
+        private final Connection connection;
+
+        private ConnectionHandle(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                case "prepareCall":
+                case "createStatement":
+                    Object statement = SlowQueryLog.invoke(connection, method, args);
+                    String sql = method.getName().equals("createStatement") ? null : (String) args[0];
+                    return Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                            new Class<?>[] { method.getReturnType() },
+                            new StatementHandle(proxy, connection, (Statement) statement, sql));
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            return SlowQueryLog.invoke(connection, method, args);
+        }
+    }
+
+    /**
+     * Remembers the bind parameters set on a statement and times its execute calls.
+     */
+    private final class StatementHandle implements InvocationHandler {
+        /**
+         * The timed connection, which the statement reports as its own.
+         */
+        private final Object connection;
+        /**
+         * The wrapped connection, which plans are captured on without being timed themselves.
+         */
+        private final Connection physical;
+        private final Statement statement;
+        private final String sql;
+        private Object[] parameters;
+        private int parameterCount;
+        private int batchSize;
+
+        private StatementHandle(Object connection, Connection physical, Statement statement, String sql) {
+            this.connection = connection;
+            this.physical = physical;
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                String executedSql = args != null && args.length > 0 && args[0] instanceof String
+                        ? (String) args[0] : sql;
+                long start = System.nanoTime();
+                Object result = SlowQueryLog.invoke(statement, method, args);
+                long elapsed = System.nanoTime() - start;
+                if (elapsed >= thresholdNanos && executedSql != null) {
+                    record(physical, executedSql, parameters == null ? null : Arrays.copyOf(parameters, parameterCount),
+                            name.endsWith("Batch") ? batchSize : 0, elapsed);
+                }
+                if (name.endsWith("Batch")) {
+                    batchSize = 0;
+                }
+                return result;
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer
+                    && PreparedStatement.class.isAssignableFrom(method.getDeclaringClass())) {
+                remember((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters = null;
+                parameterCount = 0;
+            } else if (name.equals("addBatch")) {
+                batchSize++;
+            } else if (name.equals("clearBatch")) {
+                batchSize = 0;
+            } else if (name.equals("getConnection")) {
+                return connection;
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("unwrap") && ((Class<?>) args[0]).isInstance(proxy)) {
+                return proxy;
+            }
+            return SlowQueryLog.invoke(statement, method, args);
+        }
+
+        private void remember(int index, Object value) {
+            if (parameters == null) {
+                parameters = new Object[Math.max(index, 4)];
+            } else if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = value;
+            parameterCount = Math.max(parameterCount, index);
+        }
+    }
+
+    private static final class StatementStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+    }
+
+    private static final class Entry {
+        final long sequence;
+        final long timestamp;
+        final long elapsedNanos;
+        final String sql;
+        final List<String> parameters;
+        final int batchSize;
+        final String thread;
+        final String plan;
+
+        Entry(long sequence, long timestamp, long elapsedNanos, String sql, List<String> parameters, int batchSize,
+              String thread, String plan) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.elapsedNanos = elapsedNanos;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.batchSize = batchSize;
+            this.thread = thread;
+            this.plan = plan;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("timestamp", timestamp);
+            map.put("duration_ms", elapsedNanos / 1e6);
+            map.put("sql", sql);
+            map.put("parameters", parameters);
+            map.put("batch_size", batchSize);
+            map.put("thread", thread);
+            map.put("plan", plan);
+            return map;
+        }
+    }
+}
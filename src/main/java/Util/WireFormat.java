@@ -0,0 +1,116 @@
+package Util;
+
+import java.util.Locale;
+
+/**
+ * The encodings the API can read and write Account and Message bodies in. JSON is the default; the others are binary
+ * encodings of the same data model, chosen by clients through the Accept header (for responses) and the Content-Type
+ * header (for request bodies). See {@link JsonCodec} for the matching readers and writers.
+ */
+public enum WireFormat {
+    JSON("application/json"),
+    SMILE("application/x-jackson-smile"),
+    CBOR("application/cbor"),
+    MSGPACK("application/x-msgpack", "application/msgpack", "application/vnd.msgpack");
+
+    private final String contentType;
+    private final String[] aliases;
+
+    WireFormat(String contentType, String... aliases) {
+        this.contentType = contentType;
+        this.aliases = aliases;
+    }
+
+    /**
+     * @return the media type responses in this format are sent with.
+     */
+    public String contentType() {
+        return contentType;
+    }
+
+    /**
+     * @return true for the formats other than JSON.
+     */
+    public boolean isBinary() {
+        return this != JSON;
+    }
+
+    /**
+     * Picks the response format for an Accept header: the supported media type with the highest q value, the
+     * earliest one winning a tie. Wildcards, a missing header and a header naming nothing we support all give JSON,
+     * so existing clients see no change.
+     */
+    public static WireFormat fromAccept(String accept) {
+        if (accept == null || accept.isEmpty()) {
+            return JSON;
+        }
+        WireFormat best = JSON;
+        double bestQuality = 0;
+        int start = 0;
+        while (start < accept.length()) {
+            int end = accept.indexOf(',', start);
+            if (end < 0) {
+                end = accept.length();
+            }
+            String range = accept.substring(start, end);
+            start = end + 1;
+
+            int semicolon = range.indexOf(';');
+            WireFormat format = forMediaType(semicolon < 0 ? range : range.substring(0, semicolon));
+            if (format == null) {
+                continue;
+            }
+            double quality = semicolon < 0 ? 1 : quality(range.substring(semicolon + 1));
+            if (quality > bestQuality) {
+                best = format;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Picks the format of a request body from its Content-Type header. Bodies without one, or with a type we don't
+     * know, are read as JSON, as they always have been.
+     */
+    public static WireFormat fromContentType(String contentType) {
+        if (contentType == null) {
+            return JSON;
+        }
+        int semicolon = contentType.indexOf(';');
+        WireFormat format = forMediaType(semicolon < 0 ? contentType : contentType.substring(0, semicolon));
+        return format == null ? JSON : format;
+    }
+
+    private static WireFormat forMediaType(String mediaType) {
+        String type = mediaType.trim().toLowerCase(Locale.ROOT);
+        for (WireFormat format : values()) {
+            if (format.contentType.equals(type)) {
+                return format;
+            }
+            for (String alias : format.aliases) {
+                if (alias.equals(type)) {
+                    return format;
+                }
+            }
+        }
+        return type.equals("*/*") || type.equals("application/*") ? JSON : null;
+    }
+
+    /**
+     * @return the q parameter among a media range's parameters, 1 if there is none or it can't be parsed.
+     */
+    private static double quality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).trim().equalsIgnoreCase("q")) {
+                try {
+                    return Double.parseDouble(parameter.substring(equals + 1).trim());
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+            }
+        }
+        return 1;
+    }
+}
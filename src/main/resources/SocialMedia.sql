@@ -1,3 +1,5 @@
+drop table if exists schema_version;
+drop table if exists follow;
 drop table if exists message;
 drop table if exists account;
 create table account (
@@ -0,0 +1,4 @@
+-- Latest messages of one account: seek to posted_by and read in time order, newest first, without a sort.
+create index if not exists idx_message_posted_by_time on message (posted_by, time_posted_epoch desc, message_id desc);
+-- Keyset pagination over every message in (time_posted_epoch, message_id) order.
+create index if not exists idx_message_time on message (time_posted_epoch, message_id);
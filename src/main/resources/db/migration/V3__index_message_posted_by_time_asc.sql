@@ -0,0 +1,2 @@
+-- Oldest-first timelines of one account. H2 does not read an index backwards, so ascending order needs its own index.
+create index if not exists idx_message_posted_by_time_asc on message (posted_by, time_posted_epoch, message_id);
@@ -0,0 +1,10 @@
+-- Who follows whom. The primary key answers "whom does an account follow"; idx_follow_followee answers "who follows
+-- an account", which is what fan-out on message creation needs.
+create table if not exists follow (
+    follower_id int not null,
+    followee_id int not null,
+    primary key (follower_id, followee_id),
+    foreign key (follower_id) references account(account_id),
+    foreign key (followee_id) references account(account_id)
+);
+create index if not exists idx_follow_followee on follow (followee_id, follower_id);
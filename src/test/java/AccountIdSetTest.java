@@ -0,0 +1,42 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import Service.AccountIdSet;
+
+public class AccountIdSetTest {
+
+    /**
+     * Only ids that were added are reported as present, including ids that force the bitmap to grow.
+     */
+    @Test
+    public void containsOnlyAddedIds() {
+        AccountIdSet accountIds = new AccountIdSet();
+        accountIds.add(1);
+        accountIds.add(63);
+        accountIds.add(64);
+        accountIds.add(1_000_000);
+
+        Assert.assertTrue(accountIds.contains(1));
+        Assert.assertTrue(accountIds.contains(63));
+        Assert.assertTrue(accountIds.contains(64));
+        Assert.assertTrue(accountIds.contains(1_000_000));
+        Assert.assertFalse(accountIds.contains(0));
+        Assert.assertFalse(accountIds.contains(2));
+        Assert.assertFalse(accountIds.contains(999_999));
+        Assert.assertFalse(accountIds.contains(2_000_000));
+        Assert.assertFalse(accountIds.contains(-1));
+        Assert.assertEquals(4, accountIds.size());
+    }
+
+    /**
+     * Adding an id twice does not change the size.
+     */
+    @Test
+    public void addIsIdempotent() {
+        AccountIdSet accountIds = new AccountIdSet();
+        accountIds.add(5);
+        accountIds.add(5);
+
+        Assert.assertEquals(1, accountIds.size());
+    }
+}
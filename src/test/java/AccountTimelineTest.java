@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessagePage;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class AccountTimelineTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add four more messages by account 1 (two of them posted at the same
+     * time) and one by a second account, restart the Javalin app, and create a new webClient and ObjectMapper for
+     * interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException, SQLException {
+        ConnectionUtil.resetTestDatabase();
+        try (Connection conn = ConnectionUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "insert into message (posted_by, message_text, time_posted_epoch) values (?, ?, ?)")) {
+            try (Statement statement = conn.createStatement()) {
+                statement.execute("insert into account (username, password) values ('testuser2', 'password')");
+            }
+            long[] times = {1669947793, 1669947794, 1669947794, 1669947795};
+            for (int i = 0; i < times.length; i++) {
+                ps.setInt(1, 1);
+                ps.setString(2, "timeline message " + (i + 2));
+                ps.setLong(3, times[i]);
+                ps.executeUpdate();
+            }
+            ps.setInt(1, 2);
+            ps.setString(2, "someone else's message");
+            ps.setLong(3, 1669947794);
+            ps.executeUpdate();
+        }
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Following next_cursor from GET localhost:8080/accounts/1/messages?limit=2 visits every message of account 1
+     * exactly once, newest first, and no message of any other account.
+     */
+    @Test
+    public void timelineIsNewestFirstByDefault() throws IOException, InterruptedException {
+        Assert.assertEquals(List.of(5, 4, 3, 2, 1), followCursors("http://localhost:8080/accounts/1/messages?limit=2"));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages with order=asc and a time range
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages of account 1 posted from since up to but not including until, oldest first
+     */
+    @Test
+    public void timelineRangeInAscendingOrder() throws IOException, InterruptedException {
+        Assert.assertEquals(List.of(2, 3, 4), followCursors("http://localhost:8080/accounts/1/messages"
+                + "?order=asc&since=1669947793&until=1669947795&limit=2"));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages with until and no limit returns the default
+     * page size of the newest messages before until.
+     */
+    @Test
+    public void timelineUntilWithoutLimit() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("http://localhost:8080/accounts/1/messages?until=1669947794");
+
+        Assert.assertEquals(200, response.statusCode());
+        MessagePage page = objectMapper.readValue(response.body(), MessagePage.class);
+        Assert.assertEquals(List.of(new Message(2, 1, "timeline message 2", 1669947793),
+                new Message(1, 1, "test message 1", 1669947792)), page.getMessages());
+        Assert.assertNull(page.getNext_cursor());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages with an unknown order or an empty time
+     * range
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void invalidTimelineParametersAreRejected() throws IOException, InterruptedException {
+        Assert.assertEquals(400, get("http://localhost:8080/accounts/1/messages?order=sideways").statusCode());
+        Assert.assertEquals(400, get("http://localhost:8080/accounts/1/messages?since=5&until=5").statusCode());
+        Assert.assertEquals(400, get("http://localhost:8080/accounts/1/messages?since=yesterday").statusCode());
+    }
+
+    private List<Integer> followCursors(String firstPage) throws IOException, InterruptedException {
+        List<Integer> seenIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            HttpResponse<String> response = get(firstPage + (cursor == null ? "" : "&cursor=" + cursor));
+            Assert.assertEquals(200, response.statusCode());
+
+            MessagePage page = objectMapper.readValue(response.body(), MessagePage.class);
+            Assert.assertTrue(page.getMessages().size() <= 2);
+            for (Message message : page.getMessages()) {
+                seenIds.add(message.getMessage_id());
+            }
+            cursor = page.getNext_cursor();
+        } while (cursor != null);
+        return seenIds;
+    }
+
+    private HttpResponse<String> get(String uri) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create(uri)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
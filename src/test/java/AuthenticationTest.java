@@ -0,0 +1,154 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.SessionTokens;
+import io.javalin.Javalin;
+
+public class AuthenticationTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * A login returns a token, and a message posted with it is attributed to the token's account.
+     */
+    @Test
+    public void loginTokenAuthorizesPosting() throws IOException, InterruptedException {
+        String token = login("testuser1", "password");
+
+        HttpResponse<String> response = send(post("/messages", "{\"message_text\":\"with a token\","
+                + "\"time_posted_epoch\":1669947792}").header("Authorization", "Bearer " + token).build());
+        Assert.assertEquals(200, response.statusCode());
+        Message created = objectMapper.readValue(response.body(), Message.class);
+        Assert.assertEquals(1, created.getPosted_by());
+
+        HttpResponse<String> impersonating = send(post("/messages", "{\"posted_by\":2,\"message_text\":\"not mine\","
+                + "\"time_posted_epoch\":1669947792}").header("Authorization", "Bearer " + token).build());
+        Assert.assertEquals(403, impersonating.statusCode());
+    }
+
+    /**
+     * Tokens that are forged, tampered with or expired are refused with a 401.
+     */
+    @Test
+    public void invalidTokensAreRefused() throws IOException, InterruptedException {
+        String token = login("testuser1", "password");
+        String tampered = token.replaceFirst("^v1\\.1\\.", "v1.2.");
+        String expired = new SessionTokens("secret".getBytes(StandardCharsets.UTF_8), -1).issue(1);
+        for (String bad : new String[] { tampered, expired, "garbage" }) {
+            HttpResponse<String> response = send(post("/messages", "{\"posted_by\":1,\"message_text\":\"x\","
+                    + "\"time_posted_epoch\":1669947792}").header("Authorization", "Bearer " + bad).build());
+            Assert.assertEquals(bad, 401, response.statusCode());
+        }
+        Assert.assertNull(new SessionTokens("other".getBytes(StandardCharsets.UTF_8), 3600)
+                .verify(new SessionTokens("secret".getBytes(StandardCharsets.UTF_8), 3600).issue(1)));
+    }
+
+    /**
+     * A message cannot be deleted with another account's token.
+     */
+    @Test
+    public void tokenCannotDeleteAnotherAccountsMessage() throws IOException, InterruptedException {
+        send(post("/register", "{\"username\":\"other\",\"password\":\"password\"}").build());
+        String otherToken = login("other", "password");
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()
+                .header("Authorization", "Bearer " + otherToken)
+                .build());
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("", response.body());
+        HttpResponse<String> stillThere = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1")).build());
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792),
+                objectMapper.readValue(stillThere.body(), Message.class));
+    }
+
+    /**
+     * Registered passwords are stored hashed, and a password stored in plain text is replaced by a hash at the next
+     * successful login.
+     */
+    @Test
+    public void passwordsAreStoredHashed() throws IOException, InterruptedException, SQLException {
+        send(post("/register", "{\"username\":\"hashed\",\"password\":\"secret1234\"}").build());
+        Assert.assertTrue(storedPassword("hashed").startsWith("pbkdf2-sha256$"));
+        Assert.assertFalse(storedPassword("hashed").contains("secret1234"));
+        login("hashed", "secret1234");
+
+        Assert.assertEquals("password", storedPassword("testuser1"));
+        login("testuser1", "password");
+        Assert.assertTrue(storedPassword("testuser1").startsWith("pbkdf2-sha256$"));
+        login("testuser1", "password");
+    }
+
+    private String login(String username, String password) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(post("/login",
+                "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}").build());
+        Assert.assertEquals(200, response.statusCode());
+        return response.headers().firstValue(SocialMediaController.TOKEN_HEADER).orElseThrow();
+    }
+
+    private static String storedPassword(String username) throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(
+                     "SELECT password FROM account WHERE username = ?")) {
+            preparedStatement.setString(1, username);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                Assert.assertTrue(resultSet.next());
+                return resultSet.getString(1);
+            }
+        }
+    }
+
+    private static HttpRequest.Builder post(String path, String body) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json");
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.JsonCodec;
+import Util.WireFormat;
+import io.javalin.Javalin;
+
+public class BinaryEncodingTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    JsonCodec codec = JsonCodec.get();
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * The highest-q supported type wins; wildcards, unknown types and a missing header fall back to JSON.
+     */
+    @Test
+    public void acceptHeaderNegotiation() {
+        Assert.assertEquals(WireFormat.JSON, WireFormat.fromAccept(null));
+        Assert.assertEquals(WireFormat.JSON, WireFormat.fromAccept("*/*"));
+        Assert.assertEquals(WireFormat.JSON, WireFormat.fromAccept("text/html"));
+        Assert.assertEquals(WireFormat.CBOR, WireFormat.fromAccept("application/cbor"));
+        Assert.assertEquals(WireFormat.SMILE,
+                WireFormat.fromAccept("application/json;q=0.5, application/x-jackson-smile"));
+        Assert.assertEquals(WireFormat.MSGPACK,
+                WireFormat.fromAccept("application/msgpack, application/cbor;q=0.9, */*;q=0.1"));
+        Assert.assertEquals(WireFormat.JSON, WireFormat.fromAccept("application/cbor;q=0, */*"));
+        Assert.assertEquals(WireFormat.CBOR, WireFormat.fromContentType("application/cbor; charset=binary"));
+        Assert.assertEquals(WireFormat.JSON, WireFormat.fromContentType("text/plain"));
+    }
+
+    /**
+     * Every format round-trips messages and message lists, and every binary format is smaller than JSON.
+     */
+    @Test
+    public void everyFormatRoundTrips() throws IOException {
+        List<Message> messages = List.of(new Message(1, 1, "test message 1", 1669947792),
+                new Message(2, 1, "test message 2", 1669947793));
+        int jsonSize = codec.writeBytes(messages, WireFormat.JSON).length;
+        for (WireFormat format : WireFormat.values()) {
+            byte[] encoded = codec.writeBytes(messages.get(0), format);
+            Assert.assertEquals(format.name(), messages.get(0),
+                    codec.read(new ByteArrayInputStream(encoded), Message.class, format));
+            Message[] list = codec.readerFor(format, Message[].class)
+                    .readValue(codec.writeBytes(messages, format));
+            Assert.assertEquals(format.name(), messages, List.of(list));
+            if (format.isBinary()) {
+                Assert.assertTrue(format.name(), codec.writeBytes(messages, format).length < jsonSize);
+            }
+        }
+    }
+
+    /**
+     * A message posted as MessagePack is created, and comes back as CBOR or Smile when those are asked for, while a
+     * client that doesn't ask still gets JSON.
+     */
+    @Test
+    public void endpointsNegotiateBinaryFormats() throws IOException, InterruptedException {
+        Message posted = new Message(1, "posted as msgpack", 1669947792);
+        HttpResponse<byte[]> created = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(codec.writeBytes(posted, WireFormat.MSGPACK)))
+                .header("Content-Type", WireFormat.MSGPACK.contentType())
+                .header("Accept", WireFormat.CBOR.contentType())
+                .build());
+        Assert.assertEquals(200, created.statusCode());
+        Assert.assertEquals(WireFormat.CBOR.contentType(), created.headers().firstValue("Content-Type").orElseThrow());
+        Message createdMessage = codec.read(new ByteArrayInputStream(created.body()), Message.class, WireFormat.CBOR);
+        Assert.assertEquals(new Message(2, 1, "posted as msgpack", 1669947792), createdMessage);
+
+        HttpResponse<byte[]> all = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages"))
+                .header("Accept", WireFormat.SMILE.contentType())
+                .build());
+        Assert.assertEquals(200, all.statusCode());
+        Message[] messages = codec.readerFor(WireFormat.SMILE, Message[].class).readValue(all.body());
+        Assert.assertEquals(2, messages.length);
+        Assert.assertEquals(createdMessage, messages[1]);
+
+        HttpResponse<byte[]> json = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .build());
+        Assert.assertEquals(createdMessage, objectMapper.readValue(json.body(), Message.class));
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
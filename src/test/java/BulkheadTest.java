@@ -0,0 +1,77 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.Bulkhead;
+import Util.BulkheadFullException;
+
+public class BulkheadTest {
+    ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * While the only permit is held, another caller is turned away once the maximum wait has passed, and is admitted
+     * again after the permit is given back.
+     */
+    @Test
+    public void callerBeyondLimitIsRejectedAfterMaxWait() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 50);
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch leave = new CountDownLatch(1);
+        Future<String> holder = executor.submit(() -> bulkhead.call(() -> {
+            inside.countDown();
+            awaitQuietly(leave);
+            return "held";
+        }));
+        Assert.assertTrue(inside.await(5, TimeUnit.SECONDS));
+
+        try {
+            bulkhead.call(() -> "should not run");
+            Assert.fail("Expected the bulkhead to be full");
+        } catch (BulkheadFullException expected) {
+        }
+
+        leave.countDown();
+        Assert.assertEquals("held", holder.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals("admitted", bulkhead.call(() -> "admitted"));
+        Assert.assertEquals(1L, bulkhead.stats().get("rejected"));
+        Assert.assertEquals(0, bulkhead.stats().get("in_use"));
+    }
+
+    /**
+     * A bulkhead with no limit admits every caller.
+     */
+    @Test
+    public void disabledBulkheadAdmitsEveryone() {
+        Bulkhead bulkhead = new Bulkhead("test", 0, 0);
+        bulkhead.acquire();
+        bulkhead.acquire();
+        Assert.assertEquals("admitted", bulkhead.call(() -> "admitted"));
+        bulkhead.release();
+        bulkhead.release();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+
+public class ConcurrentDeleteMessageTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 25;
+
+    MessageDAO messageDAO;
+    ExecutorService executor;
+
+    /**
+     * Before every test, reset the database and start a pool of threads to race with.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageDAO = new MessageDAO();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * When several threads delete the same message at the same moment, exactly one of them gets the deleted message
+     * back and the rest get null.
+     */
+    @Test
+    public void exactlyOneConcurrentDeleteSucceeds() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            int messageId = insertMessage("contested message " + round);
+            CyclicBarrier start = new CyclicBarrier(THREADS);
+
+            List<Future<Message>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return messageDAO.deleteMessageById(messageId);
+                }));
+            }
+
+            int winners = 0;
+            for (Future<Message> result : results) {
+                Message deleted = result.get();
+                if (deleted != null) {
+                    winners++;
+                    Assert.assertEquals(new Message(messageId, 1, "contested message " + round, 1669947792),
+                            deleted);
+                }
+            }
+            Assert.assertEquals("round " + round, 1, winners);
+            Assert.assertNull(messageDAO.getMessageById(messageId));
+        }
+    }
+
+    private int insertMessage(String text) throws SQLException {
+        try (Connection conn = ConnectionUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "insert into message (posted_by, message_text, time_posted_epoch) values (1, ?, 1669947792)",
+                     Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, text);
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                keys.next();
+                return keys.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageDAO;
+import Model.Message;
+import Service.MessageService;
+import Util.ConnectionUtil;
+
+public class ConcurrentUpdateMessageTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 200;
+
+    MessageService messageService;
+    MessageDAO messageDAO;
+    ExecutorService executor;
+
+    /**
+     * Before every test, reset the database and start a pool of threads to race with.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageService = new MessageService();
+        messageDAO = new MessageDAO();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * When updates race with a delete of the same cached message, the message stays deleted: no update puts it back
+     * in the cache.
+     */
+    @Test
+    public void updateRacingDeleteNeverResurrectsMessage() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            int messageId = messageService.createMessage(new Message(1, "contested " + round, 1669947792))
+                    .getMessage_id();
+            // Cache it first, so that a stale entry would be served
+            Assert.assertNotNull(messageService.getMessageById(messageId));
+            CyclicBarrier start = new CyclicBarrier(THREADS);
+
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return thread == 0
+                            ? messageService.deleteMessageById(messageId)
+                            : messageService.updateMessageById(messageId, "update " + thread);
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            Assert.assertNull("round " + round, messageService.getMessageById(messageId));
+        }
+    }
+
+    /**
+     * When several updates of the same cached message race, the cache ends up with the text the database kept.
+     */
+    @Test
+    public void racingUpdatesLeaveCacheMatchingDatabase() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            int messageId = messageService.createMessage(new Message(1, "contested " + round, 1669947792))
+                    .getMessage_id();
+            Assert.assertNotNull(messageService.getMessageById(messageId));
+            CyclicBarrier start = new CyclicBarrier(THREADS);
+
+            List<Future<Message>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                String text = "update " + i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return messageService.updateMessageById(messageId, text);
+                }));
+            }
+            for (Future<Message> result : results) {
+                Assert.assertNotNull(result.get());
+            }
+            Assert.assertEquals("round " + round, messageDAO.getMessageById(messageId),
+                    messageService.getMessageById(messageId));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Service.MessageVersions;
+import Util.ConnectionUtil;
+import Util.Metrics;
+import io.javalin.Javalin;
+
+public class ConditionalGetTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Versions only grow; a change moves the global version and those of its message and account, but not those of
+     * other messages and accounts.
+     */
+    @Test
+    public void versionsFollowChanges() {
+        MessageVersions versions = new MessageVersions(16);
+        versions.changed(new Message(1, 1, "a", 1669947792));
+        Assert.assertEquals(1, versions.global());
+        Assert.assertEquals(1, versions.ofMessage(1));
+        Assert.assertEquals(1, versions.ofAccount(1));
+        Assert.assertEquals(0, versions.ofMessage(2));
+
+        versions.changed(new Message(2, 3, "b", 1669947792));
+        Assert.assertEquals(2, versions.global());
+        Assert.assertEquals(1, versions.ofMessage(1));
+        Assert.assertEquals(2, versions.ofMessage(2));
+        Assert.assertEquals(1, versions.ofAccount(1));
+        Assert.assertEquals(2, versions.ofAccount(3));
+        // 18 shares a stripe with 2
+        Assert.assertEquals(2, versions.ofMessage(18));
+    }
+
+    /**
+     * A poll with the current ETag gets a 304 without a database call; after a new message it gets the new list
+     * and a new ETag.
+     */
+    @Test
+    public void unchangedListIsNotModified() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/messages", null);
+        Assert.assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+
+        String labels = Metrics.labels("dao", "MessageDAO", "method", "getAllMessages");
+        String before = Metrics.scrape();
+        HttpResponse<String> unchanged = get("/messages", etag);
+        Assert.assertEquals(304, unchanged.statusCode());
+        Assert.assertEquals("", unchanged.body());
+        Assert.assertEquals(etag, unchanged.headers().firstValue("ETag").orElseThrow());
+        Assert.assertEquals(value(before, "dao_call_seconds_count" + labels),
+                value(Metrics.scrape(), "dao_call_seconds_count" + labels), 0);
+
+        post("{\"posted_by\":1,\"message_text\":\"something new\",\"time_posted_epoch\":1669947792}");
+        HttpResponse<String> changed = get("/messages", etag);
+        Assert.assertEquals(200, changed.statusCode());
+        Assert.assertTrue(changed.body().contains("something new"));
+        Assert.assertNotEquals(etag, changed.headers().firstValue("ETag").orElseThrow());
+    }
+
+    /**
+     * Writes move the ETags of the message and account they touch; other messages keep theirs, and each encoding
+     * has its own.
+     */
+    @Test
+    public void messageAndAccountTagsMoveIndependently() throws IOException, InterruptedException {
+        String messageTag = get("/messages/1", null).headers().firstValue("ETag").orElseThrow();
+        String accountTag = get("/accounts/1/messages", null).headers().firstValue("ETag").orElseThrow();
+
+        post("{\"posted_by\":1,\"message_text\":\"second\",\"time_posted_epoch\":1669947792}");
+        Assert.assertEquals(304, get("/messages/1", messageTag).statusCode());
+        Assert.assertEquals(200, get("/accounts/1/messages", accountTag).statusCode());
+
+        HttpResponse<String> patched = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"edited\"}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, patched.statusCode());
+        HttpResponse<String> edited = get("/messages/1", "W/" + messageTag);
+        Assert.assertEquals(200, edited.statusCode());
+        Assert.assertTrue(edited.body().contains("edited"));
+
+        String jsonTag = edited.headers().firstValue("ETag").orElseThrow();
+        HttpResponse<String> cbor = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .header("Accept", "application/cbor")
+                .header("If-None-Match", jsonTag)
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, cbor.statusCode());
+        Assert.assertNotEquals(jsonTag, cbor.headers().firstValue("ETag").orElseThrow());
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void post(String body) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+    }
+
+    private static double value(String scrape, String sample) {
+        for (String line : scrape.split("\n")) {
+            if (line.startsWith(sample + " ")) {
+                return Double.parseDouble(line.substring(sample.length() + 1));
+            }
+        }
+        return 0;
+    }
+}
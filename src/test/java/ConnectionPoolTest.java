@@ -0,0 +1,140 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionPool;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConnectionPoolTest {
+    ConnectionPool pool;
+
+    /**
+     * Before every test, create a small pool over a private in-memory database.
+     */
+    @Before
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+        pool = new ConnectionPool(dataSource, 1, 2, 200, 60000, 60000, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * A connection that is closed goes back to the pool and is handed out again instead of opening a new one.
+     */
+    @Test
+    public void closedConnectionIsReused() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            Assert.assertTrue(connection.isValid(0));
+            Assert.assertEquals(1, pool.getActiveConnections());
+        }
+        Assert.assertEquals(0, pool.getActiveConnections());
+        Assert.assertEquals(1, pool.getIdleConnections());
+
+        try (Connection connection = pool.getConnection()) {
+            Assert.assertTrue(connection.isValid(0));
+            Assert.assertEquals(1, pool.getTotalConnections());
+        }
+    }
+
+    /**
+     * Borrowing past the maximum size times out instead of opening more connections.
+     */
+    @Test
+    public void exhaustedPoolTimesOut() throws SQLException {
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        try {
+            pool.getConnection();
+            Assert.fail("Expected the third borrow to time out");
+        } catch (SQLTimeoutException expected) {
+            Assert.assertEquals(2, pool.getTotalConnections());
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    /**
+     * A handle that has been returned to the pool can no longer be used, and closing it twice is harmless.
+     */
+    @Test
+    public void closedHandleIsUnusable() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.close();
+
+        Assert.assertTrue(connection.isClosed());
+        Assert.assertEquals(0, pool.getActiveConnections());
+        try {
+            connection.prepareStatement("select 1");
+            Assert.fail("Expected a closed handle to reject statements");
+        } catch (SQLException expected) {
+        }
+    }
+
+    /**
+     * A connection returned mid-transaction is rolled back and restored to auto-commit before reuse.
+     */
+    @Test
+    public void returnedConnectionIsReset() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+        }
+        try (Connection connection = pool.getConnection()) {
+            Assert.assertTrue(connection.getAutoCommit());
+        }
+    }
+
+    /**
+     * When every connection of the shared pool stays borrowed past the acquire timeout, requests get a 503 rather
+     * than an empty listing or a failed login.
+     */
+    @Test
+    public void exhaustedSharedPoolAnswers503() throws Exception {
+        ConnectionUtil.resetTestDatabase();
+        Javalin app = new SocialMediaController().startAPI();
+        app.start(8080);
+        List<Connection> held = new ArrayList<>();
+        try {
+            for (int i = 0; i < ConnectionUtil.getPool().getMaxSize(); i++) {
+                held.add(ConnectionUtil.getConnection());
+            }
+            HttpClient webClient = HttpClient.newHttpClient();
+            HttpResponse<String> messages = webClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages")).build(), HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(503, messages.statusCode());
+            HttpResponse<String> login = webClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/login"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"testuser1\",\"password\":\"password\"}"))
+                    .header("Content-Type", "application/json")
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(503, login.statusCode());
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+            app.stop();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessageBatchResult;
+import Service.MessageService;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class CreateMessageBatchTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with two valid messages around an invalid one
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one result per message, in order; the valid ones created with consecutive ids, the invalid
+     *  one reported with an error
+     */
+    @Test
+    public void createBatchReportsPerItemResults() throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString("[" +
+                        "{\"posted_by\":1, \"message_text\": \"first\", \"time_posted_epoch\": 1669947792}," +
+                        "{\"posted_by\":1, \"message_text\": \" \", \"time_posted_epoch\": 1669947792}," +
+                        "{\"posted_by\":1, \"message_text\": \"third\", \"time_posted_epoch\": 1669947793}]"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        List<MessageBatchResult> results = objectMapper.readValue(response.body(),
+                new TypeReference<List<MessageBatchResult>>(){});
+        Assert.assertEquals(3, results.size());
+
+        Assert.assertEquals(new Message(2, 1, "first", 1669947792), results.get(0).getMessage());
+        Assert.assertNull(results.get(0).getError());
+        Assert.assertEquals(1, results.get(1).getIndex());
+        Assert.assertNull(results.get(1).getMessage());
+        Assert.assertNotNull(results.get(1).getError());
+        Assert.assertEquals(new Message(3, 1, "third", 1669947793), results.get(2).getMessage());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch where a message is posted by a user that does
+     * not exist
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: that message reported with an error and nothing inserted for it
+     */
+    @Test
+    public void createBatchRejectsUnknownUser() throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString("[" +
+                        "{\"posted_by\":5050, \"message_text\": \"nobody\", \"time_posted_epoch\": 1669947792}]"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        List<MessageBatchResult> results = objectMapper.readValue(response.body(),
+                new TypeReference<List<MessageBatchResult>>(){});
+        Assert.assertNull(results.get(0).getMessage());
+        Assert.assertNotNull(results.get(0).getError());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with a body that is not an array
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void createBatchRejectsMalformedBody() throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with more than MAX_BATCH_SIZE messages
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void createBatchRejectsOversizedBatch() throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i <= MessageService.MAX_BATCH_SIZE; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"posted_by\":1,\"message_text\":\"batched\",")
+                    .append("\"time_posted_epoch\":1669947792}");
+        }
+        body.append("]");
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+    }
+}
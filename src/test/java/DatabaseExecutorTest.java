@@ -0,0 +1,97 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.DatabaseExecutor;
+
+public class DatabaseExecutorTest {
+    DatabaseExecutor executor;
+    CountDownLatch release;
+
+    /**
+     * Before every test, create an executor with one thread and room for one queued task.
+     */
+    @Before
+    public void setUp() {
+        executor = new DatabaseExecutor(1, 1);
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+    }
+
+    /**
+     * Work completes its future with the value it returns.
+     */
+    @Test
+    public void supplyCompletesWithResult() throws Exception {
+        Assert.assertEquals("done", executor.supply(() -> "done").get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Work still queued when its future times out never runs.
+     */
+    @Test
+    public void timedOutQueuedWorkNeverRuns() throws Exception {
+        CompletableFuture<String> blocker = executor.supply(this::block);
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<String> queued = executor.supply(() -> {
+            ran.set(true);
+            return "ran";
+        });
+
+        try {
+            queued.orTimeout(50, TimeUnit.MILLISECONDS).get();
+            Assert.fail("Expected the queued work to time out");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        release.countDown();
+        Assert.assertEquals("blocked", blocker.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals("after", executor.supply(() -> "after").get(5, TimeUnit.SECONDS));
+        Assert.assertFalse(ran.get());
+        Assert.assertEquals(1L, executor.stats().get("cancelled"));
+    }
+
+    /**
+     * Work submitted when the thread is busy and the queue is full fails at once.
+     */
+    @Test
+    public void workBeyondQueueIsRejected() throws Exception {
+        executor.supply(this::block);
+        // Wait until the thread has taken the first task, so the second one occupies the queue
+        while ((int) executor.stats().get("active") == 0) {
+            Thread.sleep(5);
+        }
+        executor.supply(() -> "queued");
+
+        CompletableFuture<String> rejected = executor.supply(() -> "rejected");
+        Assert.assertTrue(rejected.isCompletedExceptionally());
+        try {
+            rejected.get();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    private String block() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "blocked";
+    }
+}
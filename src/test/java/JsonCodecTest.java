@@ -0,0 +1,62 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Model.Account;
+import Model.Message;
+import Util.JsonCodec;
+
+public class JsonCodecTest {
+    JsonCodec codec = JsonCodec.get();
+
+    /**
+     * Readers and writers are built once per type and then reused.
+     */
+    @Test
+    public void readersAndWritersAreCached() {
+        Assert.assertSame(codec.readerFor(Message.class), codec.readerFor(Message.class));
+        Assert.assertSame(codec.writerFor(Account.class), codec.writerFor(Account.class));
+    }
+
+    /**
+     * A message survives a round trip through the stream-based read path and the Javalin JsonMapper write path.
+     */
+    @Test
+    public void messageRoundTrip() throws IOException {
+        Message message = new Message(7, 1, "round trip", 1669947792);
+        String json = codec.toJsonString(message, Message.class);
+
+        Message parsed = codec.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), Message.class);
+        Assert.assertEquals(message, parsed);
+    }
+
+    /**
+     * Collections are written with the same field names as the individual models.
+     */
+    @Test
+    public void listIsWrittenAsArray() {
+        String json = codec.toJsonString(List.of(new Account(1, "testuser1", "password")), List.class);
+        Assert.assertEquals("[{\"account_id\":1,\"username\":\"testuser1\",\"password\":\"password\"}]", json);
+    }
+
+    /**
+     * A bounded list read stops at the first element beyond the bound, before reading the rest of the stream.
+     */
+    @Test
+    public void boundedListStopsAtLimit() throws IOException {
+        byte[] within = "[{\"posted_by\":1},{\"posted_by\":2}]".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(2, codec.readList(new ByteArrayInputStream(within), Message.class, 2).size());
+
+        // Anything after the third element is never parsed
+        byte[] beyond = "[{},{},{}, not json".getBytes(StandardCharsets.UTF_8);
+        try {
+            codec.readList(new ByteArrayInputStream(beyond), Message.class, 2);
+            Assert.fail("Expected the third element to be refused");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Model.Message;
+import Service.MessageCache;
+
+public class MessageCacheTest {
+
+    /**
+     * The second read of a message is served from the cache without calling the loader.
+     */
+    @Test
+    public void secondReadIsAHit() {
+        MessageCache cache = new MessageCache(10, 0);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.getOrLoad(1, id -> { loads.incrementAndGet(); return message(id, "first"); });
+        Message cached = cache.getOrLoad(1, id -> { loads.incrementAndGet(); return message(id, "second"); });
+
+        Assert.assertEquals("first", cached.getMessage_text());
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * Once full, the least recently used message is evicted.
+     */
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        MessageCache cache = new MessageCache(2, 0);
+        cache.getOrLoad(1, id -> message(id, "one"));
+        cache.getOrLoad(2, id -> message(id, "two"));
+        cache.getOrLoad(1, id -> message(id, "one"));
+        cache.getOrLoad(3, id -> message(id, "three"));
+
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertEquals("one", cache.getOrLoad(1, id -> message(id, "reloaded")).getMessage_text());
+        Assert.assertEquals("reloaded", cache.getOrLoad(2, id -> message(id, "reloaded")).getMessage_text());
+    }
+
+    /**
+     * Updates replace the cached text and deletes remove the entry, so readers never see stale messages.
+     */
+    @Test
+    public void writesKeepCacheCurrent() {
+        MessageCache cache = new MessageCache(10, 0);
+        cache.getOrLoad(1, id -> message(id, "original"));
+
+        cache.put(message(1, "updated"));
+        Assert.assertEquals("updated", cache.getOrLoad(1, id -> message(id, "from db")).getMessage_text());
+
+        cache.invalidate(1);
+        Assert.assertNull(cache.getOrLoad(1, id -> null));
+    }
+
+    /**
+     * A value loaded before a concurrent update finished is not stored over the update.
+     */
+    @Test
+    public void slowLoadDoesNotOverwriteNewerWrite() {
+        MessageCache cache = new MessageCache(10, 0);
+
+        cache.getOrLoad(1, id -> {
+            // An update lands while this (now stale) read is still in flight
+            cache.put(message(id, "updated"));
+            return message(id, "stale");
+        });
+
+        Assert.assertEquals("updated", cache.getOrLoad(1, id -> message(id, "from db")).getMessage_text());
+    }
+
+    /**
+     * Callers get copies, so modifying a returned message does not change the cached one.
+     */
+    @Test
+    public void returnedMessagesAreCopies() {
+        MessageCache cache = new MessageCache(10, 0);
+        cache.getOrLoad(1, id -> message(id, "original"));
+
+        cache.getOrLoad(1, id -> null).setMessage_text("changed by caller");
+
+        Assert.assertEquals("original", cache.getOrLoad(1, id -> null).getMessage_text());
+    }
+
+    /**
+     * Entries older than the time-to-live are reloaded.
+     */
+    @Test
+    public void expiredEntriesAreReloaded() throws InterruptedException {
+        MessageCache cache = new MessageCache(10, 20);
+        cache.getOrLoad(1, id -> message(id, "original"));
+        Thread.sleep(50);
+
+        Assert.assertEquals("reloaded", cache.getOrLoad(1, id -> message(id, "reloaded")).getMessage_text());
+        Assert.assertEquals(1, cache.getExpirations());
+    }
+
+    private static Message message(int id, String text) {
+        return new Message(id, 1, text, 1669947792);
+    }
+}
@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Service.MessageFeed;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MessageFeedTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * A subscriber to GET /messages/feed receives an event for a message posted over HTTP, and for its deletion.
+     */
+    @Test
+    public void feedStreamsChanges() throws Exception {
+        HttpResponse<Stream<String>> feed = subscribe("/messages/feed");
+        Assert.assertEquals(200, feed.statusCode());
+        Assert.assertEquals(MessageFeed.CONTENT_TYPE, feed.headers().firstValue("Content-Type").orElse(""));
+        Iterator<String> lines = feed.body().iterator();
+        Assert.assertEquals(": connected", lines.next());
+        Assert.assertEquals("", lines.next());
+
+        Message created = post("{\"posted_by\":1,\"message_text\":\"live\",\"time_posted_epoch\":1669947792}");
+        Assert.assertTrue(lines.next().startsWith("id: "));
+        Assert.assertEquals("event: created", lines.next());
+        Assert.assertEquals(created, readData(lines.next()));
+        Assert.assertEquals("", lines.next());
+
+        delete("/messages/" + created.getMessage_id());
+        Assert.assertTrue(lines.next().startsWith("id: "));
+        Assert.assertEquals("event: deleted", lines.next());
+        Assert.assertEquals(created, readData(lines.next()));
+        feed.body().close();
+    }
+
+    /**
+     * With posted_by, only that account's messages are sent; a malformed posted_by is a 400.
+     */
+    @Test
+    public void feedFiltersByPostedBy() throws Exception {
+        HttpResponse<Stream<String>> feed = subscribe("/messages/feed?posted_by=1");
+        Iterator<String> lines = feed.body().iterator();
+        Assert.assertEquals(": connected", lines.next());
+        Assert.assertEquals("", lines.next());
+
+        HttpResponse<String> registered = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"feeduser\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        int other = objectMapper.readTree(registered.body()).get("account_id").asInt();
+        Assert.assertNotNull(post("{\"posted_by\":" + other
+                + ",\"message_text\":\"theirs\",\"time_posted_epoch\":1669947792}"));
+        Message mine = post("{\"posted_by\":1,\"message_text\":\"mine\",\"time_posted_epoch\":1669947792}");
+        lines.next();
+        Assert.assertEquals("event: created", lines.next());
+        Assert.assertEquals(mine, readData(lines.next()));
+        feed.body().close();
+
+        Assert.assertEquals(400, subscribe("/messages/feed?posted_by=one").statusCode());
+    }
+
+    /**
+     * A subscriber that never takes its frames is dropped once its buffer is full, without holding up the feed.
+     */
+    @Test
+    public void slowSubscriberIsDropped() throws Exception {
+        MessageFeed feed = new MessageFeed();
+        MessageFeed.Subscription slow = feed.subscribe(null, () -> { });
+        int bufferSize = (Integer) feed.stats().get("buffer_size");
+        Message message = new Message(1, 1, "flood", 1669947792);
+        for (int i = 0; i < bufferSize; i++) {
+            feed.publish(MessageFeed.EventType.CREATED, message, i);
+        }
+        slow.closed().get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(0, feed.subscriberCount());
+        Assert.assertEquals(1L, feed.stats().get("dropped_subscribers"));
+    }
+
+    private HttpResponse<Stream<String>> subscribe(String path) throws Exception {
+        CompletableFuture<HttpResponse<Stream<String>>> response = webClient.sendAsync(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .header("Accept", MessageFeed.CONTENT_TYPE)
+                .build(), HttpResponse.BodyHandlers.ofLines());
+        return response.get(10, TimeUnit.SECONDS);
+    }
+
+    private Message post(String body) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        return response.statusCode() == 200 && !response.body().isEmpty()
+                ? objectMapper.readValue(response.body(), Message.class) : null;
+    }
+
+    private void delete(String path) throws IOException, InterruptedException {
+        webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).DELETE().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Message readData(String line) throws IOException {
+        Assert.assertTrue(line, line.startsWith("data: "));
+        return objectMapper.readValue(line.substring("data: ".length()), Message.class);
+    }
+}
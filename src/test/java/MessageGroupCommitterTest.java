@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Model.Message;
+import Service.AccountIdSet;
+import Service.MessageGroupCommitter;
+import Service.MessageService;
+import Util.Bulkhead;
+import Util.ConnectionUtil;
+
+public class MessageGroupCommitterTest {
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    /**
+     * Inserts queued together are written in a few batches, and each caller gets back its own message with its own
+     * message_id.
+     */
+    @Test
+    public void concurrentInsertsAreCommittedInGroups() throws Exception {
+        MessageGroupCommitter committer = new MessageGroupCommitter(new MessageDAO(), new Bulkhead("test", 0, 0),
+                50, 20_000, 1000);
+        List<CompletableFuture<Message>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            results.add(committer.insert(new Message(1, "grouped " + i, 1669947792L + i)));
+        }
+
+        Set<Integer> messageIds = new HashSet<>();
+        for (int i = 0; i < results.size(); i++) {
+            Message message = results.get(i).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals("grouped " + i, message.getMessage_text());
+            messageIds.add(message.getMessage_id());
+            Assert.assertEquals(message, new MessageDAO().getMessageById(message.getMessage_id()));
+        }
+        Assert.assertEquals(100, messageIds.size());
+        Assert.assertEquals(100L, committer.stats().get("committed"));
+        Assert.assertTrue((Long) committer.stats().get("batches") <= 4);
+    }
+
+    /**
+     * When a batch fails as a whole, its messages are retried one at a time, so only the bad one fails.
+     */
+    @Test
+    public void failedBatchIsRetriedOneMessageAtATime() throws Exception {
+        MessageGroupCommitter committer = new MessageGroupCommitter(new MessageDAO(), new Bulkhead("test", 0, 0),
+                10, 50_000, 1000);
+        CompletableFuture<Message> first = committer.insert(new Message(1, "before", 1669947792L));
+        CompletableFuture<Message> orphan = committer.insert(new Message(999999, "no such account", 1669947792L));
+        CompletableFuture<Message> last = committer.insert(new Message(1, "after", 1669947792L));
+
+        Assert.assertEquals("before", first.get(5, TimeUnit.SECONDS).getMessage_text());
+        Assert.assertNull(orphan.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals("after", last.get(5, TimeUnit.SECONDS).getMessage_text());
+        Assert.assertEquals(3L, committer.stats().get("retried_singly"));
+        Assert.assertEquals(2L, committer.stats().get("committed"));
+    }
+
+    /**
+     * An insert whose caller has given up before its batch is written is never written.
+     */
+    @Test
+    public void abandonedInsertIsDropped() throws Exception {
+        MessageGroupCommitter committer = new MessageGroupCommitter(new MessageDAO(), new Bulkhead("test", 0, 0),
+                10, 200_000, 1000);
+        CompletableFuture<Message> abandoned = committer.insert(new Message(1, "abandoned", 1669947792L));
+        abandoned.cancel(false);
+        CompletableFuture<Message> kept = committer.insert(new Message(1, "kept", 1669947792L));
+
+        Assert.assertEquals("kept", kept.get(5, TimeUnit.SECONDS).getMessage_text());
+        Assert.assertEquals(1L, committer.stats().get("dropped"));
+        Assert.assertEquals(1L, committer.stats().get("committed"));
+    }
+
+    /**
+     * Work chained on a caller's future runs off the writer, so a slow caller does not hold up the next batch.
+     */
+    @Test
+    public void slowCallerDoesNotDelayNextBatch() throws Exception {
+        MessageGroupCommitter committer = new MessageGroupCommitter(new MessageDAO(), new Bulkhead("test", 0, 0),
+                1, 100_000, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> slow = committer.insert(new Message(1, "slow caller", 1669947792L))
+                .thenApply(message -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Thread.currentThread().getName();
+                });
+        committer.insert(new Message(1, "next batch", 1669947792L));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((Long) committer.stats().get("committed") < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(2L, committer.stats().get("committed"));
+        Assert.assertFalse(slow.isDone());
+        release.countDown();
+        Assert.assertEquals("message-group-commit-completer", slow.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * A caller that times out while its batch is being committed still has its message recorded: it is searchable and
+     * its version has moved, as if the caller had waited.
+     */
+    @Test
+    public void timedOutCallerIsStillRecorded() throws Exception {
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MessageDAO slowDAO = new MessageDAO() {
+            @Override
+            public List<Message> insertMessages(List<Message> messages) {
+                List<Message> inserted = super.insertMessages(messages);
+                committing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return inserted;
+            }
+        };
+        MessageGroupCommitter committer = new MessageGroupCommitter(slowDAO, new Bulkhead("test", 0, 0), 10, 1000,
+                1000);
+        MessageService messageService = new MessageService(AccountIdSet.load(new AccountDAO()), committer);
+        long versionBefore = messageService.getVersions().global();
+
+        CompletableFuture<Message> caller = messageService.createMessageAsync(
+                new Message(1, "committed after its caller left", 1669947792L));
+        Assert.assertTrue(committing.await(5, TimeUnit.SECONDS));
+        caller.orTimeout(10, TimeUnit.MILLISECONDS);
+        try {
+            caller.join();
+            Assert.fail("Expected the caller to time out");
+        } catch (CompletionException expected) {
+        }
+        release.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (messageService.getVersions().global() == versionBefore && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(messageService.getVersions().global() > versionBefore);
+        List<Message> found = messageService.searchMessages("committed caller left", null, 10).getMessages();
+        Assert.assertEquals(1, found.size());
+        Assert.assertEquals("committed after its caller left", found.get(0).getMessage_text());
+    }
+}
@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessagePage;
+import Service.MessageService;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MessageSearchTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Matches are ranked by how many query terms they contain and how rare those are, regardless of case and
+     * punctuation, and paged with a cursor.
+     */
+    @Test
+    public void searchRanksAndPages() {
+        MessageService messageService = new MessageService();
+        Message both = messageService.createMessage(new Message(1, "Coffee and CROISSANTS this morning!", 1669947793));
+        Message coffee = messageService.createMessage(new Message(1, "more coffee", 1669947794));
+        messageService.createMessage(new Message(1, "nothing relevant", 1669947795));
+
+        MessagePage first = messageService.searchMessages("croissants, coffee", null, 1);
+        Assert.assertEquals(List.of(both), first.getMessages());
+        Assert.assertNotNull(first.getNext_cursor());
+        MessagePage second = messageService.searchMessages("croissants, coffee", first.getNext_cursor(), 1);
+        Assert.assertEquals(List.of(coffee), second.getMessages());
+        Assert.assertNull(second.getNext_cursor());
+
+        Assert.assertTrue(messageService.searchMessages("tea", null, 10).getMessages().isEmpty());
+        Assert.assertEquals(1, messageService.searchMessages("test", null, 10).getMessages().size());
+    }
+
+    /**
+     * Updates and deletes made through the service are reflected in the next search.
+     */
+    @Test
+    public void indexFollowsUpdatesAndDeletes() {
+        MessageService messageService = new MessageService();
+        Assert.assertEquals(1, messageService.searchMessages("test message", null, 10).getMessages().size());
+
+        messageService.updateMessageById(1, "rewritten entirely");
+        Assert.assertTrue(messageService.searchMessages("test", null, 10).getMessages().isEmpty());
+        Assert.assertEquals(1, messageService.searchMessages("rewritten", null, 10).getMessages().size());
+
+        messageService.deleteMessageById(1);
+        Assert.assertTrue(messageService.searchMessages("rewritten", null, 10).getMessages().isEmpty());
+        Assert.assertEquals(0, messageService.getSearchIndexStats().get("documents"));
+        Assert.assertEquals(0, messageService.getSearchIndexStats().get("terms"));
+    }
+
+    /**
+     * GET /messages/search is routed ahead of /messages/{message_id}, finds messages posted over HTTP, and refuses
+     * a query without words.
+     */
+    @Test
+    public void searchEndpoint() throws IOException, InterruptedException {
+        HttpResponse<String> posted = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"posted_by\":1,\"message_text\":\"searchable words\",\"time_posted_epoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Message created = objectMapper.readValue(posted.body(), Message.class);
+
+        HttpResponse<String> response = get("/messages/search?q=SEARCHABLE");
+        Assert.assertEquals(200, response.statusCode());
+        MessagePage page = objectMapper.readValue(response.body(), MessagePage.class);
+        Assert.assertEquals(List.of(created), page.getMessages());
+
+        Assert.assertEquals(400, get("/messages/search?q=%20!!").statusCode());
+        Assert.assertEquals(400, get("/messages/search").statusCode());
+        Assert.assertEquals(400, get("/messages/search?q=words&cursor=bogus").statusCode());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.LatencyHistogram;
+import Util.Metrics;
+import io.javalin.Javalin;
+
+public class MetricsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Requests are counted under their route template and method, with 4xx responses counted as errors. The registry
+     * is shared by every test, so only the change across the requests is checked.
+     */
+    @Test
+    public void requestsAreRecordedPerRoute() throws IOException, InterruptedException {
+        String getLabels = "{method=\"GET\",route=\"/messages/{message_id}\"}";
+        String patchErrorLabels = "{method=\"PATCH\",route=\"/messages/{message_id}\",status=\"4xx\"}";
+        String before = scrape();
+
+        send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/1")).build());
+        send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/100")).build());
+        send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"\"}")).build());
+
+        // The request logger runs as the response completes, which can be a moment after the client has it
+        String after = scrapeUntil("http_server_errors_total" + patchErrorLabels,
+                value(before, "http_server_errors_total" + patchErrorLabels) + 1);
+        Assert.assertEquals(value(before, "http_server_requests_total" + getLabels) + 2,
+                value(after, "http_server_requests_total" + getLabels), 0);
+        Assert.assertEquals(value(before, "http_server_request_duration_seconds_count" + getLabels) + 2,
+                value(after, "http_server_request_duration_seconds_count" + getLabels), 0);
+        Assert.assertFalse(after.contains("route=\"/messages/1\""));
+    }
+
+    /**
+     * DAO calls and connection borrows are timed, and /metrics is served as Prometheus text.
+     */
+    @Test
+    public void daoCallsAndConnectionAcquiresAreTimed() throws IOException, InterruptedException {
+        String updateLabels = "{dao=\"MessageDAO\",method=\"updateMessage\"}";
+        String before = scrape();
+
+        HttpResponse<String> patch = send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"updated\"}")).build());
+        Assert.assertEquals(200, patch.statusCode());
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics")).build());
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        String after = response.body();
+        Assert.assertTrue(after.contains("# TYPE dao_call_seconds histogram\n"));
+        Assert.assertEquals(value(before, "dao_call_seconds_count" + updateLabels) + 1,
+                value(after, "dao_call_seconds_count" + updateLabels), 0);
+        Assert.assertTrue(value(after, "db_connection_acquire_seconds_count")
+                > value(before, "db_connection_acquire_seconds_count"));
+        Assert.assertTrue(after.contains("db_pool_connections{state=\"idle\"} "));
+    }
+
+    /**
+     * Histogram buckets are written cumulatively with the bound in seconds, and label values are escaped.
+     */
+    @Test
+    public void histogramIsWrittenInPrometheusFormat() {
+        LatencyHistogram histogram = Metrics.histogram("metrics_test_seconds", "A histogram for MetricsTest.",
+                Metrics.labels("quoted", "a\"b"));
+        histogram.observeNanos(50_000);
+        histogram.observeNanos(3_000_000);
+        histogram.observeNanos(20_000_000_000L);
+
+        String scrape = Metrics.scrape();
+        Assert.assertTrue(scrape.contains("# HELP metrics_test_seconds A histogram for MetricsTest.\n"));
+        Assert.assertTrue(scrape.contains("metrics_test_seconds_bucket{quoted=\"a\\\"b\",le=\"0.0001\"} 1\n"));
+        Assert.assertTrue(scrape.contains("metrics_test_seconds_bucket{quoted=\"a\\\"b\",le=\"0.001\"} 1\n"));
+        Assert.assertTrue(scrape.contains("metrics_test_seconds_bucket{quoted=\"a\\\"b\",le=\"0.005\"} 2\n"));
+        Assert.assertTrue(scrape.contains("metrics_test_seconds_bucket{quoted=\"a\\\"b\",le=\"10\"} 2\n"));
+        Assert.assertTrue(scrape.contains("metrics_test_seconds_bucket{quoted=\"a\\\"b\",le=\"+Inf\"} 3\n"));
+        Assert.assertTrue(scrape.contains("metrics_test_seconds_sum{quoted=\"a\\\"b\"} 20.00305\n"));
+        Assert.assertTrue(scrape.contains("metrics_test_seconds_count{quoted=\"a\\\"b\"} 3\n"));
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String scrape() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/metrics")).build()).body();
+    }
+
+    private String scrapeUntil(String sample, double expected) throws IOException, InterruptedException {
+        String scrape = scrape();
+        for (int i = 0; i < 50 && value(scrape, sample) < expected; i++) {
+            Thread.sleep(20);
+            scrape = scrape();
+        }
+        return scrape;
+    }
+
+    /**
+     * @return the value of the sample with exactly this name and labels, or 0 if it has not been recorded yet.
+     */
+    private static double value(String scrape, String sample) {
+        for (String line : scrape.split("\n")) {
+            if (line.startsWith(sample + " ")) {
+                return Double.parseDouble(line.substring(sample.length() + 1));
+            }
+        }
+        return 0;
+    }
+}
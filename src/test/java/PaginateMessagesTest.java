@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessagePage;
+import Service.MessageService;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class PaginateMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add four more messages (two of them posted at the same time), restart
+     * the Javalin app, and create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException, SQLException {
+        ConnectionUtil.resetTestDatabase();
+        try (Connection conn = ConnectionUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "insert into message (posted_by, message_text, time_posted_epoch) values (1, ?, ?)")) {
+            long[] times = {1669947793, 1669947794, 1669947794, 1669947795};
+            for (int i = 0; i < times.length; i++) {
+                ps.setString(1, "paged message " + (i + 2));
+                ps.setLong(2, times[i]);
+                ps.executeUpdate();
+            }
+        }
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Following next_cursor from GET localhost:8080/messages?limit=2 visits every message exactly once, in
+     * (time_posted_epoch, message_id) order, and the last page has no next_cursor.
+     */
+    @Test
+    public void followingCursorsVisitsEveryMessageInOrder() throws IOException, InterruptedException {
+        List<Integer> seenIds = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            String uri = "http://localhost:8080/messages?limit=2" + (cursor == null ? "" : "&cursor=" + cursor);
+            HttpResponse<String> response = webClient.send(HttpRequest.newBuilder().uri(URI.create(uri)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(200, response.statusCode());
+
+            MessagePage page = objectMapper.readValue(response.body(), MessagePage.class);
+            Assert.assertTrue(page.getMessages().size() <= 2);
+            for (Message message : page.getMessages()) {
+                seenIds.add(message.getMessage_id());
+            }
+            cursor = page.getNext_cursor();
+            pages++;
+        } while (cursor != null);
+
+        Assert.assertEquals(List.of(1, 2, 3, 4, 5), seenIds);
+        Assert.assertEquals(3, pages);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with a cursor that was not issued by the server
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void malformedCursorIsRejected() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?cursor=not-a-cursor"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+    }
+
+    /**
+     * A limit above the server maximum is clamped rather than returning the whole table.
+     */
+    @Test
+    public void limitIsClampedToMaximumPageSize() throws IOException, InterruptedException, SQLException {
+        // One message more than fits on the largest page, on top of the five already there
+        try (Connection conn = ConnectionUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "insert into message (posted_by, message_text, time_posted_epoch) values (1, ?, 1669947796)")) {
+            for (int i = 0; i < MessageService.MAX_PAGE_SIZE - 4; i++) {
+                ps.setString(1, "extra message " + i);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=1000000"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        MessagePage page = objectMapper.readValue(response.body(), MessagePage.class);
+        Assert.assertEquals(MessageService.MAX_PAGE_SIZE, page.getMessages().size());
+        Assert.assertNotNull(page.getNext_cursor());
+    }
+}
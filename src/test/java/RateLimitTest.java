@@ -0,0 +1,104 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.RateLimitedException;
+import Util.RateLimiter;
+import io.javalin.Javalin;
+
+public class RateLimitTest {
+    Javalin app;
+
+    @After
+    public void tearDown() {
+        if (app != null) {
+            app.stop();
+        }
+        System.clearProperty("ratelimit.enabled");
+        System.clearProperty("ratelimit.login.ip.burst");
+        System.clearProperty("ratelimit.login.account.burst");
+    }
+
+    /**
+     * A key may take its burst at once, is then refused with the time until its next token, and does not affect
+     * other keys.
+     */
+    @Test
+    public void bucketAllowsBurstThenRefuses() {
+        RateLimiter limiter = new RateLimiter("test", 1, 3, 100);
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("a");
+        }
+        try {
+            limiter.acquire("a");
+            Assert.fail("Expected the bucket to be empty");
+        } catch (RateLimitedException expected) {
+            Assert.assertTrue(expected.getRetryAfterNanos() > 0);
+            Assert.assertEquals(1, expected.getRetryAfterSeconds());
+        }
+        limiter.acquire("b");
+        Assert.assertEquals(1L, limiter.stats().get("rejected"));
+        Assert.assertEquals(4L, limiter.stats().get("allowed"));
+    }
+
+    /**
+     * A full table lets new keys through untracked while its buckets are active, and makes room by dropping buckets
+     * once they have refilled.
+     */
+    @Test
+    public void tableIsBoundedAndIdleBucketsAreEvicted() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter("test", 10, 1, 2);
+        limiter.acquire("a");
+        limiter.acquire("b");
+        limiter.acquire("c");
+        Assert.assertEquals(1L, limiter.stats().get("untracked"));
+        Assert.assertEquals(2, limiter.stats().get("keys"));
+
+        Thread.sleep(150);
+        limiter.acquire("c");
+        Assert.assertEquals(1, limiter.stats().get("keys"));
+        Assert.assertEquals(1L, limiter.stats().get("untracked"));
+    }
+
+    /**
+     * Once a client IP has used its login burst, further logins get a 429 with Retry-After before the body is even
+     * parsed; a malformed body would otherwise fail with a 500.
+     */
+    @Test
+    public void loginIsLimitedPerClientBeforeParsing() throws IOException, InterruptedException {
+        System.setProperty("ratelimit.enabled", "true");
+        System.setProperty("ratelimit.login.ip.burst", "2");
+        System.setProperty("ratelimit.login.account.burst", "10");
+        ConnectionUtil.resetTestDatabase();
+        app = new SocialMediaController().startAPI();
+        app.start(8080);
+        Thread.sleep(1000);
+        HttpClient webClient = HttpClient.newHttpClient();
+
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(401, login(webClient, "{\"username\":\"testuser1\",\"password\":\"wrong\"}")
+                    .statusCode());
+        }
+        HttpResponse<String> limited = login(webClient, "not json");
+        Assert.assertEquals(429, limited.statusCode());
+        Assert.assertTrue(Long.parseLong(limited.headers().firstValue("Retry-After").orElseThrow()) >= 1);
+    }
+
+    private static HttpResponse<String> login(HttpClient webClient, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,78 @@
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.SchemaMigrator;
+
+public class SchemaMigrationTest {
+    Connection connection;
+
+    /**
+     * Before every test, open a fresh private in-memory database.
+     */
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:migrationtest", "sa", "sa");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * Migrating an empty database creates the schema and records the latest version; migrating again does nothing.
+     */
+    @Test
+    public void migrateIsIdempotent() throws SQLException, IOException {
+        int version = SchemaMigrator.migrate(connection, Integer.MAX_VALUE);
+        Assert.assertTrue(version >= 2);
+        Assert.assertEquals(version, SchemaMigrator.migrate(connection, Integer.MAX_VALUE));
+        Assert.assertEquals(version, countRows("schema_version"));
+    }
+
+    /**
+     * A database created before migrations existed keeps its rows and gains the message indexes.
+     */
+    @Test
+    public void existingDataIsKept() throws SQLException, IOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table account (account_id int primary key auto_increment, "
+                    + "username varchar(255) unique, password varchar(255))");
+            statement.execute("create table message (message_id int primary key auto_increment, posted_by int, "
+                    + "message_text varchar(255), time_posted_epoch bigint, "
+                    + "foreign key (posted_by) references account(account_id))");
+            statement.execute("insert into account (username, password) values ('testuser1', 'password')");
+            statement.execute("insert into message (posted_by, message_text, time_posted_epoch) "
+                    + "values (1, 'test message 1', 1669947792)");
+        }
+
+        SchemaMigrator.migrate(connection, Integer.MAX_VALUE);
+
+        Assert.assertEquals(1, countRows("account"));
+        Assert.assertEquals(1, countRows("message"));
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                "SELECT COUNT(*) FROM information_schema.indexes WHERE index_name = 'IDX_MESSAGE_POSTED_BY_TIME'");
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            resultSet.next();
+            Assert.assertEquals(1, resultSet.getInt(1));
+        }
+    }
+
+    private int countRows(String table) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT COUNT(*) FROM " + table);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
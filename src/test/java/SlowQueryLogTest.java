@@ -0,0 +1,107 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.ConnectionUtil;
+import Util.SlowQueryLog;
+
+public class SlowQueryLogTest {
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    /**
+     * With a threshold of 0 every statement is slow. Password parameters are redacted, whether bound in a WHERE
+     * clause or an INSERT column list, and plans are captured without running an INSERT a second time.
+     */
+    @Test
+    public void slowStatementsAreRecordedWithPasswordsRedacted() throws SQLException {
+        SlowQueryLog log = new SlowQueryLog(0, 0, 10, Collections.singleton("password"));
+        try (Connection connection = log.wrap(ConnectionUtil.getConnection())) {
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO account (username, password) VALUES (?, ?)")) {
+                insert.setString(1, "slowuser");
+                insert.setString(2, "secret1234");
+                Assert.assertEquals(1, insert.executeUpdate());
+            }
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT * FROM account WHERE username = ? AND password = ?")) {
+                select.setString(1, "slowuser");
+                select.setString(2, "secret1234");
+                try (ResultSet resultSet = select.executeQuery()) {
+                    Assert.assertTrue(resultSet.next());
+                }
+            }
+            try (PreparedStatement count = connection.prepareStatement(
+                    "SELECT COUNT(*) FROM account WHERE username = 'slowuser'");
+                 ResultSet resultSet = count.executeQuery()) {
+                resultSet.next();
+                Assert.assertEquals(1, resultSet.getInt(1));
+            }
+        }
+
+        List<Map<String, Object>> recent = recent(log.snapshot(10));
+        Assert.assertEquals(3, recent.size());
+        Map<String, Object> select = recent.get(1);
+        Map<String, Object> insert = recent.get(2);
+        Assert.assertEquals(Arrays.asList("'slowuser'", "<redacted>"), select.get("parameters"));
+        Assert.assertEquals(Arrays.asList("'slowuser'", "<redacted>"), insert.get("parameters"));
+        Assert.assertFalse(log.snapshot(10).toString().contains("secret1234"));
+        Assert.assertTrue(((String) select.get("plan")).contains("FROM"));
+        Assert.assertTrue(((String) insert.get("plan")).startsWith("INSERT"));
+    }
+
+    /**
+     * Only the most recent slow statements are kept, newest first, while the count per statement covers them all.
+     */
+    @Test
+    public void ringBufferKeepsTheMostRecentStatements() throws SQLException {
+        SlowQueryLog log = new SlowQueryLog(0, -1, 2, Collections.singleton("password"));
+        try (Connection connection = log.wrap(ConnectionUtil.getConnection());
+             PreparedStatement select = connection.prepareStatement("SELECT * FROM message WHERE message_id = ?")) {
+            for (int id = 1; id <= 3; id++) {
+                select.setInt(1, id);
+                select.executeQuery().close();
+            }
+        }
+
+        Map<String, Object> snapshot = log.snapshot(10);
+        Assert.assertEquals(3L, snapshot.get("slow_queries"));
+        List<Map<String, Object>> recent = recent(snapshot);
+        Assert.assertEquals(2, recent.size());
+        Assert.assertEquals(Collections.singletonList("3"), recent.get(0).get("parameters"));
+        Assert.assertEquals(Collections.singletonList("2"), recent.get(1).get("parameters"));
+        Assert.assertNull(recent.get(0).get("plan"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> byStatement = (List<Map<String, Object>>) snapshot.get("by_statement");
+        Assert.assertEquals(3L, byStatement.get(0).get("count"));
+        Assert.assertEquals(1, recent(log.snapshot(1)).size());
+    }
+
+    /**
+     * A negative threshold turns the log off and leaves connections unwrapped.
+     */
+    @Test
+    public void negativeThresholdLeavesConnectionsUnwrapped() throws SQLException {
+        SlowQueryLog log = new SlowQueryLog(-1, -1, 10, Collections.singleton("password"));
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            Assert.assertSame(connection, log.wrap(connection));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> recent(Map<String, Object> snapshot) {
+        return (List<Map<String, Object>>) snapshot.get("recent");
+    }
+}
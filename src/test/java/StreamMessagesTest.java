@@ -0,0 +1,138 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class StreamMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty("messages.stream.maxConcurrent");
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?stream=true
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON array of every message
+     */
+    @Test
+    public void streamAllMessagesAsJsonArray() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?stream=true"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages with Accept: application/x-ndjson
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one JSON message object per line
+     */
+    @Test
+    public void streamAccountMessagesAsNdjson() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages"))
+                .header("Accept", "application/x-ndjson")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/x-ndjson"));
+        String[] lines = response.body().split("\n");
+        Assert.assertEquals(1, lines.length);
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792),
+                objectMapper.readValue(lines[0], Message.class));
+    }
+
+    /**
+     * While a client that has stopped reading holds the only stream allowed, another stream is turned away with a
+     * 503 and Retry-After; once that client goes away its stream ends and streams are served again.
+     */
+    @Test
+    public void streamsBeyondTheLimitAreTurnedAway() throws IOException, InterruptedException {
+        app.stop();
+        System.setProperty("messages.stream.maxConcurrent", "1");
+        app = new SocialMediaController().startAPI();
+        app.start(8080);
+        // Far more than the socket buffers hold, so the writer blocks on a client that does not read
+        List<Message> messages = new ArrayList<>();
+        String text = "x".repeat(250);
+        for (int i = 0; i < 40000; i++) {
+            messages.add(new Message(1, text, 1669947793L + i));
+        }
+        new MessageDAO().insertMessages(messages);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?stream=true"))
+                .build();
+        try (Socket stalled = new Socket()) {
+            stalled.setReceiveBufferSize(4096);
+            stalled.connect(new InetSocketAddress("localhost", 8080));
+            stalled.getOutputStream().write("GET /messages?stream=true HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            stalled.getInputStream().read();
+
+            HttpResponse<String> refused = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(503, refused.statusCode());
+            Assert.assertEquals("1", refused.headers().firstValue("Retry-After").orElse(""));
+        }
+
+        int status = 0;
+        for (int attempt = 0; attempt < 50 && status != 200; attempt++) {
+            Thread.sleep(100);
+            status = webClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        }
+        Assert.assertEquals(200, status);
+    }
+}
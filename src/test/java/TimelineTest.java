@@ -0,0 +1,236 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import Model.Follow;
+import Model.Message;
+import Model.MessageCursor;
+import Model.MessagePage;
+import Service.AccountService;
+import Service.FollowGraph;
+import Service.FollowService;
+import Service.HomeTimelines;
+import Service.MessageService;
+import Util.Bulkhead;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class TimelineTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * A timeline merges the messages of followed accounts newest first, pages with a cursor, picks up messages
+     * created after it was first read and follows made since, and drops an unfollowed account's messages.
+     */
+    @Test
+    public void timelineMergesFollowedAccounts() {
+        AccountService accountService = new AccountService();
+        MessageService messageService = new MessageService(accountService.getAccountIds());
+        FollowService followService = new FollowService(accountService.getAccountIds(), messageService);
+        int alice = accountService.registerAccount("alice", "password").getAccount_id();
+        int bob = accountService.registerAccount("bob", "password").getAccount_id();
+        int carol = accountService.registerAccount("carol", "password").getAccount_id();
+
+        Message bobOld = messageService.createMessage(new Message(bob, "bob old", 100));
+        Message carolMiddle = messageService.createMessage(new Message(carol, "carol middle", 200));
+        messageService.createMessage(new Message(1, "not followed", 250));
+        Message bobNew = messageService.createMessage(new Message(bob, "bob new", 300));
+
+        Assert.assertEquals(new Follow(alice, bob), followService.follow(alice, bob));
+        MessagePage first = followService.getTimeline(alice, null, 1);
+        Assert.assertEquals(List.of(bobNew), first.getMessages());
+        MessagePage second = followService.getTimeline(alice, first.getNext_cursor(), 10);
+        Assert.assertEquals(List.of(bobOld), second.getMessages());
+        Assert.assertNull(second.getNext_cursor());
+
+        // Filled in on follow, pushed on create, out of order or not
+        followService.follow(alice, carol);
+        Message carolLatest = messageService.createMessage(new Message(carol, "carol latest", 400));
+        Message bobLate = messageService.createMessage(new Message(bob, "bob posted late", 150));
+        Assert.assertEquals(List.of(carolLatest, bobNew, carolMiddle, bobLate, bobOld),
+                followService.getTimeline(alice, null, 10).getMessages());
+
+        messageService.deleteMessageById(bobNew.getMessage_id());
+        Assert.assertEquals(new Follow(alice, carol), followService.unfollow(alice, carol));
+        Assert.assertEquals(List.of(bobLate, bobOld), followService.getTimeline(alice, null, 10).getMessages());
+        Assert.assertNull(followService.unfollow(alice, carol));
+    }
+
+    /**
+     * Follows are refused for unknown accounts and for an account following itself; following twice is fine.
+     */
+    @Test
+    public void followValidation() {
+        AccountService accountService = new AccountService();
+        MessageService messageService = new MessageService(accountService.getAccountIds());
+        FollowService followService = new FollowService(accountService.getAccountIds(), messageService);
+        int other = accountService.registerAccount("other", "password").getAccount_id();
+
+        Assert.assertNull(followService.follow(1, 1));
+        Assert.assertNull(followService.follow(1, 9999));
+        Assert.assertNotNull(followService.follow(1, other));
+        Assert.assertNotNull(followService.follow(1, other));
+        Assert.assertEquals(1L, followService.getTimelineStats().get("follows"));
+        Assert.assertTrue(followService.getTimeline(other, null, 10).getMessages().isEmpty());
+    }
+
+    /**
+     * Beyond the most timelines held, reading another drops one not read since, which is rebuilt, with everything
+     * posted meanwhile, when it is read again.
+     */
+    @Test
+    public void leastRecentlyReadTimelineIsEvicted() {
+        MessageDAO messageDAO = new MessageDAO();
+        HomeTimelines timelines = new HomeTimelines(new FollowGraph(), messageDAO, new Bulkhead("test", 0, 0), 1);
+        AccountService accountService = new AccountService();
+        int alice = accountService.registerAccount("alice", "password").getAccount_id();
+        int bob = accountService.registerAccount("bob", "password").getAccount_id();
+        int carol = accountService.registerAccount("carol", "password").getAccount_id();
+        timelines.followed(alice, bob);
+        timelines.followed(carol, bob);
+
+        Message first = messageDAO.insertMessage(new Message(bob, "first", 100));
+        Assert.assertEquals(List.of(first), timelines.page(alice, null, 10).getMessages());
+        Assert.assertEquals(List.of(first), timelines.page(carol, null, 10).getMessages());
+        Assert.assertEquals(1, timelines.timelineCount());
+        Assert.assertEquals(1L, timelines.stats().get("evictions"));
+
+        // Pushed only to carol's timeline, the one held
+        Message second = messageDAO.insertMessage(new Message(bob, "second", 200));
+        timelines.messageCreated(second);
+        Assert.assertEquals(List.of(second, first), timelines.page(alice, null, 10).getMessages());
+        Assert.assertEquals(1, timelines.timelineCount());
+        Assert.assertEquals(2L, timelines.stats().get("evictions"));
+    }
+
+    /**
+     * The newest messages of several accounts come back merged newest first, limited in total, and continue from a
+     * cursor.
+     */
+    @Test
+    public void newestMessagesAreMergedAcrossAccounts() {
+        MessageDAO messageDAO = new MessageDAO();
+        AccountService accountService = new AccountService();
+        int bob = accountService.registerAccount("bob", "password").getAccount_id();
+        int carol = accountService.registerAccount("carol", "password").getAccount_id();
+        Message bob100 = messageDAO.insertMessage(new Message(bob, "bob 100", 100));
+        Message carol200 = messageDAO.insertMessage(new Message(carol, "carol 200", 200));
+        Message bob300 = messageDAO.insertMessage(new Message(bob, "bob 300", 300));
+        Message carol400 = messageDAO.insertMessage(new Message(carol, "carol 400", 400));
+        Message bob500 = messageDAO.insertMessage(new Message(bob, "bob 500", 500));
+        messageDAO.insertMessage(new Message(1, "not asked for", 600));
+
+        int[] accounts = {bob, carol};
+        Assert.assertEquals(List.of(bob500, carol400, bob300),
+                messageDAO.getNewestMessagesByAccountIds(accounts, null, 3));
+        Assert.assertEquals(List.of(carol200, bob100),
+                messageDAO.getNewestMessagesByAccountIds(accounts, MessageCursor.after(bob300), 10));
+    }
+
+    /**
+     * A timeline read again since it was built gets a second chance, so the one dropped is the one not read again,
+     * even though it was built later.
+     */
+    @Test
+    public void rereadTimelineIsKept() {
+        MessageDAO messageDAO = new MessageDAO();
+        HomeTimelines timelines = new HomeTimelines(new FollowGraph(), messageDAO, new Bulkhead("test", 0, 0), 2);
+        AccountService accountService = new AccountService();
+        int alice = accountService.registerAccount("alice", "password").getAccount_id();
+        int bob = accountService.registerAccount("bob", "password").getAccount_id();
+        int carol = accountService.registerAccount("carol", "password").getAccount_id();
+        int dave = accountService.registerAccount("dave", "password").getAccount_id();
+        timelines.followed(alice, dave);
+        timelines.followed(bob, dave);
+        timelines.followed(carol, dave);
+        messageDAO.insertMessage(new Message(dave, "first", 100));
+
+        timelines.page(alice, null, 10);
+        timelines.page(bob, null, 10);
+        timelines.page(alice, null, 10);
+        timelines.page(carol, null, 10);
+        Assert.assertEquals(2, timelines.timelineCount());
+        Assert.assertEquals(1L, timelines.stats().get("evictions"));
+
+        // Alice's is still held and bob's is not
+        timelines.page(alice, null, 10);
+        Assert.assertEquals(1L, timelines.stats().get("evictions"));
+        timelines.page(bob, null, 10);
+        Assert.assertEquals(2L, timelines.stats().get("evictions"));
+    }
+
+    /**
+     * The endpoints follow, read and unfollow over HTTP, and refuse malformed requests with a 400.
+     */
+    @Test
+    public void timelineEndpoints() throws IOException, InterruptedException {
+        HttpResponse<String> registered = send("POST", "/register",
+                "{\"username\":\"reader\",\"password\":\"password\"}");
+        int reader = objectMapper.readTree(registered.body()).get("account_id").asInt();
+
+        HttpResponse<String> followed = send("POST", "/accounts/" + reader + "/follows/1", null);
+        Assert.assertEquals(200, followed.statusCode());
+        Assert.assertEquals(new Follow(reader, 1), objectMapper.readValue(followed.body(), Follow.class));
+        Assert.assertEquals(400, send("POST", "/accounts/" + reader + "/follows/" + reader, null).statusCode());
+
+        HttpResponse<String> timeline = send("GET", "/accounts/" + reader + "/timeline", null);
+        Assert.assertEquals(200, timeline.statusCode());
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(1, 1, "test message 1", 1669947792));
+        Assert.assertEquals(expected, objectMapper.readValue(timeline.body(), MessagePage.class).getMessages());
+        Assert.assertEquals(400, send("GET", "/accounts/" + reader + "/timeline?limit=0", null).statusCode());
+        Assert.assertEquals(400, send("GET", "/accounts/" + reader + "/timeline?cursor=bogus", null).statusCode());
+
+        Assert.assertEquals(200, send("DELETE", "/accounts/" + reader + "/follows/1", null).statusCode());
+        HttpResponse<String> again = send("DELETE", "/accounts/" + reader + "/follows/1", null);
+        Assert.assertEquals(200, again.statusCode());
+        Assert.assertEquals("", again.body());
+    }
+
+    private HttpResponse<String> send(String method, String path, String body)
+            throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+
+/**
+ * Message ingestion throughput of one POST /messages per message against POST /messages/batch, over HTTP to an
+ * embedded Javalin instance. Both benchmarks ingest BATCH_SIZE messages per invocation, so both scores are messages
+ * per second. The table grows by every message a trial creates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchIngestBenchmark {
+
+    private static final int ACCOUNTS = 100;
+    private static final int BATCH_SIZE = 500;
+
+    private Javalin app;
+    private HttpClient webClient;
+    private String baseUrl;
+    private String[] messages;
+    private String batch;
+
+    @Setup
+    public void start() {
+        BenchmarkData.seed(ACCOUNTS, 0);
+        app = new SocialMediaController().startAPI().start(0);
+        baseUrl = "http://localhost:" + app.port();
+        webClient = HttpClient.newHttpClient();
+        messages = new String[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            messages[i] = "{\"posted_by\":" + (i % ACCOUNTS + 1) + ",\"message_text\":\"ingested message " + i
+                    + "\",\"time_posted_epoch\":" + (BenchmarkData.FIRST_EPOCH + i) + "}";
+        }
+        batch = "[" + String.join(",", messages) + "]";
+    }
+
+    @TearDown
+    public void stop() {
+        app.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void postOneByOne() throws IOException, InterruptedException {
+        for (String message : messages) {
+            post("/messages", message);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void postBatch() throws IOException, InterruptedException {
+        post("/messages/batch", batch);
+    }
+
+    private void post(String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<Void> response = webClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + " for " + request.uri());
+        }
+    }
+}
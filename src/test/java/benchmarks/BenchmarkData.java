@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import Util.ConnectionUtil;
+
+/**
+ * Fills the database with a known data set for the benchmarks in this package.
+ */
+final class BenchmarkData {
+
+    /**
+     * time_posted_epoch of the first seeded message; message i is posted one second after message i - 1.
+     */
+    static final long FIRST_EPOCH = 1669947792L;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Resets the database and creates the given number of accounts ("user1", "user2", ... with password "password")
+     * and messages, posted in turn by each account. After seeding, message_id i was posted by account
+     * ((i - 1) % accounts) + 1 at FIRST_EPOCH + i - 1.
+     */
+    static void seed(int accounts, int messages) {
+        ConnectionUtil.resetTestDatabase();
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement clear = connection.prepareStatement("delete from message")) {
+                clear.executeUpdate();
+            }
+            try (PreparedStatement clear = connection.prepareStatement("delete from account")) {
+                clear.executeUpdate();
+            }
+            try (PreparedStatement restart = connection.prepareStatement(
+                    "alter table account alter column account_id restart with 1")) {
+                restart.executeUpdate();
+            }
+            try (PreparedStatement restart = connection.prepareStatement(
+                    "alter table message alter column message_id restart with 1")) {
+                restart.executeUpdate();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "insert into account (username, password) values (?, 'password')")) {
+                for (int i = 1; i <= accounts; i++) {
+                    ps.setString(1, "user" + i);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "insert into message (posted_by, message_text, time_posted_epoch) values (?, ?, ?)")) {
+                for (int i = 0; i < messages; i++) {
+                    ps.setInt(1, i % accounts + 1);
+                    ps.setString(2, "benchmark message " + i);
+                    ps.setLong(3, FIRST_EPOCH + i);
+                    ps.addBatch();
+                    if (i % 10_000 == 9_999) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not seed benchmark data", e);
+        }
+    }
+}
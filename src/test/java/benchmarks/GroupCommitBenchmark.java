@@ -0,0 +1,81 @@
+package benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Model.Message;
+import Service.MessageService;
+
+/**
+ * Message insert throughput with POSTERS posts in flight at once, each created through
+ * MessageService.createMessageAsync as POST /messages does: on the default path, one auto-commit insert per message
+ * on the database executor, and with group commit enabled. Scores are messages per second.
+ *
+ * Every trial runs in its own fork, so group commit is switched on or off before anything reads the setting. Tune
+ * group commit with -jvmArgsAppend "-Dmessages.groupCommit.maxBatch=... -Dmessages.groupCommit.maxDelayMicros=...".
+ * The table grows by every message a trial creates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupCommitBenchmark {
+
+    private static final int ACCOUNTS = 100;
+    private static final int POSTERS = 1_000;
+
+    @Param({"false", "true"})
+    public String groupCommit;
+
+    private MessageService messageService;
+    private long posted;
+
+    @Setup
+    public void seed() {
+        System.setProperty("messages.groupCommit.enabled", groupCommit);
+        BenchmarkData.seed(ACCOUNTS, 0);
+        messageService = new MessageService();
+    }
+
+    @TearDown
+    public void report() {
+        if (messageService.getGroupCommitStats() != null) {
+            System.out.println(messageService.getGroupCommitStats());
+        }
+    }
+
+    /**
+     * Starts POSTERS posts at once and waits for all of them to be committed.
+     */
+    @Benchmark
+    @OperationsPerInvocation(POSTERS)
+    public void postConcurrently() {
+        CompletableFuture<?>[] pending = new CompletableFuture<?>[POSTERS];
+        for (int i = 0; i < POSTERS; i++) {
+            long n = posted++;
+            pending[i] = messageService.createMessageAsync(new Message((int) (n % ACCOUNTS) + 1,
+                    "posted by benchmark " + n, BenchmarkData.FIRST_EPOCH + n)).thenAccept(created -> {
+                        if (created == null) {
+                            throw new IllegalStateException("insert failed");
+                        }
+                    });
+        }
+        CompletableFuture.allOf(pending).join();
+    }
+}
@@ -0,0 +1,105 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+
+/**
+ * End-to-end throughput of SocialMediaController handlers: each operation is a real HTTP request over loopback to an
+ * embedded Javalin instance started on a free port, going through routing, JSON and the service and DAO layers.
+ * Several client threads run at once so the server's thread model and executors are exercised.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(4)
+@Fork(1)
+public class HttpBenchmark {
+
+    private static final int ACCOUNTS = 100;
+    private static final int MESSAGES = 50_000;
+
+    private Javalin app;
+    private HttpClient webClient;
+    private String baseUrl;
+
+    @Setup
+    public void start() {
+        BenchmarkData.seed(ACCOUNTS, MESSAGES);
+        app = new SocialMediaController().startAPI().start(0);
+        baseUrl = "http://localhost:" + app.port();
+        webClient = HttpClient.newHttpClient();
+    }
+
+    @TearDown
+    public void stop() {
+        app.stop();
+    }
+
+    @Benchmark
+    public int getMessageById() throws IOException, InterruptedException {
+        return get("/messages/" + ThreadLocalRandom.current().nextInt(1, MESSAGES + 1));
+    }
+
+    @Benchmark
+    public int latestPageOfAccount() throws IOException, InterruptedException {
+        return get("/accounts/" + ThreadLocalRandom.current().nextInt(1, ACCOUNTS + 1) + "/messages?limit=20");
+    }
+
+    @Benchmark
+    public int postMessage() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":"
+                        + ThreadLocalRandom.current().nextInt(1, ACCOUNTS + 1)
+                        + ",\"message_text\":\"posted by benchmark\",\"time_posted_epoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        return send(request);
+    }
+
+    @Benchmark
+    public int login() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"user"
+                        + ThreadLocalRandom.current().nextInt(1, ACCOUNTS + 1) + "\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        return send(request);
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder().uri(URI.create(baseUrl + path)).build());
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<Void> response = webClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + " for " + request.uri());
+        }
+        return response.statusCode();
+    }
+}
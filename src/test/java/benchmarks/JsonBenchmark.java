@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Model.Account;
+import Model.Message;
+import Model.MessagePage;
+import Util.JsonCodec;
+
+/**
+ * Jackson (de)serialization of the API's bodies through JsonCodec, the JsonMapper the controller installs. Run with
+ * -Djson.backend=blackbird added to the forked JVM (-jvmArgsAppend) to compare backends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private final JsonCodec codec = JsonCodec.get();
+
+    private Message message;
+    private byte[] messageJson;
+    private Account account;
+    private byte[] accountJson;
+    private MessagePage page;
+    private byte[] messageListJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        message = new Message(42, 7, "a typical message of moderate length, posted for benchmarking",
+                BenchmarkData.FIRST_EPOCH);
+        messageJson = codec.writeBytes(message);
+        account = new Account(7, "benchmarkuser", "password");
+        accountJson = codec.writeBytes(account);
+
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            messages.add(new Message(i + 1, 7, "message number " + i + " on this page", BenchmarkData.FIRST_EPOCH + i));
+        }
+        page = new MessagePage(messages, "MTY2OTk0Nzc5MTo0Mg");
+        messageListJson = codec.writeBytes(messages);
+    }
+
+    @Benchmark
+    public byte[] writeMessage() throws IOException {
+        return codec.writeBytes(message);
+    }
+
+    @Benchmark
+    public Message readMessage() throws IOException {
+        return codec.read(new ByteArrayInputStream(messageJson), Message.class);
+    }
+
+    @Benchmark
+    public byte[] writeAccount() throws IOException {
+        return codec.writeBytes(account);
+    }
+
+    @Benchmark
+    public Account readAccount() throws IOException {
+        return codec.read(new ByteArrayInputStream(accountJson), Account.class);
+    }
+
+    /**
+     * A 20-message page, the usual GET /messages?limit=20 response.
+     */
+    @Benchmark
+    public byte[] writeMessagePage() throws IOException {
+        return codec.writeBytes(page);
+    }
+
+    /**
+     * A 20-message array, the shape of a POST /messages/batch body.
+     */
+    @Benchmark
+    public List<Message> readMessageList() throws IOException {
+        return codec.readList(new ByteArrayInputStream(messageListJson), Message.class);
+    }
+}
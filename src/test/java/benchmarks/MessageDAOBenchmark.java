@@ -0,0 +1,104 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.MessageDAO;
+import Model.Message;
+import Model.MessageCursor;
+
+/**
+ * MessageDAO operations against tables of realistic size. Each trial seeds the database with the given number of
+ * messages spread over ACCOUNTS accounts, then calls the DAO with random ids, so H2's page cache is exercised the way
+ * live traffic would rather than one hot row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageDAOBenchmark {
+
+    private static final int ACCOUNTS = 100;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"10000", "250000"})
+    public int messages;
+
+    private MessageDAO messageDAO;
+
+    @Setup
+    public void seed() {
+        BenchmarkData.seed(ACCOUNTS, messages);
+        messageDAO = new MessageDAO();
+    }
+
+    @Benchmark
+    public Message getMessageById() {
+        return messageDAO.getMessageById(randomMessageId());
+    }
+
+    /**
+     * The newest page of one account's timeline, as GET /accounts/{id}/messages?limit=20 asks for it.
+     */
+    @Benchmark
+    public List<Message> latestPageOfAccount() {
+        return messageDAO.getMessagesByAccountIdPage(randomAccountId(), Long.MIN_VALUE, Long.MAX_VALUE, true, null,
+                PAGE_SIZE + 1);
+    }
+
+    /**
+     * Every message of one account, as GET /accounts/{id}/messages without parameters returns them.
+     */
+    @Benchmark
+    public List<Message> allMessagesOfAccount() {
+        return messageDAO.getMessagesByAccountId(randomAccountId());
+    }
+
+    /**
+     * A page of GET /messages starting at a random point in the table.
+     */
+    @Benchmark
+    public List<Message> pageFromCursor() {
+        int after = randomMessageId();
+        return messageDAO.getMessagesPage(new MessageCursor(BenchmarkData.FIRST_EPOCH + after - 1, after),
+                PAGE_SIZE + 1);
+    }
+
+    @Benchmark
+    public boolean updateMessage() {
+        int messageId = randomMessageId();
+        return messageDAO.updateMessage(new Message(messageId, 0, "updated text " + messageId, 0));
+    }
+
+    /**
+     * Adds rows, so the table grows by however many inserts a trial manages; small next to the seeded size.
+     */
+    @Benchmark
+    public Message insertMessage() {
+        return messageDAO.insertMessage(new Message(randomAccountId(), "inserted by benchmark",
+                BenchmarkData.FIRST_EPOCH + messages));
+    }
+
+    private int randomMessageId() {
+        return ThreadLocalRandom.current().nextInt(1, messages + 1);
+    }
+
+    private static int randomAccountId() {
+        return ThreadLocalRandom.current().nextInt(1, ACCOUNTS + 1);
+    }
+}
@@ -0,0 +1,131 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Util.SchemaMigrator;
+
+/**
+ * The "latest 20 messages of one account" query before and after the V2 index migration.
+ *
+ * An account with a growing number of posts is queried with the schema at V1 (only the index H2 creates for the
+ * posted_by foreign key) and at V2 (the composite (posted_by, time_posted_epoch desc, message_id desc) index). At V1
+ * the cost grows with the number of rows the account has, because they are all read and sorted; at V2 it stays flat,
+ * because only the first 20 index entries are read. Each trial prints the plan H2 chose.
+ *
+ * Every trial uses its own in-memory database rather than the application's, so the schema can be held at V1.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageIndexBenchmark {
+
+    /**
+     * The range condition on time_posted_epoch and the leading posted_by in the ORDER BY are what let H2 choose the
+     * composite index over the foreign key index and read it in order; without them it reads every row of the
+     * account through the foreign key index and sorts them, even at V2.
+     */
+    private static final String LATEST_BY_ACCOUNT = "SELECT * FROM message WHERE posted_by = ? "
+            + "AND time_posted_epoch <= ? ORDER BY posted_by, time_posted_epoch DESC, message_id DESC LIMIT 20";
+
+    @Param({"1", "2"})
+    public int schemaVersion;
+
+    @Param({"1000", "10000", "100000"})
+    public int posts;
+
+    private Connection connection;
+    private PreparedStatement latestByAccount;
+
+    @Setup
+    public void seed() throws SQLException, IOException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:indexbenchmark"
+                // Stop H2 from answering repeated identical queries from its result cache
+                + ";OPTIMIZE_REUSE_RESULTS=0", "sa", "sa");
+        SchemaMigrator.migrate(connection, schemaVersion);
+        seed(connection, posts);
+        System.out.println("plan: " + plan(connection));
+        latestByAccount = connection.prepareStatement(LATEST_BY_ACCOUNT);
+        latestByAccount.setInt(1, 1);
+        latestByAccount.setLong(2, Long.MAX_VALUE);
+    }
+
+    @TearDown
+    public void close() throws SQLException {
+        latestByAccount.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public int latestPageOfAccount() throws SQLException {
+        int last = 0;
+        try (ResultSet resultSet = latestByAccount.executeQuery()) {
+            while (resultSet.next()) {
+                last = resultSet.getInt(1);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Creates account 1 with the given number of posts and account 2 with as many again, interleaved in time.
+     */
+    private static void seed(Connection connection, int posts) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("insert into account (username, password) values ('heavy', 'password'), "
+                    + "('other', 'password')");
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                "insert into message (posted_by, message_text, time_posted_epoch) values (?, ?, ?)")) {
+            for (int i = 0; i < posts * 2; i++) {
+                preparedStatement.setInt(1, 1 + (i % 2));
+                preparedStatement.setString(2, "benchmark message " + i);
+                preparedStatement.setLong(3, BenchmarkData.FIRST_EPOCH + i);
+                preparedStatement.addBatch();
+                if (i % 1000 == 999) {
+                    preparedStatement.executeBatch();
+                }
+            }
+            preparedStatement.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("analyze");
+        }
+    }
+
+    private static String plan(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                "EXPLAIN ANALYZE " + LATEST_BY_ACCOUNT.replaceFirst("\\?", "1")
+                        .replaceFirst("\\?", String.valueOf(Long.MAX_VALUE)));
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            resultSet.next();
+            String plan = resultSet.getString(1).replaceAll("\\s+", " ");
+            return plan.substring(plan.indexOf("/*"));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Model.Message;
+import Service.AccountIdSet;
+import Service.MessageService;
+
+/**
+ * The validation MessageService applies before any message reaches the database. Every benchmark submits a message
+ * that is rejected, so what is measured is the checks alone: blank text, text too long, and a posted_by that is not
+ * an existing account (looked up in the in-memory AccountIdSet).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private static final int ACCOUNTS = 1_000_000;
+
+    private MessageService messageService;
+    private Message blankText;
+    private Message textTooLong;
+    private Message unknownPoster;
+
+    @Setup
+    public void setUp() {
+        AccountIdSet accountIds = new AccountIdSet();
+        for (int id = 1; id <= ACCOUNTS; id++) {
+            accountIds.add(id);
+        }
+        messageService = new MessageService(accountIds);
+        blankText = new Message(1, "   ", BenchmarkData.FIRST_EPOCH);
+        textTooLong = new Message(1, "x".repeat(300), BenchmarkData.FIRST_EPOCH);
+        unknownPoster = new Message(ACCOUNTS + 1, "a perfectly good message", BenchmarkData.FIRST_EPOCH);
+    }
+
+    @Benchmark
+    public Message rejectBlankText() {
+        return messageService.createMessage(blankText);
+    }
+
+    @Benchmark
+    public Message rejectTextTooLong() {
+        return messageService.createMessage(textTooLong);
+    }
+
+    @Benchmark
+    public Message rejectUnknownPoster() {
+        return messageService.createMessage(unknownPoster);
+    }
+}
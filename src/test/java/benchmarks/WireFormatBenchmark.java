@@ -0,0 +1,83 @@
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Model.Message;
+import Util.JsonCodec;
+import Util.WireFormat;
+
+/**
+ * Encode and decode cost of each WireFormat the message endpoints negotiate, for a single message and for a
+ * 100-message list, the shape of a GET /accounts/{account_id}/messages response. The encoded sizes (bytes on the
+ * wire) are printed at the start of each trial, as a share of JSON's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({ "JSON", "SMILE", "CBOR", "MSGPACK" })
+    public WireFormat format;
+
+    private final JsonCodec codec = JsonCodec.get();
+
+    private Message message;
+    private byte[] encodedMessage;
+    private List<Message> messages;
+    private byte[] encodedMessages;
+
+    @Setup
+    public void setUp() throws IOException {
+        message = new Message(42, 7, "a typical message of moderate length, posted for benchmarking",
+                BenchmarkData.FIRST_EPOCH);
+        messages = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            messages.add(new Message(i + 1, 7, "benchmark message " + i, BenchmarkData.FIRST_EPOCH + i));
+        }
+        encodedMessage = codec.writeBytes(message, format);
+        encodedMessages = codec.writeBytes(messages, format);
+
+        int jsonSize = codec.writeBytes(messages, WireFormat.JSON).length;
+        System.out.printf("%n%s: message %d bytes, 100-message list %d bytes (%.0f%% of JSON)%n", format,
+                encodedMessage.length, encodedMessages.length, 100.0 * encodedMessages.length / jsonSize);
+    }
+
+    @Benchmark
+    public byte[] writeMessage() throws IOException {
+        return codec.writeBytes(message, format);
+    }
+
+    @Benchmark
+    public Message readMessage() throws IOException {
+        return codec.read(new ByteArrayInputStream(encodedMessage), Message.class, format);
+    }
+
+    @Benchmark
+    public byte[] writeMessageList() throws IOException {
+        return codec.writeBytes(messages, format);
+    }
+
+    @Benchmark
+    public Message[] readMessageList() throws IOException {
+        return codec.readerFor(format, Message[].class).readValue(encodedMessages);
+    }
+}
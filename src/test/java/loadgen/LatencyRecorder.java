@@ -0,0 +1,130 @@
+package loadgen;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency histograms and outcome counters for each operation, recorded in microseconds.
+ *
+ * Two latencies are kept per request. The service time runs from when the request was actually sent to when its
+ * response arrived. The corrected latency runs from when the request should have been sent: in the open loop that is
+ * its slot in the arrival schedule, so time spent waiting behind a stalled server counts; in the closed loop, when
+ * clients have an intended interval, HdrHistogram back-fills the requests a stalled client failed to send. Without
+ * that correction ("coordinated omission") a load generator under-reports exactly the stalls that matter.
+ */
+final class LatencyRecorder {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+    LatencyRecorder() {
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    /**
+     * @param intendedNanos when the request should have been sent, by System.nanoTime().
+     * @param sentNanos when it was actually sent.
+     * @param expectedIntervalMicros the closed-loop client's intended gap between requests, or 0 when the intended
+     * time already accounts for stalls.
+     * @param status the HTTP status, or -1 if the request failed without a response.
+     */
+    void record(Operation operation, long intendedNanos, long sentNanos, long expectedIntervalMicros, int status) {
+        long now = System.nanoTime();
+        Stats operationStats = stats.get(operation);
+        long serviceMicros = clamp((now - sentNanos) / 1000);
+        long correctedMicros = clamp((now - intendedNanos) / 1000);
+        operationStats.serviceTime.recordValue(serviceMicros);
+        if (expectedIntervalMicros > 0) {
+            operationStats.corrected.recordValueWithExpectedInterval(correctedMicros, expectedIntervalMicros);
+        } else {
+            operationStats.corrected.recordValue(correctedMicros);
+        }
+        if (status < 0) {
+            operationStats.failed.increment();
+        } else if (status >= 200 && status < 300) {
+            operationStats.ok.increment();
+        } else {
+            operationStats.non2xx.increment();
+        }
+    }
+
+    /**
+     * Prints one line per operation and a total, with the corrected latency percentiles in milliseconds.
+     */
+    void printSummary(PrintStream out, double elapsedSeconds) {
+        out.printf("%-9s %9s %9s %7s %7s %9s %9s %9s %9s %9s %9s %11s%n", "operation", "requests", "req/s", "non2xx",
+                "failed", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "mean ms", "p99 svc ms");
+        Histogram totalCorrected = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        Histogram totalService = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        long totalNon2xx = 0;
+        long totalFailed = 0;
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats operationStats = entry.getValue();
+            if (operationStats.serviceTime.getTotalCount() == 0) {
+                continue;
+            }
+            printLine(out, entry.getKey().name().toLowerCase(), operationStats.corrected, operationStats.serviceTime,
+                    operationStats.non2xx.sum(), operationStats.failed.sum(), elapsedSeconds);
+            totalCorrected.add(operationStats.corrected);
+            totalService.add(operationStats.serviceTime);
+            totalNon2xx += operationStats.non2xx.sum();
+            totalFailed += operationStats.failed.sum();
+        }
+        printLine(out, "total", totalCorrected, totalService, totalNon2xx, totalFailed, elapsedSeconds);
+    }
+
+    /**
+     * Writes each operation's corrected latency distribution in HdrHistogram's .hgrm format, which the HdrHistogram
+     * plotter and most capacity-planning spreadsheets read.
+     */
+    void writeHistograms(Path directory) throws FileNotFoundException {
+        directory.toFile().mkdirs();
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            if (entry.getValue().corrected.getTotalCount() == 0) {
+                continue;
+            }
+            try (PrintStream out = new PrintStream(directory.resolve(entry.getKey().name().toLowerCase() + ".hgrm")
+                    .toFile())) {
+                // Recorded in microseconds, reported in milliseconds
+                entry.getValue().corrected.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private static void printLine(PrintStream out, String name, Histogram corrected, Histogram service, long non2xx,
+                                  long failed, double elapsedSeconds) {
+        out.printf("%-9s %9d %9.1f %7d %7d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f %11.2f%n", name,
+                service.getTotalCount(), service.getTotalCount() / elapsedSeconds, non2xx, failed,
+                millis(corrected.getValueAtPercentile(50)), millis(corrected.getValueAtPercentile(90)),
+                millis(corrected.getValueAtPercentile(99)), millis(corrected.getValueAtPercentile(99.9)),
+                millis(corrected.getMaxValue()), corrected.getMean() / 1000.0,
+                millis(service.getValueAtPercentile(99)));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static long clamp(long micros) {
+        return Math.max(0, Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+    }
+
+    private static final class Stats {
+        final Histogram corrected = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        final Histogram serviceTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        final LongAdder ok = new LongAdder();
+        final LongAdder non2xx = new LongAdder();
+        final LongAdder failed = new LongAdder();
+    }
+}
@@ -0,0 +1,211 @@
+package loadgen;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+/**
+ * A load generator for the Social Media API, for capacity planning on a single machine without outside tooling.
+ *
+ * It drives a running API (or one it starts in-process with --embedded) with a weighted mix of register, login, post,
+ * read, timeline, patch and delete requests, in one of two modes:
+ *
+ * open loop: requests are scheduled at a constant arrival rate whether or not earlier ones have been answered, the
+ * way independent users behave. Latency is measured from each request's scheduled time, so a server that stalls is
+ * charged for every request that queued up behind the stall.
+ *
+ * closed loop: a fixed number of clients each send a request, wait for the answer, and send the next, which measures
+ * the throughput the server sustains. Give clients an intended --interval-ms to have stalls corrected for.
+ *
+ * After an unmeasured warm-up it prints a table of throughput, errors and latency percentiles per operation, and can
+ * write full HdrHistogram distributions. Run it with
+ * mvn test-compile exec:java -Dexec.mainClass=loadgen.LoadGenerator -Dexec.classpathScope=test -Dexec.args="--embedded=8080 --rate=300"
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        Javalin app = null;
+        if (options.embeddedPort >= 0) {
+            ConnectionUtil.resetTestDatabase();
+            app = new SocialMediaController().startAPI().start(options.embeddedPort);
+            options.url = "http://localhost:" + app.port();
+        }
+        try {
+            new LoadGenerator(options).run();
+        } finally {
+            if (app != null) {
+                app.stop();
+            }
+        }
+        System.exit(0);
+    }
+
+    private final LoadOptions options;
+    private final HttpClient webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final Workload workload;
+
+    LoadGenerator(LoadOptions options) {
+        this.options = options;
+        this.workload = new Workload(options.url, options.mix);
+    }
+
+    void run() throws IOException, InterruptedException {
+        seed();
+        System.out.printf("%s loop against %s: %s, %d s warm-up, %d s measured%n",
+                options.openLoop ? "Open" : "Closed", options.url,
+                options.openLoop ? options.rate + " req/s, at most " + options.connections + " in flight"
+                        : options.connections + " clients" + (options.intervalMillis > 0
+                        ? ", one request every " + options.intervalMillis + " ms each" : ""),
+                options.warmupSeconds, options.durationSeconds);
+        System.out.println("Mix: " + options.mix);
+
+        runPhase(options.warmupSeconds, new LatencyRecorder());
+        LatencyRecorder recorder = new LatencyRecorder();
+        double elapsedSeconds = runPhase(options.durationSeconds, recorder);
+
+        System.out.println();
+        recorder.printSummary(System.out, elapsedSeconds);
+        System.out.println("Latencies are corrected for coordinated omission; p99 svc is the uncorrected service time.");
+        if (options.histogramDirectory != null) {
+            recorder.writeHistograms(Paths.get(options.histogramDirectory));
+            System.out.println("Percentile distributions written to " + options.histogramDirectory);
+        }
+    }
+
+    /**
+     * Registers the seed accounts and posts the seed messages, so that reads, patches and deletes have something to
+     * work on from the first request.
+     */
+    private void seed() throws IOException, InterruptedException {
+        for (int i = 0; i < options.seedAccounts; i++) {
+            sendForSeed(Operation.REGISTER);
+        }
+        for (int i = 0; i < options.seedMessages; i++) {
+            sendForSeed(Operation.POST);
+        }
+        System.out.printf("Seeded %d accounts and %d messages%n", workload.getAccountCount(),
+                workload.getPostedMessageCount());
+    }
+
+    private void sendForSeed(Operation operation) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(operation.request(workload), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Seeding failed: " + operation + " returned " + response.statusCode());
+        }
+        operation.onResponse(workload, response);
+    }
+
+    /**
+     * @return the seconds from the first request to the last response.
+     */
+    private double runPhase(long seconds, LatencyRecorder recorder) throws InterruptedException {
+        if (seconds <= 0) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        if (options.openLoop) {
+            runOpenLoop(start, end, recorder);
+        } else {
+            runClosedLoop(start, end, recorder);
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private void runOpenLoop(long start, long end, LatencyRecorder recorder) throws InterruptedException {
+        long intervalNanos = (long) (1e9 / options.rate);
+        Semaphore inFlight = new Semaphore(options.connections);
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            parkUntil(intended);
+            // If the server has fallen behind this waits, and the wait is charged to the request
+            inFlight.acquire();
+            Operation operation = workload.nextOperation();
+            long sent = System.nanoTime();
+            webClient.sendAsync(operation.request(workload), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, failure) -> {
+                        try {
+                            complete(operation, response, intended, sent, 0, recorder);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+        }
+        // Wait for the stragglers
+        inFlight.acquire(options.connections);
+        inFlight.release(options.connections);
+    }
+
+    private void runClosedLoop(long start, long end, LatencyRecorder recorder) throws InterruptedException {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(options.intervalMillis);
+        List<Thread> clients = new ArrayList<>();
+        for (int c = 0; c < options.connections; c++) {
+            Thread client = new Thread(() -> {
+                long next = start;
+                while (next < end) {
+                    Operation operation = workload.nextOperation();
+                    HttpRequest request = operation.request(workload);
+                    long sent = System.nanoTime();
+                    HttpResponse<String> response = null;
+                    try {
+                        response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+                    } catch (IOException e) {
+                        // Counted as failed below
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    complete(operation, response, sent, sent, intervalNanos / 1000, recorder);
+                    // A client that has fallen behind skips the slots it missed; the histogram back-fills them
+                    next = intervalNanos > 0 ? Math.max(next + intervalNanos, System.nanoTime()) : System.nanoTime();
+                    parkUntil(next);
+                }
+            }, "loadgen-client-" + c);
+            client.start();
+            clients.add(client);
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+    }
+
+    private void complete(Operation operation, HttpResponse<String> response, long intended, long sent,
+                          long expectedIntervalMicros, LatencyRecorder recorder) {
+        int status = response == null ? -1 : response.statusCode();
+        recorder.record(operation, intended, sent, expectedIntervalMicros, status);
+        if (status >= 200 && status < 300) {
+            operation.onResponse(workload, response);
+        }
+    }
+
+    private static void parkUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package loadgen;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Command line options of the load generator. Every option has the form --name=value; see {@link #USAGE}.
+ */
+final class LoadOptions {
+
+    static final String USAGE = String.join("\n",
+            "Usage: LoadGenerator [options]",
+            "  --url=http://localhost:8080   API to load; ignored with --embedded",
+            "  --embedded=8080               start the API in this JVM on the given port against a fresh database",
+            "  --mode=open|closed            open: requests arrive at --rate regardless of responses (default)",
+            "                                closed: --connections clients each send, wait, then send again",
+            "  --rate=500                    open loop: requests per second",
+            "  --connections=64              closed loop: concurrent clients; open loop: HTTP connection cap",
+            "  --interval-ms=0               closed loop: each client's intended gap between sends, 0 for none",
+            "  --duration=60                 measured seconds",
+            "  --warmup=10                   unmeasured seconds before that",
+            "  --mix=read=50,timeline=15,post=15,patch=8,login=6,register=3,delete=3",
+            "                                relative weights of the operations",
+            "  --seed-accounts=100           accounts registered before the run",
+            "  --seed-messages=1000          messages posted before the run",
+            "  --histograms=<dir>            also write each operation's percentile distribution (.hgrm) here");
+
+    String url = "http://localhost:8080";
+    int embeddedPort = -1;
+    boolean openLoop = true;
+    double rate = 500;
+    int connections = 64;
+    long intervalMillis = 0;
+    long durationSeconds = 60;
+    long warmupSeconds = 10;
+    Map<Operation, Integer> mix = parseMix("read=50,timeline=15,post=15,patch=8,login=6,register=3,delete=3");
+    int seedAccounts = 100;
+    int seedMessages = 1000;
+    String histogramDirectory;
+
+    /**
+     * @throws IllegalArgumentException if an option is unknown or its value is invalid.
+     */
+    static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "url":
+                    options.url = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                    break;
+                case "embedded":
+                    options.embeddedPort = Integer.parseInt(value);
+                    break;
+                case "mode":
+                    if (!value.equals("open") && !value.equals("closed")) {
+                        throw new IllegalArgumentException("--mode must be open or closed");
+                    }
+                    options.openLoop = value.equals("open");
+                    break;
+                case "rate":
+                    options.rate = Double.parseDouble(value);
+                    break;
+                case "connections":
+                    options.connections = Integer.parseInt(value);
+                    break;
+                case "interval-ms":
+                    options.intervalMillis = Long.parseLong(value);
+                    break;
+                case "duration":
+                    options.durationSeconds = Long.parseLong(value);
+                    break;
+                case "warmup":
+                    options.warmupSeconds = Long.parseLong(value);
+                    break;
+                case "mix":
+                    options.mix = parseMix(value);
+                    break;
+                case "seed-accounts":
+                    options.seedAccounts = Integer.parseInt(value);
+                    break;
+                case "seed-messages":
+                    options.seedMessages = Integer.parseInt(value);
+                    break;
+                case "histograms":
+                    options.histogramDirectory = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        }
+        if (options.rate <= 0 || options.connections < 1 || options.durationSeconds < 1 || options.seedAccounts < 1) {
+            throw new IllegalArgumentException("--rate, --connections, --duration and --seed-accounts must be positive");
+        }
+        return options;
+    }
+
+    /**
+     * @param mix a list such as "read=50,post=10"; operations not listed get weight 0.
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation=weight in --mix, got " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in --mix: " + entry);
+            }
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), weight);
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("--mix must give some operation a positive weight");
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,113 @@
+package loadgen;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * The API calls the load generator can make. Each one builds its request from, and feeds its response back into, the
+ * shared {@link Workload}, so that later requests refer to accounts and messages that exist.
+ */
+enum Operation {
+
+    /**
+     * POST /register with a fresh username.
+     */
+    REGISTER {
+        @Override
+        HttpRequest request(Workload workload) {
+            return post(workload, "/register", "{\"username\":\"" + workload.newUsername()
+                    + "\",\"password\":\"" + Workload.PASSWORD + "\"}");
+        }
+
+        @Override
+        void onResponse(Workload workload, HttpResponse<String> response) {
+            workload.accountRegistered(response.body());
+        }
+    },
+    /**
+     * POST /login as a known account.
+     */
+    LOGIN {
+        @Override
+        HttpRequest request(Workload workload) {
+            return post(workload, "/login", "{\"username\":\"" + workload.randomAccount().getUsername()
+                    + "\",\"password\":\"" + Workload.PASSWORD + "\"}");
+        }
+    },
+    /**
+     * POST /messages by a known account.
+     */
+    POST {
+        @Override
+        HttpRequest request(Workload workload) {
+            return post(workload, "/messages", "{\"posted_by\":" + workload.randomAccount().getAccount_id()
+                    + ",\"message_text\":\"load generator message\",\"time_posted_epoch\":"
+                    + System.currentTimeMillis() / 1000 + "}");
+        }
+
+        @Override
+        void onResponse(Workload workload, HttpResponse<String> response) {
+            workload.messagePosted(response.body());
+        }
+    },
+    /**
+     * GET /messages/{message_id} of a message that is likely to exist.
+     */
+    READ {
+        @Override
+        HttpRequest request(Workload workload) {
+            return HttpRequest.newBuilder(uri(workload, "/messages/" + workload.randomMessageId())).GET().build();
+        }
+    },
+    /**
+     * GET /accounts/{account_id}/messages?limit=20, the newest page of a known account's timeline.
+     */
+    TIMELINE {
+        @Override
+        HttpRequest request(Workload workload) {
+            return HttpRequest.newBuilder(uri(workload, "/accounts/" + workload.randomAccount().getAccount_id()
+                    + "/messages?limit=20")).GET().build();
+        }
+    },
+    /**
+     * PATCH /messages/{message_id} with new text.
+     */
+    PATCH {
+        @Override
+        HttpRequest request(Workload workload) {
+            return HttpRequest.newBuilder(uri(workload, "/messages/" + workload.randomMessageId()))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"patched by load generator\"}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+        }
+    },
+    /**
+     * DELETE /messages/{message_id} of the oldest message not yet deleted.
+     */
+    DELETE {
+        @Override
+        HttpRequest request(Workload workload) {
+            return HttpRequest.newBuilder(uri(workload, "/messages/" + workload.takeOldestMessageId())).DELETE().build();
+        }
+    };
+
+    abstract HttpRequest request(Workload workload);
+
+    /**
+     * Called with every 2xx response.
+     */
+    void onResponse(Workload workload, HttpResponse<String> response) {
+    }
+
+    private static URI uri(Workload workload, String path) {
+        return URI.create(workload.baseUrl() + path);
+    }
+
+    private static HttpRequest post(Workload workload, String path, String body) {
+        return HttpRequest.newBuilder(uri(workload, path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+}
@@ -0,0 +1,137 @@
+package loadgen;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.ServerThreads;
+import io.javalin.Javalin;
+
+/**
+ * Compares the platform and virtual thread models (see Util.ServerThreads) under many concurrent connections.
+ *
+ * For each thread model and each concurrency level the app is started on port 8080 and that many clients each keep
+ * one request outstanding for the measurement period, one after another: a closed loop, so throughput is what the
+ * server sustains and latency includes any time spent queued for a server thread. Every request is
+ * GET /accounts/1/messages?limit=20, which goes to the database through the bulkhead.
+ *
+ * Like {@link LoadGenerator} it drives real connections from outside JMH, and it needs a Java 21 runtime for the
+ * virtual thread rows. Run it with
+ * mvn test-compile exec:java -Dexec.mainClass=loadgen.ThreadModeBenchmark -Dexec.classpathScope=test
+ * optionally passing the concurrency levels and seconds per run as arguments (default "1000,10000,50000 20"). With
+ * 50k connections both ends need that many file descriptors (ulimit -n) and the client needs that many ephemeral
+ * ports (net.ipv4.ip_local_port_range). Set -Ddb.bulkhead.maxConcurrent to compare with the bulkhead on.
+ */
+public class ThreadModeBenchmark {
+
+    private static final String URL = "http://localhost:8080/accounts/1/messages?limit=20";
+
+    public static void main(String[] args) throws Exception {
+        int[] concurrencies = Arrays.stream((args.length > 0 ? args[0] : "1000,10000,50000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 20;
+
+        ConnectionUtil.resetTestDatabase();
+        seed(1_000);
+
+        System.out.printf("%-9s %11s %14s %10s %10s %10s%n",
+                "threads", "connections", "requests/s", "p50 ms", "p99 ms", "errors");
+        for (String mode : new String[] {ServerThreads.PLATFORM, ServerThreads.VIRTUAL}) {
+            System.setProperty("server.threads", mode);
+            for (int concurrency : concurrencies) {
+                Javalin app;
+                try {
+                    app = new SocialMediaController().startAPI().start(8080);
+                } catch (IllegalStateException e) {
+                    System.out.printf("%-9s skipped: %s%n", mode, e.getMessage());
+                    break;
+                }
+                try {
+                    run(mode, concurrency, 2);
+                    run(mode, concurrency, seconds);
+                } finally {
+                    app.stop();
+                }
+            }
+        }
+    }
+
+    private static void run(String mode, int concurrency, long seconds) throws InterruptedException {
+        HttpClient webClient = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(URL)).build();
+        // Latencies in microseconds; sized generously and sorted once at the end for the percentiles
+        long[] latencies = new long[4_000_000];
+        AtomicInteger recorded = new AtomicInteger();
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        CompletableFuture<?>[] clients = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            loop(webClient, request, deadline, latencies, recorded, errors, done);
+            clients[i] = done;
+        }
+        long start = System.nanoTime();
+        CompletableFuture.allOf(clients).join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        int count = Math.min(recorded.get(), latencies.length);
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        if (seconds > 2) {
+            System.out.printf("%-9s %,11d %,14.0f %10.1f %10.1f %,10d%n", mode, concurrency, count / elapsed,
+                    percentile(sorted, 0.50) / 1000.0, percentile(sorted, 0.99) / 1000.0, errors.get());
+        }
+    }
+
+    /**
+     * Sends one request and, when it completes, the next, until the deadline passes.
+     */
+    private static void loop(HttpClient webClient, HttpRequest request, long deadline, long[] latencies,
+                             AtomicInteger recorded, AtomicLong errors, CompletableFuture<Void> done) {
+        long sent = System.nanoTime();
+        if (sent > deadline) {
+            done.complete(null);
+            return;
+        }
+        webClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            if (failure != null || response.statusCode() != 200) {
+                errors.incrementAndGet();
+            } else {
+                int slot = recorded.getAndIncrement();
+                if (slot < latencies.length) {
+                    latencies[slot] = (System.nanoTime() - sent) / 1000;
+                }
+            }
+            loop(webClient, request, deadline, latencies, recorded, errors, done);
+        });
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        return sorted.length == 0 ? 0
+                : sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static void seed(int posts) throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement ps = connection.prepareStatement(
+                     "insert into message (posted_by, message_text, time_posted_epoch) values (1, ?, ?)")) {
+            for (int i = 0; i < posts; i++) {
+                ps.setString(1, "benchmark message " + i);
+                ps.setLong(2, 1669947793L + i);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package loadgen;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Model.Account;
+import Model.Message;
+
+/**
+ * What the load generator knows about the data on the server: the accounts it has registered and the range of
+ * message_ids it has posted, and which operation to run next according to the configured mix.
+ *
+ * Messages are deleted oldest first, so the live messages are (roughly) the message_ids between the oldest not yet
+ * deleted and the newest posted; reads and patches pick from that range. Everything here is safe to use from many
+ * threads at once.
+ */
+final class Workload {
+
+    static final String PASSWORD = "loadgen-password";
+
+    private final String baseUrl;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final String usernamePrefix = "lg" + Long.toString(System.currentTimeMillis(), 36) + "-";
+    private final AtomicInteger usernameCounter = new AtomicInteger();
+    private final Map<Integer, Account> accounts = new ConcurrentHashMap<>();
+    private final AtomicInteger accountCount = new AtomicInteger();
+    private final AtomicInteger oldestMessageId = new AtomicInteger(Integer.MAX_VALUE);
+    private final AtomicInteger newestMessageId = new AtomicInteger();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    Workload(String baseUrl, Map<Operation, Integer> mix) {
+        this.baseUrl = baseUrl;
+        this.operations = mix.keySet().stream().filter(operation -> mix.get(operation) > 0).toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    String baseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * @return an operation chosen at random with the probabilities given by the mix.
+     */
+    Operation nextOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    String newUsername() {
+        return usernamePrefix + usernameCounter.incrementAndGet();
+    }
+
+    /**
+     * Records the account in the body of a successful POST /register.
+     */
+    void accountRegistered(String body) {
+        try {
+            Account account = objectMapper.readValue(body, Account.class);
+            accounts.put(accountCount.getAndIncrement(), account);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected /register response: " + body, e);
+        }
+    }
+
+    int getAccountCount() {
+        return accountCount.get();
+    }
+
+    Account randomAccount() {
+        int count = accountCount.get();
+        // An index can be claimed a moment before its account is stored; fall back to the first account then
+        Account account = accounts.get(ThreadLocalRandom.current().nextInt(count));
+        return account != null ? account : accounts.get(0);
+    }
+
+    /**
+     * Records the message in the body of a successful POST /messages.
+     */
+    void messagePosted(String body) {
+        try {
+            int messageId = objectMapper.readValue(body, Message.class).getMessage_id();
+            newestMessageId.accumulateAndGet(messageId, Math::max);
+            oldestMessageId.accumulateAndGet(messageId, Math::min);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected /messages response: " + body, e);
+        }
+    }
+
+    int getPostedMessageCount() {
+        return Math.max(0, newestMessageId.get() - oldestMessageId.get() + 1);
+    }
+
+    int randomMessageId() {
+        int oldest = Math.min(oldestMessageId.get(), newestMessageId.get());
+        return ThreadLocalRandom.current().nextInt(oldest, newestMessageId.get() + 1);
+    }
+
+    /**
+     * @return the oldest message_id not yet handed out for deletion; never runs past the newest message.
+     */
+    int takeOldestMessageId() {
+        return oldestMessageId.getAndUpdate(id -> id < newestMessageId.get() ? id + 1 : id);
+    }
+}